@@ -11,6 +11,7 @@ import icy.gui.menu.ToolRibbonTask;
 import icy.gui.menu.ToolRibbonTask.ToolRibbonTaskListener;
 import icy.gui.util.GuiUtil;
 import icy.gui.viewer.Viewer;
+import icy.image.ARGBRenderContext;
 import icy.image.IcyBufferedImage;
 import icy.image.ImageUtil;
 import icy.main.Icy;
@@ -29,6 +30,7 @@ import icy.roi.ROI2D;
 import icy.sequence.DimensionId;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent.SequenceEventType;
+import icy.system.thread.CancelToken;
 import icy.system.thread.SingleProcessor;
 import icy.system.thread.ThreadUtil;
 import icy.util.EventUtil;
@@ -441,22 +443,38 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
              */
             private BufferedImage imageCache;
 
+            /**
+             * render targets
+             */
+            private final ARGBRenderContext renderContext;
             /**
              * processor
              */
             private final SingleProcessor processor;
+            /**
+             * playback frames pre-rendering
+             */
+            private final PlaybackPrefetcher prefetcher;
             /**
              * internals
              */
             private boolean needRebuild;
+            private boolean prefetching;
+            private volatile CancelToken renderToken;
 
             public ImageCache()
             {
                 super();
 
+                // enough targets for the displayed image, the pre-rendered frames and the ones
+                // waiting for paint completion
+                renderContext = new ARGBRenderContext(PlaybackPrefetcher.DEFAULT_PREFETCH_SIZE
+                        + ARGBRenderContext.DEFAULT_POOL_SIZE);
                 processor = new SingleProcessor(true);
+                prefetcher = new PlaybackPrefetcher(Canvas2D.this, renderContext);
                 imageCache = null;
                 needRebuild = true;
+                prefetching = false;
                 // build cache
                 processor.addTask(this, false);
             }
@@ -466,6 +484,27 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
                 needRebuild = true;
             }
 
+            /**
+             * Invalidate the image cache and the pre-rendered playback frames
+             */
+            public void invalidCacheAndFrames()
+            {
+                final CancelToken token = renderToken;
+
+                prefetcher.invalidate();
+                needRebuild = true;
+
+                // current rendering is superseded
+                if (token != null)
+                    token.cancel();
+            }
+
+            public void shutDown()
+            {
+                prefetcher.shutDown();
+                renderContext.clear();
+            }
+
             public boolean isValid()
             {
                 return !needRebuild;
@@ -491,18 +530,87 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
                 return imageCache;
             }
 
+            /**
+             * Should be called when the image has been painted (previous images can be reused)
+             */
+            public void painted()
+            {
+                renderContext.painted();
+            }
+
             @Override
             public void run()
             {
+                final CancelToken token = new CancelToken();
+
+                renderToken = token;
                 // important to set it to false at beginning
                 needRebuild = false;
 
-                final IcyBufferedImage img = Canvas2D.this.getCurrentImage();
+                final int t = getPositionT();
+                final int z = getPositionZ();
+                final int c = getPositionC();
+                final IcyBufferedImage img = Canvas2D.this.getImage(t, z, c);
+                final boolean playing = (img != null) && tNav.isPlaying();
+
+                BufferedImage result = null;
 
                 if (img != null)
-                    imageCache = img.getARGBImage(getLut(), imageCache);
+                {
+                    if (playing)
+                    {
+                        // try to get the pre-rendered frame first
+                        result = prefetcher.take(t, z, c);
+
+                        if (result == null)
+                            result = img.renderARGBImage(getLut(), renderContext, token);
+
+                        // and render next frames in background (in playback direction)
+                        prefetcher.prefetch(t, z, c, getMaxT(), tNav.isLoopEnabled());
+                        prefetching = true;
+                    }
+                    else
+                    {
+                        // playback stopped --> release pre-rendered frames
+                        if (prefetching)
+                        {
+                            prefetcher.clear();
+                            tNav.setAchievedFrameRate(0);
+                            prefetching = false;
+                        }
+
+                        result = img.renderARGBImage(getLut(), renderContext, token);
+                    }
+                }
                 else
+                {
+                    renderContext.release(imageCache);
                     imageCache = null;
+                }
+
+                if (result != null)
+                {
+                    // superseded by a newer LUT / data state --> render again with latest state
+                    if (token.isCancelled())
+                    {
+                        renderContext.release(result);
+                        processor.addTask(this, false);
+                        return;
+                    }
+
+                    // swap render target (the old one will be reused once the new one is painted)
+                    final BufferedImage old = imageCache;
+
+                    imageCache = result;
+                    renderContext.release(old);
+                }
+
+                // count every displayed frame (pre-rendered or not)
+                if (playing)
+                {
+                    prefetcher.frameDisplayed();
+                    tNav.setAchievedFrameRate(prefetcher.getFPS());
+                }
 
                 // repaint now
                 CanvasView.this.repaint();
@@ -635,6 +743,8 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
          */
         void shutDown()
         {
+            // stop pre-rendering
+            imageCache.shutDown();
             // stop timer and movers
             refreshTimer.stop();
             zoomInfoTimer.stop();
@@ -1088,6 +1198,9 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
                 g2.dispose();
             }
 
+            // previously displayed images are not painted anymore
+            imageCache.painted();
+
             // synchronized canvas ? display external cursor
             if (!hasMouseFocus)
             {
@@ -1314,6 +1427,14 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             imageCache.invalidCache();
         }
 
+        /**
+         * Image data or LUT changed so pre-rendered frames are no more valid
+         */
+        public void imageDataChanged()
+        {
+            imageCache.invalidCacheAndFrames();
+        }
+
         public void layersChanged()
         {
 
@@ -2620,7 +2741,7 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
         // refresh image
         if (canvasView != null)
         {
-            canvasView.imageChanged();
+            canvasView.imageDataChanged();
             canvasView.refresh();
         }
     }
@@ -2657,7 +2778,7 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
         // refresh image
         if (canvasView != null)
         {
-            canvasView.imageChanged();
+            canvasView.imageDataChanged();
             canvasView.refresh();
         }
     }
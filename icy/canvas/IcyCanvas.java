@@ -50,6 +50,8 @@ import icy.system.IcyExceptionHandler;
 import icy.util.ClassUtil;
 
 import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.geom.Point2D;
@@ -58,10 +60,12 @@ import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 
 import javax.swing.JPanel;
 import javax.swing.JToolBar;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 
 /**
@@ -263,6 +267,14 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
     protected LUT lut;
     protected boolean synchHeader;
 
+    /**
+     * LUT change coalescing (at most one LUT refresh per display frame)
+     */
+    private static final int LUT_FRAME_DELAY = 1000 / 60;
+    private static final int NO_LUT_CHANGE = -2;
+    private final Timer lutTimer;
+    private int pendingLutComponent;
+
     /**
      * Constructor
      * 
@@ -282,6 +294,17 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         synchHeader = false;
         updater = new UpdateEventHandler(this, false);
 
+        pendingLutComponent = NO_LUT_CHANGE;
+        lutTimer = new Timer(LUT_FRAME_DELAY, new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                flushLutChanged();
+            }
+        });
+        lutTimer.setRepeats(false);
+
         // GUI stuff
         panel = new JPanel();
 
@@ -358,6 +381,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         // remove listeners
         if (lut != null)
             lut.removeListener(this);
+        lutTimer.stop();
         final Sequence seq = getSequence();
         if (seq != null)
             seq.removeListener(this);
@@ -3156,24 +3180,30 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
     public void addLayer(Painter painter)
     {
         if (!hasLayer(painter))
-        {
-            final Layer layer = new Layer(painter);
+            addLayerInternal(painter);
+    }
 
-            layer.setName("layer " + layerIdGen);
-            layerIdGen++;
+    /**
+     * add layer for specified painter (painter should not already have a layer)
+     */
+    private void addLayerInternal(Painter painter)
+    {
+        final Layer layer = new Layer(painter);
 
-            // listen layer
-            layer.addListener(this);
+        layer.setName("layer " + layerIdGen);
+        layerIdGen++;
 
-            // add to list
-            synchronized (layers)
-            {
-                layers.add(layer);
-            }
+        // listen layer
+        layer.addListener(this);
 
-            // added
-            layerAdded(layer);
+        // add to list
+        synchronized (layers)
+        {
+            layers.add(layer);
         }
+
+        // added
+        layerAdded(layer);
     }
 
     public void removeLayer(Painter painter)
@@ -3181,6 +3211,31 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         removeLayer(getLayer(painter));
     }
 
+    /**
+     * Remove all specified layers in a single operation
+     */
+    protected void removeLayers(List<Layer> toRemove)
+    {
+        if (toRemove.isEmpty())
+            return;
+
+        final HashSet<Layer> set = new HashSet<Layer>(toRemove);
+
+        // remove from list (linear time with a hashed collection)
+        synchronized (layers)
+        {
+            layers.removeAll(set);
+        }
+
+        for (Layer layer : set)
+        {
+            // stop listening layer
+            layer.removeListener(this);
+            // removed
+            layerRemoved(layer);
+        }
+    }
+
     public void removeLayer(Layer layer)
     {
         if (hasLayer(layer))
@@ -3426,10 +3481,45 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         updater.changed(new IcyCanvasEvent(this, IcyCanvasEventType.POSITION_CHANGED, dim));
     }
 
+    /**
+     * LUT events are coalesced so {@link #lutChanged(int)} is called at most once per display
+     * frame (on the AWT event thread) whatever is the number of LUT changes meanwhile.<br>
+     * As the canvas always reads the current LUT state the latest change wins.
+     */
     @Override
     public void lutChanged(LUTEvent event)
     {
-        lutChanged(event.getComponent());
+        final int component = event.getComponent();
+
+        synchronized (lutTimer)
+        {
+            // merge with pending change
+            if (pendingLutComponent == NO_LUT_CHANGE)
+                pendingLutComponent = component;
+            else if (pendingLutComponent != component)
+                pendingLutComponent = -1;
+
+            // first change for this frame --> schedule refresh
+            if (!lutTimer.isRunning())
+                lutTimer.start();
+        }
+    }
+
+    /**
+     * Process the pending (coalesced) LUT change
+     */
+    void flushLutChanged()
+    {
+        final int component;
+
+        synchronized (lutTimer)
+        {
+            component = pendingLutComponent;
+            pendingLutComponent = NO_LUT_CHANGE;
+        }
+
+        if (component != NO_LUT_CHANGE)
+            lutChanged(component);
     }
 
     /**
@@ -3544,15 +3634,15 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
                 {
                     if (sequence != null)
                     {
-                        final ArrayList<Painter> layersPainter = getLayersPainter();
+                        final HashSet<Painter> layersPainter = new HashSet<Painter>(getLayersPainter());
 
                         beginUpdate();
                         try
                         {
                             // add layers which are present in sequence and not in canvas
                             for (Painter seqPainter : sequence.getPainters())
-                                if (!layersPainter.contains(seqPainter))
-                                    addLayer(seqPainter);
+                                if (layersPainter.add(seqPainter))
+                                    addLayerInternal(seqPainter);
                         }
                         finally
                         {
@@ -3570,15 +3660,18 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
                 {
                     if (sequence != null)
                     {
-                        final ArrayList<Painter> seqPainters = sequence.getPainters();
+                        final HashSet<Painter> seqPainters = sequence.getPainterSet();
+                        final ArrayList<Layer> toRemove = new ArrayList<Layer>();
+
+                        // remove layers which are not anymore present in sequence
+                        for (Layer layer : getLayers())
+                            if (!seqPainters.contains(layer.getPainter()))
+                                toRemove.add(layer);
 
                         beginUpdate();
                         try
                         {
-                            // remove layers which are not anymore present in sequence
-                            for (Layer layer : getLayers())
-                                if (!seqPainters.contains(layer.getPainter()))
-                                    removeLayer(layer);
+                            removeLayers(toRemove);
                         }
                         finally
                         {
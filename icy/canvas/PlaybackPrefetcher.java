@@ -0,0 +1,466 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.canvas;
+
+import icy.image.ARGBRenderContext;
+import icy.image.IcyBufferedImage;
+import icy.math.FPSMeter;
+import icy.system.thread.CancelToken;
+import icy.system.thread.TaskScheduler;
+import icy.system.thread.TaskScheduler.TaskPriority;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Future;
+
+/**
+ * Playback helper which pre-renders the next frames of a canvas in background.<br>
+ * Frames are rendered as background tasks of the {@link TaskScheduler} into ARGB
+ * {@link BufferedImage} taken from the canvas {@link ARGBRenderContext} so the steady-state
+ * playback loop does not allocate any image.<br>
+ * The canvas takes a ready frame with {@link #take(int, int, int)} (and gives back its previous
+ * image to the render context once painted), reports each displayed frame with
+ * {@link #frameDisplayed()} then requests the following frames with
+ * {@link #prefetch(int, int, int, int, boolean)} (playback direction and step deduced from
+ * successive positions) or {@link #prefetch(int, int, int, int, int, boolean)}.
+ */
+public class PlaybackPrefetcher
+{
+    public static final int DEFAULT_PREFETCH_SIZE = 8;
+
+    private class Frame implements Runnable
+    {
+        /**
+         * frame position
+         */
+        int t;
+        int z;
+        int c;
+
+        /**
+         * rendered image (reused)
+         */
+        BufferedImage image;
+
+        /**
+         * state
+         */
+        Future<?> task;
+        CancelToken token;
+        boolean ready;
+        int generation;
+
+        Frame()
+        {
+            super();
+
+            t = -1;
+            z = -1;
+            c = -1;
+            image = null;
+            task = null;
+            token = null;
+            ready = false;
+            generation = -1;
+        }
+
+        boolean isAt(int t, int z, int c)
+        {
+            return (this.t == t) && (this.z == z) && (this.c == c);
+        }
+
+        boolean isBusy()
+        {
+            return (task != null) && !task.isDone();
+        }
+
+        void free()
+        {
+            t = -1;
+            z = -1;
+            c = -1;
+            ready = false;
+        }
+
+        @Override
+        public void run()
+        {
+            final int frameT;
+            final int frameZ;
+            final int frameC;
+            final int frameGeneration;
+            final CancelToken frameToken;
+            BufferedImage out;
+
+            synchronized (PlaybackPrefetcher.this)
+            {
+                frameT = t;
+                frameZ = z;
+                frameC = c;
+                frameGeneration = generation;
+                frameToken = token;
+                out = image;
+            }
+
+            try
+            {
+                final IcyBufferedImage img = canvas.getImage(frameT, frameZ, frameC);
+
+                if (img == null)
+                    out = null;
+                else if (out != null)
+                    out = img.getARGBImage(canvas.getLut(), out, frameToken);
+                else
+                    out = img.renderARGBImage(canvas.getLut(), context, frameToken);
+            }
+            catch (Exception e)
+            {
+                // we can be in asynch process (sequence closed or modified...), just ignore
+                out = null;
+            }
+
+            synchronized (PlaybackPrefetcher.this)
+            {
+                // keep the buffer for reuse
+                if (out != null)
+                    image = out;
+
+                // frame is valid only if it wasn't reassigned, invalidated nor cancelled meanwhile
+                ready = (out != null) && !frameToken.isCancelled()
+                        && (frameGeneration == PlaybackPrefetcher.this.generation) && isAt(frameT, frameZ, frameC);
+            }
+        }
+    }
+
+    /**
+     * attached canvas
+     */
+    final IcyCanvas canvas;
+    /**
+     * render targets provider
+     */
+    final ARGBRenderContext context;
+
+    /**
+     * internals
+     */
+    private final Frame[] ring;
+    private final int[] wanted;
+    private final FPSMeter fpsMeter;
+    private CancelToken token;
+    int generation;
+    /**
+     * last prefetch position and deduced playback step
+     */
+    private int lastT;
+    private int step;
+
+    /**
+     * Create a new prefetcher for the specified canvas.
+     *
+     * @param canvas
+     *        canvas we want to render frames for
+     * @param context
+     *        render context used by the canvas (frames images come from and return to it)
+     * @param size
+     *        number of frames to render ahead
+     */
+    public PlaybackPrefetcher(IcyCanvas canvas, ARGBRenderContext context, int size)
+    {
+        super();
+
+        this.canvas = canvas;
+        this.context = context;
+
+        ring = new Frame[Math.max(1, size)];
+        for (int i = 0; i < ring.length; i++)
+            ring[i] = new Frame();
+        wanted = new int[ring.length];
+
+        fpsMeter = new FPSMeter();
+        token = new CancelToken();
+        generation = 0;
+        lastT = -1;
+        step = 1;
+    }
+
+    /**
+     * Create a new prefetcher for the specified canvas.
+     */
+    public PlaybackPrefetcher(IcyCanvas canvas, ARGBRenderContext context)
+    {
+        this(canvas, context, DEFAULT_PREFETCH_SIZE);
+    }
+
+    /**
+     * Return the number of frames rendered ahead.
+     */
+    public int getSize()
+    {
+        return ring.length;
+    }
+
+    /**
+     * Return the achieved playback frame rate (displayed frames per second, see
+     * {@link #frameDisplayed()}).
+     */
+    public int getFPS()
+    {
+        synchronized (fpsMeter)
+        {
+            return fpsMeter.getFPS();
+        }
+    }
+
+    /**
+     * Should be called each time a playback frame is displayed (pre-rendered or not) so
+     * {@link #getFPS()} reflects the real playback frame rate.
+     */
+    public void frameDisplayed()
+    {
+        synchronized (fpsMeter)
+        {
+            fpsMeter.update();
+        }
+    }
+
+    /**
+     * Return the playback step deduced from the last positions (1 by default)
+     */
+    public synchronized int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Return the pre-rendered image for the specified position if available.<br>
+     * The returned image is removed from the ring: caller owns it and should give it back to the
+     * render context (see {@link ARGBRenderContext#release(BufferedImage)}) when not displayed
+     * anymore.
+     *
+     * @return pre-rendered ARGB image or <code>null</code> if frame is not yet available
+     */
+    public synchronized BufferedImage take(int t, int z, int c)
+    {
+        for (Frame frame : ring)
+        {
+            if (frame.ready && frame.isAt(t, z, c))
+            {
+                final BufferedImage result = frame.image;
+
+                frame.image = null;
+                frame.free();
+
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Request background rendering of the frames following the specified position.<br>
+     * Playback direction and step are deduced from the previous requested position (forward
+     * play by default) so backward and stepped playback are prefetched too.
+     *
+     * @param t
+     *        current T position
+     * @param z
+     *        current Z position
+     * @param c
+     *        current C position
+     * @param maxT
+     *        maximum T position
+     * @param loop
+     *        if true position wrap around when reaching bounds
+     */
+    public synchronized void prefetch(int t, int z, int c, int maxT, boolean loop)
+    {
+        if ((lastT != -1) && (t != lastT) && (maxT > 0))
+        {
+            int delta = t - lastT;
+
+            // wrapped around ? --> use the shortest way
+            if (loop)
+            {
+                final int size = maxT + 1;
+
+                delta = ((delta % size) + size) % size;
+                if (delta > (size / 2))
+                    delta -= size;
+            }
+
+            step = delta;
+        }
+
+        lastT = t;
+
+        prefetch(t, z, c, maxT, step, loop);
+    }
+
+    /**
+     * Request background rendering of the frames following the specified position.
+     *
+     * @param t
+     *        current T position
+     * @param z
+     *        current Z position
+     * @param c
+     *        current C position
+     * @param maxT
+     *        maximum T position
+     * @param step
+     *        playback direction and step (1 for forward play, -1 for backward play)
+     * @param loop
+     *        if true position wrap around when reaching bounds
+     */
+    public synchronized void prefetch(int t, int z, int c, int maxT, int step, boolean loop)
+    {
+        if ((t < 0) || (maxT < 0) || (step == 0))
+            return;
+
+        int numWanted = 0;
+        int pos = t;
+
+        // compute wanted positions
+        for (int i = 0; i < ring.length; i++)
+        {
+            pos += step;
+
+            if ((pos < 0) || (pos > maxT))
+            {
+                if (!loop)
+                    break;
+
+                pos = (step > 0) ? 0 : maxT;
+            }
+
+            // we came back to current position
+            if (pos == t)
+                break;
+
+            wanted[numWanted++] = pos;
+        }
+
+        // release frames which are not wanted anymore
+        for (Frame frame : ring)
+            if ((frame.t != -1) && !isWanted(numWanted, frame.t, z, c, frame))
+                frame.free();
+
+        // then schedule missing ones
+        for (int i = 0; i < numWanted; i++)
+        {
+            final int wt = wanted[i];
+
+            if (getFrame(wt, z, c) == null)
+            {
+                final Frame frame = getFreeFrame();
+
+                // no more free frame
+                if (frame == null)
+                    break;
+
+                frame.t = wt;
+                frame.z = z;
+                frame.c = c;
+                frame.ready = false;
+                frame.generation = generation;
+                frame.token = token;
+                frame.task = TaskScheduler.getInstance().submit(frame, TaskPriority.BACKGROUND, token);
+            }
+        }
+    }
+
+    private boolean isWanted(int numWanted, int t, int z, int c, Frame frame)
+    {
+        if ((frame.z != z) || (frame.c != c))
+            return false;
+
+        for (int i = 0; i < numWanted; i++)
+            if (wanted[i] == t)
+                return true;
+
+        return false;
+    }
+
+    private Frame getFrame(int t, int z, int c)
+    {
+        for (Frame frame : ring)
+            if (frame.isAt(t, z, c))
+                return frame;
+
+        return null;
+    }
+
+    private Frame getFreeFrame()
+    {
+        for (Frame frame : ring)
+            if ((frame.t == -1) && !frame.isBusy())
+                return frame;
+
+        return null;
+    }
+
+    /**
+     * Invalidate all pre-rendered frames (should be called on LUT or data change).
+     */
+    public synchronized void invalidate()
+    {
+        generation++;
+        // stop pending renderings
+        token.cancel();
+        token = new CancelToken();
+
+        for (Frame frame : ring)
+            frame.free();
+    }
+
+    /**
+     * Invalidate all frames and release images (should be called when playback stops).
+     */
+    public synchronized void clear()
+    {
+        invalidate();
+
+        // give back images
+        for (Frame frame : ring)
+        {
+            if (!frame.isBusy())
+            {
+                context.release(frame.image);
+                frame.image = null;
+            }
+        }
+
+        lastT = -1;
+        step = 1;
+
+        synchronized (fpsMeter)
+        {
+            fpsMeter.reset();
+        }
+    }
+
+    /**
+     * Release resources.
+     */
+    public void shutDown()
+    {
+        clear();
+    }
+}
@@ -24,6 +24,8 @@ import icy.system.thread.ThreadUtil;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.swing.SwingUtilities;
+
 /**
  * @author stephane
  */
@@ -154,7 +156,8 @@ public class UpdateEventHandler
     {
         final EventHierarchicalChecker event = include;
 
-        if (awtDispatch)
+        // already in AWT Dispatch Thread --> dispatch directly (no runnable allocation)
+        if (awtDispatch && !SwingUtilities.isEventDispatchThread())
         {
             // dispatch on AWT Dispatch Thread now
             ThreadUtil.invokeNow(new Runnable()
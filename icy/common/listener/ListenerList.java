@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.common.listener;
+
+import java.lang.reflect.Array;
+import java.util.EventListener;
+
+/**
+ * Copy on write listener list.<br>
+ * Unlike {@link javax.swing.event.EventListenerList} which allocates a new array each time
+ * listeners are retrieved, the listener array is only rebuilt when a listener is added or removed
+ * so event dispatch does not allocate anything.<br>
+ * 
+ * <pre>
+ * for (MyListener listener : listeners.getListeners())
+ *     listener.changed(event);
+ * </pre>
+ */
+public class ListenerList<T extends EventListener>
+{
+    private final Class<T> type;
+    private volatile T[] listeners;
+
+    @SuppressWarnings("unchecked")
+    public ListenerList(Class<T> type)
+    {
+        super();
+
+        this.type = type;
+        listeners = (T[]) Array.newInstance(type, 0);
+    }
+
+    /**
+     * Return the current listeners.<br>
+     * The returned array is shared (it is replaced, never modified, when listeners change) so
+     * it should not be modified.
+     */
+    public T[] getListeners()
+    {
+        return listeners;
+    }
+
+    /**
+     * Return the number of listener
+     */
+    public int getListenerCount()
+    {
+        return listeners.length;
+    }
+
+    public boolean isEmpty()
+    {
+        return listeners.length == 0;
+    }
+
+    /**
+     * Add a listener (null is ignored)
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void add(T listener)
+    {
+        if (listener == null)
+            return;
+
+        final T[] current = listeners;
+        final T[] result = (T[]) Array.newInstance(type, current.length + 1);
+
+        System.arraycopy(current, 0, result, 0, current.length);
+        result[current.length] = listener;
+
+        listeners = result;
+    }
+
+    /**
+     * Remove a listener (last added instance if it has been added several times)
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void remove(T listener)
+    {
+        if (listener == null)
+            return;
+
+        final T[] current = listeners;
+        int index = -1;
+
+        for (int i = current.length - 1; i >= 0; i--)
+        {
+            if (current[i] == listener)
+            {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == -1)
+            return;
+
+        final T[] result = (T[]) Array.newInstance(type, current.length - 1);
+
+        System.arraycopy(current, 0, result, 0, index);
+        System.arraycopy(current, index + 1, result, index, current.length - (index + 1));
+
+        listeners = result;
+    }
+
+    /**
+     * Remove all listeners
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void clear()
+    {
+        listeners = (T[]) Array.newInstance(type, 0);
+    }
+}
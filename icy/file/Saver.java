@@ -26,12 +26,25 @@ import icy.image.colormodel.IcyColorModel;
 import icy.main.Icy;
 import icy.sequence.Sequence;
 import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+import icy.system.thread.Processor;
 import icy.type.DataType;
+import icy.type.collection.array.ByteArrayConvert;
 import icy.util.OMEUtil;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import loci.common.services.ServiceException;
 import loci.formats.FormatException;
@@ -53,6 +66,121 @@ import loci.formats.out.OMETiffWriter;
  */
 public class Saver
 {
+    /**
+     * Plane size (in bytes) above which we save by strip when writer supports it
+     */
+    private static final long STRIP_THRESHOLD = 16 * 1024 * 1024;
+    /**
+     * Wanted strip size (in bytes)
+     */
+    private static final long STRIP_SIZE = 4 * 1024 * 1024;
+    /**
+     * Number of planes (or strips) serialized ahead of the writer
+     */
+    private static final int PIPELINE_DEPTH = Math.max(2, SystemUtil.getAvailableProcessors());
+    /**
+     * Maximum number of files saved in parallel (multiple file save)
+     */
+    private static final int MAX_PARALLEL_FILE = Math.max(1, SystemUtil.getAvailableProcessors());
+
+    /**
+     * Pool of reusable byte buffers for plane serialization
+     */
+    private static class BufferPool
+    {
+        private final BlockingQueue<byte[]> buffers;
+
+        BufferPool(int size)
+        {
+            super();
+
+            buffers = new ArrayBlockingQueue<byte[]>(size);
+        }
+
+        byte[] get(int length)
+        {
+            final byte[] result = buffers.poll();
+
+            if ((result != null) && (result.length == length))
+                return result;
+
+            return new byte[length];
+        }
+
+        void release(byte[] buffer)
+        {
+            if (buffer != null)
+                buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Serialize a plane (or a strip of plane) in interleaved raw data.<br>
+     * When c is -1 all channels are serialized.
+     */
+    private static class PlaneChunk implements Callable<byte[]>
+    {
+        final IcyBufferedImage image;
+        final int imageIndex;
+        final int c;
+        final int y;
+        final int sizeY;
+        final boolean littleEndian;
+        final BufferPool pool;
+        final boolean planeEnd;
+        /**
+         * data can be directly taken from image backing array (no copy)
+         */
+        final boolean direct;
+
+        PlaneChunk(IcyBufferedImage image, int imageIndex, int c, int y, int sizeY, boolean littleEndian,
+                BufferPool pool, boolean planeEnd)
+        {
+            super();
+
+            this.image = image;
+            this.imageIndex = imageIndex;
+            this.c = c;
+            this.y = y;
+            this.sizeY = sizeY;
+            this.littleEndian = littleEndian;
+            this.pool = pool;
+            this.planeEnd = planeEnd;
+
+            // byte data of a single component plane already has the wanted layout
+            direct = (image.getDataType_().getSize() == 1) && (y == 0) && (sizeY == image.getSizeY())
+                    && ((c != -1) || (image.getSizeC() == 1));
+        }
+
+        @Override
+        public byte[] call()
+        {
+            final int sizeX = image.getSizeX();
+            final int sizeType = image.getDataType_().getSize();
+            final int offset = y * sizeX;
+
+            if (direct)
+                return image.getDataXYAsByte((c == -1) ? 0 : c);
+
+            // single channel
+            if (c != -1)
+            {
+                final byte[] result = pool.get(sizeX * sizeY * sizeType);
+                return ByteArrayConvert.toByteArray(image.getDataXY(c), offset, 1, result, 0, 1, -1, littleEndian);
+            }
+
+            final int sizeC = image.getSizeC();
+            final byte[] result = pool.get(sizeX * sizeY * sizeC * sizeType);
+
+            // interleave channel data
+            for (int ch = 0; ch < sizeC; ch++)
+                ByteArrayConvert.toByteArray(image.getDataXY(ch), offset, 1, result, ch * sizeType, sizeC, -1,
+                        littleEndian);
+
+            return result;
+        }
+    }
+
     /**
      * @deprecated use {@link OMEUtil#generateMetaData(int, int, int, int, int, DataType, boolean)}
      *             instead
@@ -333,11 +461,7 @@ public class Saver
 
             if (multipleFile)
             {
-                // so we won't create it for each image
-                final IFormatWriter writer = getWriter(file);
-
                 // save as severals images
-                final DecimalFormat decimalFormat = new DecimalFormat("0000");
                 final String fileName = FileUtil.getFileName(filePath, false);
                 final String fileBaseDirectory = FileUtil.getDirectory(filePath) + fileName;
                 final String filePathWithoutExt = fileBaseDirectory + FileUtil.separator + fileName;
@@ -346,17 +470,9 @@ public class Saver
                 // create output directory
                 FileUtil.createDir(fileBaseDirectory);
 
-                for (int t = tMin; t <= tMax; t++)
-                {
-                    for (int z = zMin; z <= zMax; z++)
-                    {
-                        final String filename = filePathWithoutExt + "_t" + decimalFormat.format(t) + "_z"
-                                + decimalFormat.format(z) + fileDotExt;
-
-                        // save as single image file
-                        save(writer, sequence, filename, z, z, t, t, fps, saveFrame);
-                    }
-                }
+                // files are independent so we save them in parallel
+                saveMultipleFiles(sequence, file, filePathWithoutExt, fileDotExt, zMin, zMax, tMin, tMax, fps,
+                        saveFrame);
 
                 // change sequence name
                 sequence.setName(fileName);
@@ -393,6 +509,142 @@ public class Saver
         }
     }
 
+    /**
+     * Save each image of the specified range in a separate file.<br>
+     * Files are saved in parallel (with bounded concurrency) using a pool of writers, progress and
+     * cancellation are handled from the calling thread.<br>
+     * On cancel running writers are interrupted and incomplete files are deleted. Errors are
+     * collected and thrown as a single {@link IOException} at the end (caller reports it).
+     */
+    private static void saveMultipleFiles(final Sequence sequence, File file, String filePathWithoutExt,
+            String fileDotExt, int zMin, int zMax, int tMin, int tMax, final int fps, FileFrame saveFrame)
+            throws InterruptedException, ExecutionException, IOException
+    {
+        final DecimalFormat decimalFormat = new DecimalFormat("0000");
+        final BlockingQueue<IFormatWriter> writers = new ArrayBlockingQueue<IFormatWriter>(MAX_PARALLEL_FILE);
+
+        // so we won't create it for each image
+        for (int i = 0; i < MAX_PARALLEL_FILE; i++)
+            writers.add(getWriter(file));
+
+        final Processor processor = new Processor(MAX_PARALLEL_FILE, MAX_PARALLEL_FILE);
+        final LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+        // submitted and correctly saved files
+        final List<File> submitted = new ArrayList<File>();
+        final List<File> saved = Collections.synchronizedList(new ArrayList<File>());
+        // per file errors
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+        boolean completed = false;
+
+        try
+        {
+            for (int t = tMin; t <= tMax; t++)
+            {
+                for (int z = zMin; z <= zMax; z++)
+                {
+                    // wait for oldest file to be saved if we have too many pending ones
+                    while (pending.size() >= (MAX_PARALLEL_FILE * 2))
+                    {
+                        pending.removeFirst().get();
+                        if (saveFrame != null)
+                            saveFrame.incPosition();
+                    }
+
+                    if ((saveFrame != null) && saveFrame.isCancelRequested())
+                        return;
+
+                    final String filename = filePathWithoutExt + "_t" + decimalFormat.format(t) + "_z"
+                            + decimalFormat.format(z) + fileDotExt;
+                    final File outFile = new File(filename);
+                    final int fz = z;
+                    final int ft = t;
+
+                    submitted.add(outFile);
+                    pending.add(processor.submit(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                final IFormatWriter writer = writers.take();
+
+                                try
+                                {
+                                    // save as single image file
+                                    saveInternal(writer, sequence, filename, fz, fz, ft, ft, fps, null);
+                                    saved.add(outFile);
+                                }
+                                catch (InterruptedException e)
+                                {
+                                    // cancelled
+                                }
+                                catch (Exception e)
+                                {
+                                    errors.add(new IOException("Can't save '" + filename + "'", e));
+                                }
+                                finally
+                                {
+                                    writers.put(writer);
+                                }
+                            }
+                            catch (InterruptedException e)
+                            {
+                                // cancelled
+                            }
+                        }
+                    }));
+                }
+            }
+
+            // wait for remaining files
+            while (!pending.isEmpty())
+            {
+                if ((saveFrame != null) && saveFrame.isCancelRequested())
+                    return;
+
+                pending.removeFirst().get();
+                if (saveFrame != null)
+                    saveFrame.incPosition();
+            }
+
+            completed = true;
+        }
+        finally
+        {
+            if (completed)
+                processor.shutdown();
+            else
+            {
+                // cancel files not yet saved and interrupt running writers
+                for (Future<?> future : pending)
+                    future.cancel(true);
+                processor.shutdownNow();
+                // wait for writers to terminate before cleaning
+                boolean terminated = false;
+                while (!terminated)
+                    terminated = processor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+
+            // remove incomplete files
+            for (File f : submitted)
+                if (!saved.contains(f) && f.exists())
+                    f.delete();
+        }
+
+        // throw all errors at once (first one as cause)
+        if (!errors.isEmpty())
+        {
+            final StringBuilder message = new StringBuilder();
+
+            message.append(errors.size() + " of " + submitted.size() + " file(s) could not be saved :");
+            for (Exception e : errors)
+                message.append("\n" + e.getMessage());
+
+            throw new IOException(message.toString(), errors.get(0));
+        }
+    }
+
     /**
      * Save a single image from bytes buffer to the specified file.
      */
@@ -525,6 +777,34 @@ public class Saver
      */
     private static void save(IFormatWriter formatWriter, Sequence sequence, String filename, int zMin, int zMax,
             int tMin, int tMax, int fps, FileFrame saveFrame)
+    {
+        try
+        {
+            saveInternal(formatWriter, sequence, filename, zMin, zMax, tMin, tMax, fps, saveFrame);
+        }
+        catch (Exception e)
+        {
+            IcyExceptionHandler.showErrorMessage(e, true);
+            new FailedAnnounceFrame("Failed to save image (see output console for detail)", 15);
+            return;
+        }
+    }
+
+    /**
+     * Save the specified sequence in a single file without any GUI feedback (no progress frame,
+     * no recent file entry, sequence name is not modified).<br>
+     * Errors are thrown instead of being displayed so this method can be used in headless mode.
+     */
+    public static void saveNoGui(Sequence sequence, File file) throws FormatException, IOException,
+            ServiceException, InterruptedException, ExecutionException
+    {
+        saveInternal(null, sequence, file.getAbsolutePath(), 0, sequence.getSizeZ() - 1, 0, sequence.getSizeT() - 1,
+                15, null);
+    }
+
+    private static void saveInternal(IFormatWriter formatWriter, Sequence sequence, String filename, int zMin,
+            int zMax, int tMin, int tMax, int fps, FileFrame saveFrame) throws FormatException, IOException,
+            ServiceException, InterruptedException, ExecutionException
     {
         final File file = new File(filename);
         final IFormatWriter writer;
@@ -535,85 +815,161 @@ public class Saver
         else
             writer = formatWriter;
 
+        if (writer == null)
+            throw new FormatException("Can't find a writer for file '" + filename + "'");
+
+        // forced ? first delete the file else LOCI won't save it
+        if (file.exists())
+            file.delete();
+
+        // Some image viewer needs interleaved channel data to correctly read image.
+        // win XP system viewer for instance
+        final boolean interleaved = true;
+        final boolean separateChannel = getSeparateChannelFlag(writer, sequence.getColorModel());
+
+        // set settings
+        writer.setFramesPerSecond(fps);
+        // generate metadata
+        writer.setMetadataRetrieve(OMEUtil.generateMetaData(sequence, (zMax - zMin) + 1, (tMax - tMin) + 1,
+                separateChannel));
+        // interleaved flag
+        writer.setInterleaved(interleaved);
+        // set id
+        writer.setId(filename);
+        // init
+        writer.setSeries(0);
+        // usually give better save performance
+        writer.setWriteSequentially(true);
+
+        // get endianess
+        final boolean littleEndian = !writer.getMetadataRetrieve().getPixelsBinDataBigEndian(0, 0).booleanValue();
+
         try
         {
-            // forced ? first delete the file else LOCI won't save it
-            if (file.exists())
-                file.delete();
+            // serialize planes in background while writing
+            savePlanes(writer, sequence, zMin, zMax, tMin, tMax, separateChannel, littleEndian, saveFrame);
+        }
+        finally
+        {
+            // always close writer
+            writer.close();
+        }
+    }
+
+    /**
+     * Save the specified range of images through the writer.<br>
+     * Planes (or strips of plane for large images when the writer supports it) are serialized in
+     * pooled buffers by background threads while the calling thread writes them in XYCZT order, so
+     * data conversion and disk I/O overlap.
+     */
+    private static void savePlanes(IFormatWriter writer, Sequence sequence, int zMin, int zMax, int tMin, int tMax,
+            boolean separateChannel, boolean littleEndian, FileFrame saveFrame) throws FormatException, IOException,
+            InterruptedException, ExecutionException
+    {
+        final int sizeX = sequence.getSizeX();
+        final int sizeY = sequence.getSizeY();
+        final int sizeC = sequence.getSizeC();
+        final long planeSize = (long) sizeX * (long) sizeY * sequence.getDataType_().getSize()
+                * (separateChannel ? 1 : sizeC);
+        final int stripSizeY;
+
+        // TIFF writer supports strip writing
+        if ((writer instanceof OMETiffWriter) && (planeSize > STRIP_THRESHOLD))
+            stripSizeY = (int) Math.max(1, (sizeY * STRIP_SIZE) / planeSize);
+        else
+            stripSizeY = sizeY;
 
-            final int sizeC = sequence.getSizeC();
-
-            // Some image viewer needs interleaved channel data to correctly read image.
-            // win XP system viewer for instance
-            final boolean interleaved = true;
-            final boolean separateChannel = getSeparateChannelFlag(writer, sequence.getColorModel());
-
-            // set settings
-            writer.setFramesPerSecond(fps);
-            // generate metadata
-            writer.setMetadataRetrieve(OMEUtil.generateMetaData(sequence, (zMax - zMin) + 1, (tMax - tMin) + 1,
-                    separateChannel));
-            // interleaved flag
-            writer.setInterleaved(interleaved);
-            // set id
-            writer.setId(filename);
-            // init
-            writer.setSeries(0);
-            // usually give better save performance
-            writer.setWriteSequentially(true);
-
-            // get endianess
-            final boolean littleEndian = !writer.getMetadataRetrieve().getPixelsBinDataBigEndian(0, 0).booleanValue();
-
-            try
+        final BufferPool pool = new BufferPool(PIPELINE_DEPTH + 1);
+        final List<PlaneChunk> chunks = new ArrayList<PlaneChunk>();
+
+        int imageIndex = 0;
+        // XYCZT order is important here (see metadata)
+        for (int t = tMin; t <= tMax; t++)
+        {
+            for (int z = zMin; z <= zMax; z++)
             {
-                int imageIndex = 0;
-                // XYCZT order is important here (see metadata)
-                for (int t = tMin; t <= tMax; t++)
+                final IcyBufferedImage image = sequence.getImage(t, z);
+
+                // separated channel data
+                if (separateChannel)
                 {
-                    for (int z = zMin; z <= zMax; z++)
+                    for (int c = 0; c < sizeC; c++)
                     {
-                        if ((saveFrame != null) && saveFrame.isCancelRequested())
-                            return;
-
-                        final IcyBufferedImage image = sequence.getImage(t, z);
+                        if (image != null)
+                            addChunks(chunks, image, imageIndex, c, stripSizeY, littleEndian, pool, c == (sizeC - 1));
+                        imageIndex++;
+                    }
+                }
+                else
+                {
+                    if (image != null)
+                        addChunks(chunks, image, imageIndex, -1, stripSizeY, littleEndian, pool, true);
+                    imageIndex++;
+                }
+            }
+        }
 
-                        // separated channel data
-                        if (separateChannel)
-                        {
-                            for (int c = 0; c < sizeC; c++)
-                            {
-                                if (image != null)
-                                    writer.saveBytes(imageIndex, image.getRawData(c, littleEndian));
+        final int numChunk = chunks.size();
 
-                                imageIndex++;
-                            }
-                        }
-                        else
-                        {
-                            if (image != null)
-                                writer.saveBytes(imageIndex, image.getRawData(littleEndian, interleaved));
-                            // ((BufferedImageWriter) writer).saveImage(imageIndex, image);
+        // single plane (multiple file save) --> no need to pipeline
+        if (numChunk == 1)
+        {
+            writer.saveBytes(chunks.get(0).imageIndex, chunks.get(0).call());
+            if (saveFrame != null)
+                saveFrame.incPosition();
+            return;
+        }
 
-                            imageIndex++;
-                        }
+        final Processor processor = new Processor(PIPELINE_DEPTH, Math.max(1, PIPELINE_DEPTH - 1));
+        final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+        int next = 0;
 
-                        if (saveFrame != null)
-                            saveFrame.incPosition();
-                    }
-                }
-            }
-            finally
+        try
+        {
+            for (int i = 0; i < numChunk; i++)
             {
-                // always close writer
-                writer.close();
+                // keep serialization ahead of writing (bounded by pool size)
+                while ((next < numChunk) && ((next - i) < PIPELINE_DEPTH))
+                    pending.add(processor.submit(chunks.get(next++)));
+
+                if ((saveFrame != null) && saveFrame.isCancelRequested())
+                    return;
+
+                final PlaneChunk chunk = chunks.get(i);
+                final byte[] data = pending.removeFirst().get();
+
+                if (chunk.sizeY == sizeY)
+                    writer.saveBytes(chunk.imageIndex, data);
+                else
+                    writer.saveBytes(chunk.imageIndex, data, 0, chunk.y, sizeX, chunk.sizeY);
+
+                // buffer can be reused now
+                if (!chunk.direct)
+                    pool.release(data);
+
+                if (chunk.planeEnd && (saveFrame != null))
+                    saveFrame.incPosition();
             }
         }
-        catch (Exception e)
+        finally
         {
-            IcyExceptionHandler.showErrorMessage(e, true);
-            new FailedAnnounceFrame("Failed to save image (see output console for detail)", 15);
-            return;
+            // cancel remaining serialization
+            for (Future<byte[]> future : pending)
+                future.cancel(true);
+            processor.shutdownNow();
+        }
+    }
+
+    private static void addChunks(List<PlaneChunk> chunks, IcyBufferedImage image, int imageIndex, int c,
+            int stripSizeY, boolean littleEndian, BufferPool pool, boolean planeEnd)
+    {
+        final int sizeY = image.getSizeY();
+
+        for (int y = 0; y < sizeY; y += stripSizeY)
+        {
+            final int h = Math.min(stripSizeY, sizeY - y);
+            chunks.add(new PlaneChunk(image, imageIndex, c, y, h, littleEndian, pool, planeEnd
+                    && ((y + h) == sizeY)));
         }
     }
 }
@@ -27,7 +27,9 @@ import icy.image.lut.LUTBandEvent;
 import icy.image.lut.LUTBandEvent.LUTBandEventType;
 import icy.image.lut.LUTBandListener;
 import icy.math.Scaler;
-import icy.system.thread.SingleProcessor;
+import icy.system.thread.CancelToken;
+import icy.system.thread.TaskScheduler;
+import icy.system.thread.TaskScheduler.TaskPriority;
 import icy.util.ColorUtil;
 import icy.util.EventUtil;
 import icy.util.StringUtil;
@@ -408,8 +410,8 @@ public class ScalerViewer extends JPanel implements LUTBandListener
     /**
      * internals
      */
-    private final SingleProcessor processor;
     private final Runnable histoUpdater;
+    private CancelToken histoToken;
     String message;
 
     /**
@@ -424,8 +426,7 @@ public class ScalerViewer extends JPanel implements LUTBandListener
 
         message = "";
         scalerMapPositionListeners = new EventListenerList();
-        processor = new SingleProcessor(true);
-        processor.setPriority(Thread.MIN_PRIORITY);
+        histoToken = null;
         histoUpdater = new Runnable()
         {
             @Override
@@ -434,7 +435,7 @@ public class ScalerViewer extends JPanel implements LUTBandListener
                 try
                 {
                     // refresh histogram
-                    refreshHistoDataInternal();
+                    refreshHistoDataInternal(getHistoToken());
                 }
                 catch (Exception e)
                 {
@@ -483,31 +484,57 @@ public class ScalerViewer extends JPanel implements LUTBandListener
 
     public void refreshHistoData()
     {
+        final CancelToken token = new CancelToken();
+
+        synchronized (histoUpdater)
+        {
+            // cancel previous calculation
+            if (histoToken != null)
+                histoToken.cancel();
+            histoToken = token;
+        }
+
         // we want background refresh
-        processor.addTask(histoUpdater);
+        TaskScheduler.getInstance().submit(histoUpdater, TaskPriority.BACKGROUND, token);
     }
 
-    // this method is called by processor, we don't mind about exception here
-    void refreshHistoDataInternal()
+    CancelToken getHistoToken()
     {
-        // init histoGram
-        histogram.reset();
+        synchronized (histoUpdater)
+        {
+            return histoToken;
+        }
+    }
 
-        if (samplesProducer != null)
+    // this method is called by scheduler, we don't mind about exception here
+    void refreshHistoDataInternal(CancelToken token)
+    {
+        // only one calculation at once (previous one is cancelled so it ends quickly)
+        synchronized (histogram)
         {
-            // we can have *many* samples --> no duplication wanted
-            samplesProducer.requestSamples();
-            while (samplesProducer.hasNextSample())
+            // need to be recalculated so don't waste time here...
+            if ((token == null) || token.isCancelled())
+                return;
+
+            // init histoGram
+            histogram.reset();
+
+            if (samplesProducer != null)
             {
-                // need to be recalculated so don't waste time here...
-                if (processor.hasWaitingTasks())
-                    return;
+                // we can have *many* samples --> no duplication wanted
+                samplesProducer.requestSamples();
+                while (samplesProducer.hasNextSample())
+                {
+                    // need to be recalculated so don't waste time here...
+                    if (token.isCancelled())
+                        return;
 
-                histogram.addValue(samplesProducer.nextSample());
+                    histogram.addValue(samplesProducer.nextSample());
+                }
             }
-        }
 
-        histogram.done();
+            histogram.done();
+        }
     }
 
     /**
@@ -65,6 +65,7 @@ public class TNavigationPanel extends JPanel
     final IcyButton play, stop;
     final IcyToggleButton loop;
     final JSpinner frameRate;
+    final JLabel frameRateLabel;
 
     final Timer timer;
 
@@ -212,7 +213,7 @@ public class TNavigationPanel extends JPanel
         final JPanel rightPanel = new JPanel();
         rightPanel.setLayout(new BoxLayout(rightPanel, BoxLayout.LINE_AXIS));
 
-        final JLabel frameRateLabel = new JLabel("FPS");
+        frameRateLabel = new JLabel("FPS");
         frameRateLabel.setToolTipText("Frames Per Second");
 
         rightPanel.add(rightLabel);
@@ -267,6 +268,48 @@ public class TNavigationPanel extends JPanel
         timer.setDelay(delay);
     }
 
+    /**
+     * Return true if playback is running
+     */
+    public boolean isPlaying()
+    {
+        return timer.isRunning();
+    }
+
+    /**
+     * Return true if loop playback is enabled
+     */
+    public boolean isLoopEnabled()
+    {
+        return loop.isSelected();
+    }
+
+    /**
+     * Return the wanted playback frame rate
+     */
+    public int getFrameRate()
+    {
+        return ((Integer) frameRate.getValue()).intValue();
+    }
+
+    /**
+     * Display the achieved playback frame rate (as reported by the canvas)
+     */
+    public void setAchievedFrameRate(final int fps)
+    {
+        ThreadUtil.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (fps > 0)
+                    frameRateLabel.setToolTipText("Frames Per Second (achieved : " + fps + ")");
+                else
+                    frameRateLabel.setToolTipText("Frames Per Second");
+            }
+        });
+    }
+
     /**
      * @see icy.gui.component.IcySlider#setPaintLabels(boolean)
      */
@@ -21,11 +21,14 @@ package icy.image;
 import icy.image.lut.LUT;
 import icy.math.Scaler;
 import icy.system.SystemUtil;
-import icy.system.thread.Processor;
+import icy.system.thread.CancelToken;
+import icy.system.thread.TaskScheduler;
+import icy.system.thread.TaskScheduler.TaskPriority;
 import icy.system.thread.ThreadUtil;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author Stephane
@@ -38,14 +41,10 @@ class ARGBImageBuilder
     private class BlockBuilder implements Runnable
     {
         /**
-         * working buffer
+         * working buffers (kept between builds)
          */
         int[][] componentValues;
-
-        /**
-         * processor
-         */
-        private Processor processor;
+        int[] input;
 
         /**
          * processing flag
@@ -68,12 +67,7 @@ class ARGBImageBuilder
 
             // default
             componentValues = new int[0][0];
-
-            // no queue
-            processor = new Processor(1, 1);
-            // don't change priority else our image won't never be build if
-            // normal priority thread take all available time
-            // processor.setPriority(Processor.MIN_PRIORITY + 1);
+            input = new int[0];
             processing = false;
         }
 
@@ -114,19 +108,33 @@ class ARGBImageBuilder
 
             // prepare variables
             prepare(image, lut, dest, offset, length);
-            // add task
-            final boolean result = processor.addTask(this, false);
 
-            // task not added ?
-            if (!result)
+            // already in a scheduler task --> build here so we never wait for others workers
+            if (TaskScheduler.isSchedulerThread())
+            {
+                run();
+                return true;
+            }
+
+            try
+            {
+                // interactive rendering has the highest priority
+                TaskScheduler.getInstance().submit(this, TaskPriority.INTERACTIVE);
+            }
+            catch (RejectedExecutionException e)
             {
+                // task not added
+                clean();
+
                 synchronized (this)
                 {
                     processing = false;
                 }
+
+                return false;
             }
 
-            return result;
+            return true;
         }
 
         @Override
@@ -134,9 +142,12 @@ class ARGBImageBuilder
         {
             try
             {
-                // rebuild buffer if needed
-                if (componentValues.length != numComponents)
+                // grow buffers if needed
+                if (componentValues.length < numComponents)
+                {
                     componentValues = new int[numComponents][BLOC_SIZE];
+                    input = new int[numComponents];
+                }
 
                 // update output image buffer
                 final Scaler[] scalers = lut.getScalers();
@@ -147,7 +158,7 @@ class ARGBImageBuilder
                     scalers[comp].scale(image.getDataXY(comp), offset, componentValues[comp], 0, length, signed);
 
                 // build ARGB destination buffer
-                lut.getColorSpace().fillARGBBuffer(componentValues, dest, offset, length);
+                lut.getColorSpace().fillARGBBuffer(componentValues, dest, offset, length, input);
             }
             catch (Exception E)
             {
@@ -191,6 +202,15 @@ class ARGBImageBuilder
     }
 
     synchronized BufferedImage buildARGBImage(IcyBufferedImage image, LUT lut, BufferedImage out)
+    {
+        return buildARGBImage(image, lut, out, null);
+    }
+
+    /**
+     * Build ARGB image, stop sending blocks as soon as the specified token is cancelled (result is
+     * then incomplete).
+     */
+    synchronized BufferedImage buildARGBImage(IcyBufferedImage image, LUT lut, BufferedImage out, CancelToken token)
     {
         // planar size
         final int imageSize = image.getSizeX() * image.getSizeY();
@@ -202,13 +222,17 @@ class ARGBImageBuilder
         int offset = 0;
         for (int i = 0; i < step; i++)
         {
+            // superseded --> stop here
+            if ((token != null) && token.isCancelled())
+                break;
+
             // build bloc
             sendBuild(image, lut, dest, offset, BLOC_SIZE);
             offset += BLOC_SIZE;
         }
 
         // last bloc
-        if (offset < imageSize)
+        if ((offset < imageSize) && ((token == null) || !token.isCancelled()))
             sendBuild(image, lut, dest, offset, imageSize - offset);
 
         // wait until image is built
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedList;
+
+/**
+ * Render target pool used for ARGB image rendering.<br>
+ * A rendering loop acquires a target with {@link #acquire(int, int)} (or through
+ * {@link IcyBufferedImage#renderARGBImage(icy.image.lut.LUT, ARGBRenderContext, icy.system.thread.CancelToken)}
+ * ) and gives back the previously displayed image with {@link #release(BufferedImage)} so the
+ * steady-state loop does not allocate any image.<br>
+ * A released image may still be painted so it is only reused once the next paint completed
+ * (reported with {@link #painted()}).
+ */
+public class ARGBRenderContext
+{
+    public static final int DEFAULT_POOL_SIZE = 2;
+
+    private final LinkedList<BufferedImage> pool;
+    /**
+     * released targets waiting for the next paint
+     */
+    private final LinkedList<BufferedImage> pending;
+    private final int poolSize;
+    private long allocationCount;
+
+    /**
+     * Create a render context keeping at most <code>poolSize</code> free targets.
+     */
+    public ARGBRenderContext(int poolSize)
+    {
+        super();
+
+        this.poolSize = Math.max(1, poolSize);
+        pool = new LinkedList<BufferedImage>();
+        pending = new LinkedList<BufferedImage>();
+        allocationCount = 0;
+    }
+
+    public ARGBRenderContext()
+    {
+        this(DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Return a free ARGB render target of specified size (allocated only if no pooled target
+     * fits).
+     */
+    public synchronized BufferedImage acquire(int width, int height)
+    {
+        while (!pool.isEmpty())
+        {
+            final BufferedImage result = pool.removeFirst();
+
+            if ((result.getWidth() == width) && (result.getHeight() == height))
+                return result;
+
+            // size changed --> drop it
+        }
+
+        allocationCount++;
+
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Give back a render target so it can be reused (should not be used anymore by caller).<br>
+     * The target is actually reused only after the next {@link #painted()} call.
+     */
+    public synchronized void release(BufferedImage image)
+    {
+        if ((image == null) || (image.getType() != BufferedImage.TYPE_INT_ARGB))
+            return;
+
+        pending.addLast(image);
+
+        // no paint for a while --> just drop the oldest ones (never reuse them)
+        while (pending.size() > poolSize)
+            pending.removeFirst();
+    }
+
+    /**
+     * Should be called when a paint of the current image completed: previously released targets
+     * are not painted anymore and can be reused.
+     */
+    public synchronized void painted()
+    {
+        while (!pending.isEmpty())
+            pool.addLast(pending.removeFirst());
+
+        // keep pool bounded
+        while (pool.size() > poolSize)
+            pool.removeFirst();
+    }
+
+    /**
+     * Release all pooled targets
+     */
+    public synchronized void clear()
+    {
+        pool.clear();
+        pending.clear();
+    }
+
+    /**
+     * Return the number of render targets allocated by this context (for allocation monitoring).
+     */
+    public synchronized long getAllocationCount()
+    {
+        return allocationCount;
+    }
+}
@@ -21,6 +21,7 @@ package icy.image;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.common.listener.ListenerList;
 import icy.image.IcyBufferedImageEvent.IcyBufferedImageEventType;
 import icy.image.colormap.IcyColorMap;
 import icy.image.colormap.IcyColorMap.IcyColorMapType;
@@ -32,6 +33,7 @@ import icy.image.lut.LUT;
 import icy.math.ArrayMath;
 import icy.math.MathUtil;
 import icy.math.Scaler;
+import icy.system.thread.CancelToken;
 import icy.type.DataType;
 import icy.type.TypeUtil;
 import icy.type.collection.array.Array1DUtil;
@@ -60,7 +62,6 @@ import javax.media.jai.Interpolation;
 import javax.media.jai.RenderedOp;
 import javax.media.jai.operator.ScaleDescriptor;
 import javax.swing.SwingConstants;
-import javax.swing.event.EventListenerList;
 
 import loci.formats.FormatException;
 import loci.formats.IFormatReader;
@@ -309,10 +310,6 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         final Object[] data = Array2DUtil.createArray(dataType, sizeC);
         final IcyColorMap[] colormaps = new IcyColorMap[effSizeC];
 
-        // allocate array
-        for (int i = 0; i < sizeC; i++)
-            data[i] = Array1DUtil.createArray(dataType, sizeXY);
-
         for (int effC = 0; effC < effSizeC; effC++)
         {
             final byte[] byteData = reader.openBytes(reader.getIndex(z, effC, t));
@@ -321,23 +318,34 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             final int c = effC * rgbChanCount;
             final int componentByteLen = byteData.length / rgbChanCount;
 
-            // build data array
-            int inOffset = 0;
-            if (interleaved)
+            // byte data with a single component --> directly use the reader buffer (no copy)
+            if ((dataType.getSize() == 1) && (rgbChanCount == 1) && (byteData.length == sizeXY))
+                data[c] = byteData;
+            else
             {
+                // allocate array
                 for (int sc = 0; sc < rgbChanCount; sc++)
+                    data[c + sc] = Array1DUtil.createArray(dataType, sizeXY);
+
+                // build data array
+                int inOffset = 0;
+                if (interleaved)
                 {
-                    ByteArrayConvert.byteArrayTo(byteData, inOffset, rgbChanCount, data[c + sc], 0, 1,
-                            componentByteLen, little);
-                    inOffset++;
+                    for (int sc = 0; sc < rgbChanCount; sc++)
+                    {
+                        ByteArrayConvert.byteArrayTo(byteData, inOffset, rgbChanCount, data[c + sc], 0, 1,
+                                componentByteLen, little);
+                        inOffset++;
+                    }
                 }
-            }
-            else
-            {
-                for (int sc = 0; sc < rgbChanCount; sc++)
+                else
                 {
-                    ByteArrayConvert.byteArrayTo(byteData, inOffset, 1, data[c + sc], 0, 1, componentByteLen, little);
-                    inOffset += componentByteLen;
+                    for (int sc = 0; sc < rgbChanCount; sc++)
+                    {
+                        ByteArrayConvert.byteArrayTo(byteData, inOffset, 1, data[c + sc], 0, 1, componentByteLen,
+                                little);
+                        inOffset += componentByteLen;
+                    }
                 }
             }
 
@@ -474,7 +482,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     /**
      * listeners
      */
-    private final EventListenerList listeners;
+    private final ListenerList<IcyBufferedImageListener> listeners;
 
     /**
      * Build an Icy formatted BufferedImage, takes an IcyColorModel and a WritableRaster as input
@@ -492,7 +500,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         internalLut = new LUT(cm);
 
         updater = new UpdateEventHandler(this, false);
-        listeners = new EventListenerList();
+        listeners = new ListenerList<IcyBufferedImageListener>(IcyBufferedImageListener.class);
 
         // add listener to colorModel
         cm.addListener(this);
@@ -620,12 +628,34 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
      * {@link BufferedImage} is fixed to ARGB type (TYPE_INT_ARGB)
      */
     public BufferedImage getARGBImage(LUT lut, BufferedImage out)
+    {
+        return getARGBImage(lut, out, null);
+    }
+
+    /**
+     * Render the current {@link IcyBufferedImage} into a ARGB render target taken from the specified
+     * context (see {@link ARGBRenderContext}).<br>
+     * The returned image should be given back to the context when not anymore used so the steady
+     * state rendering does not allocate any image.<br>
+     * lut {@link LUT} is used for color calculation (internal lut is used if null).<br>
+     * Rendering stops as soon as the specified token (can be null) is cancelled.
+     */
+    public BufferedImage renderARGBImage(LUT lut, ARGBRenderContext context, CancelToken token)
+    {
+        return getARGBImage(lut, context.acquire(getWidth(), getHeight()), token);
+    }
+
+    /**
+     * Same as {@link #getARGBImage(LUT, BufferedImage)} except the conversion stops as soon as the
+     * specified token is cancelled (the returned image is then incomplete and should be discarded).
+     */
+    public BufferedImage getARGBImage(LUT lut, BufferedImage out, CancelToken token)
     {
         // use internal lut when no specific lut
         if (lut == null)
-            return argbImageBuilder.buildARGBImage(this, internalLut, out);
+            return argbImageBuilder.buildARGBImage(this, internalLut, out, token);
 
-        return argbImageBuilder.buildARGBImage(this, lut, out);
+        return argbImageBuilder.buildARGBImage(this, lut, out, token);
     }
 
     /**
@@ -3409,18 +3439,18 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
      */
     private void fireChangeEvent(IcyBufferedImageEvent e)
     {
-        for (IcyBufferedImageListener listener : listeners.getListeners(IcyBufferedImageListener.class))
+        for (IcyBufferedImageListener listener : listeners.getListeners())
             listener.imageChanged(e);
     }
 
     public void addListener(IcyBufferedImageListener listener)
     {
-        listeners.add(IcyBufferedImageListener.class, listener);
+        listeners.add(listener);
     }
 
     public void removeListener(IcyBufferedImageListener listener)
     {
-        listeners.remove(IcyBufferedImageListener.class, listener);
+        listeners.remove(listener);
     }
 
     public void beginUpdate()
@@ -21,6 +21,7 @@ package icy.image.colormap;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.common.listener.ListenerList;
 import icy.file.xml.XMLPersistent;
 import icy.image.colormap.IcyColorMapEvent.IcyColorMapEventType;
 import icy.util.ColorUtil;
@@ -28,8 +29,6 @@ import icy.util.XMLUtil;
 
 import java.awt.Color;
 
-import javax.swing.event.EventListenerList;
-
 import org.w3c.dom.Node;
 
 /**
@@ -108,7 +107,7 @@ public class IcyColorMap implements ChangeListener, XMLPersistent
     /**
      * listeners
      */
-    private final EventListenerList listeners;
+    private final ListenerList<IcyColorMapListener> listeners;
 
     /**
      * internal updater
@@ -120,7 +119,7 @@ public class IcyColorMap implements ChangeListener, XMLPersistent
         this.name = name;
         enabled = true;
 
-        listeners = new EventListenerList();
+        listeners = new ListenerList<IcyColorMapListener>(IcyColorMapListener.class);
         updater = new UpdateEventHandler(this, false);
 
         // colormap band
@@ -853,7 +852,7 @@ public class IcyColorMap implements ChangeListener, XMLPersistent
      */
     public void addListener(IcyColorMapListener listener)
     {
-        listeners.add(IcyColorMapListener.class, listener);
+        listeners.add(listener);
     }
 
     /**
@@ -863,7 +862,7 @@ public class IcyColorMap implements ChangeListener, XMLPersistent
      */
     public void removeListener(IcyColorMapListener listener)
     {
-        listeners.remove(IcyColorMapListener.class, listener);
+        listeners.remove(listener);
     }
 
     /**
@@ -871,7 +870,7 @@ public class IcyColorMap implements ChangeListener, XMLPersistent
      */
     public void fireEvent(IcyColorMapEvent e)
     {
-        for (IcyColorMapListener listener : listeners.getListeners(IcyColorMapListener.class))
+        for (IcyColorMapListener listener : listeners.getListeners())
             listener.colorMapChanged(e);
     }
 
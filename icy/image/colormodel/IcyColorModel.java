@@ -21,6 +21,7 @@ package icy.image.colormodel;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.common.listener.ListenerList;
 import icy.image.colormap.IcyColorMap;
 import icy.image.colormodel.IcyColorModelEvent.IcyColorModelEventType;
 import icy.image.colorspace.IcyColorSpace;
@@ -47,7 +48,6 @@ import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 
-import javax.swing.event.EventListenerList;
 
 /**
  * @author stephane
@@ -77,7 +77,7 @@ public abstract class IcyColorModel extends ColorModel implements ScalerListener
     /**
      * listeners
      */
-    private final EventListenerList listeners;
+    private final ListenerList<IcyColorModelListener> listeners;
 
     /**
      * internal updater
@@ -95,7 +95,7 @@ public abstract class IcyColorModel extends ColorModel implements ScalerListener
         if (numComponents == 0)
             throw new IllegalArgumentException("Number of components should be > 0");
 
-        listeners = new EventListenerList();
+        listeners = new ListenerList<IcyColorModelListener>(IcyColorModelListener.class);
         updater = new UpdateEventHandler(this, false);
 
         // data type information
@@ -872,7 +872,7 @@ public abstract class IcyColorModel extends ColorModel implements ScalerListener
      */
     public void addListener(IcyColorModelListener listener)
     {
-        listeners.add(IcyColorModelListener.class, listener);
+        listeners.add(listener);
     }
 
     /**
@@ -882,7 +882,7 @@ public abstract class IcyColorModel extends ColorModel implements ScalerListener
      */
     public void removeListener(IcyColorModelListener listener)
     {
-        listeners.remove(IcyColorModelListener.class, listener);
+        listeners.remove(listener);
     }
 
     /**
@@ -892,7 +892,7 @@ public abstract class IcyColorModel extends ColorModel implements ScalerListener
      */
     public void fireEvent(IcyColorModelEvent e)
     {
-        for (IcyColorModelListener listener : listeners.getListeners(IcyColorModelListener.class))
+        for (IcyColorModelListener listener : listeners.getListeners())
             listener.colorModelChanged(e);
     }
 
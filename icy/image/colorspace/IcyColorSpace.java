@@ -21,6 +21,7 @@ package icy.image.colorspace;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.common.listener.ListenerList;
 import icy.image.colormap.FromRGBColorMap;
 import icy.image.colormap.IcyColorMap;
 import icy.image.colormap.IcyColorMap.IcyColorMapType;
@@ -35,7 +36,6 @@ import icy.type.collection.array.ArrayUtil;
 import java.awt.color.ColorSpace;
 import java.awt.image.ColorModel;
 
-import javax.swing.event.EventListenerList;
 
 /**
  * @author stephane
@@ -69,7 +69,7 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
     /**
      * listeners
      */
-    private final EventListenerList listeners;
+    private final ListenerList<IcyColorSpaceListener> listeners;
 
     /**
      * internal updater
@@ -104,7 +104,7 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
         for (int i = 0; i < 4; i++)
             fromRGBmaps[i] = new FromRGBColorMap(numComponents);
 
-        listeners = new EventListenerList();
+        listeners = new ListenerList<IcyColorSpaceListener>(IcyColorSpaceListener.class);
         updater = new UpdateEventHandler(this, false);
 
         // // alpha is enabled by default
@@ -412,13 +412,20 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
      *        ARGB components buffer ([4][0..size-1])
      */
     public void fillARGBBuffer(int[][] unnormSrc, int[] dest, int offset, int length)
+    {
+        fillARGBBuffer(unnormSrc, dest, offset, length, new int[getNumComponents()]);
+    }
+
+    /**
+     * Same as {@link #fillARGBBuffer(int[][], int[], int, int)} but use the specified scratch buffer
+     * (size &gt;= number of components) so no allocation is done.
+     */
+    public void fillARGBBuffer(int[][] unnormSrc, int[] dest, int offset, int length, int[] input)
     {
         final int numComponents = getNumComponents();
 
         if (numComponents > 0)
         {
-            final int[] input = new int[numComponents];
-
             for (int i = 0; i < length; i++)
             {
                 // get data value
@@ -753,7 +760,7 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
      */
     public void addListener(IcyColorSpaceListener listener)
     {
-        listeners.add(IcyColorSpaceListener.class, listener);
+        listeners.add(listener);
     }
 
     /**
@@ -763,7 +770,7 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
      */
     public void removeListener(IcyColorSpaceListener listener)
     {
-        listeners.remove(IcyColorSpaceListener.class, listener);
+        listeners.remove(listener);
     }
 
     /**
@@ -771,7 +778,7 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
      */
     public void fireEvent(IcyColorSpaceEvent e)
     {
-        for (IcyColorSpaceListener listener : listeners.getListeners(IcyColorSpaceListener.class))
+        for (IcyColorSpaceListener listener : listeners.getListeners())
             listener.colorSpaceChanged(e);
     }
 
@@ -0,0 +1,1116 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image.cursor;
+
+import icy.image.IcyBufferedImage;
+import icy.roi.BooleanMask2D;
+import icy.sequence.Sequence;
+import icy.sequence.VolumetricImage;
+import icy.type.DataType;
+import icy.type.TypeUtil;
+import icy.type.collection.array.Array1DUtil;
+
+import java.awt.Rectangle;
+
+/**
+ * Typed pixel cursor over one component of an image or a volume.<br>
+ * There is one final implementation per {@link DataType} so a loop written once against this
+ * class only sees a single implementation per call site and is specialized by the JIT, unlike
+ * the per pixel <code>switch</code> on {@link DataType} done by
+ * {@link Array1DUtil#getValue(Object, int, DataType)}.<br>
+ * <br>
+ * The cursor iterates over a region (whole plane by default, see {@link #setRegion(Rectangle)}
+ * and {@link #setZRange(int, int)}) optionally restricted to a ROI mask (see
+ * {@link #setMask(BooleanMask2D)}) :<br>
+ * 
+ * <pre>
+ * final PixelCursor cursor = PixelCursor.create(image, 0);
+ * while (cursor.next())
+ *     cursor.set(cursor.get() * 2);
+ * </pre>
+ */
+public abstract class PixelCursor
+{
+    /**
+     * Create a cursor on component c of the specified image.
+     */
+    public static PixelCursor create(IcyBufferedImage image, int c)
+    {
+        return create(new Object[] {image.getDataXY(c)}, image.getDataType_(), image.getSizeX(), image.getSizeY());
+    }
+
+    /**
+     * Create a cursor on component c of the specified volume (all Z planes should be present).
+     */
+    public static PixelCursor create(VolumetricImage volume, int c)
+    {
+        final int sizeZ = volume.getSize();
+
+        if (sizeZ == 0)
+            throw new IllegalArgumentException("PixelCursor.create(..) : empty volume.");
+
+        final Object[] data = new Object[sizeZ];
+        IcyBufferedImage first = null;
+
+        for (int z = 0; z < sizeZ; z++)
+        {
+            final IcyBufferedImage image = volume.getImage(z);
+
+            if (image == null)
+                throw new IllegalArgumentException("PixelCursor.create(..) : missing image at Z = " + z + ".");
+
+            if (first == null)
+                first = image;
+            data[z] = image.getDataXY(c);
+        }
+
+        return create(data, first.getDataType_(), first.getSizeX(), first.getSizeY());
+    }
+
+    /**
+     * Create a cursor on component c of the volume at position t of the specified sequence.
+     */
+    public static PixelCursor create(Sequence sequence, int t, int c)
+    {
+        final VolumetricImage volume = sequence.getVolumetricImage(t);
+
+        if (volume == null)
+            throw new IllegalArgumentException("PixelCursor.create(..) : no volume at T = " + t + ".");
+
+        return create(volume, c);
+    }
+
+    /**
+     * Create a cursor on the specified planes data (one array per Z plane).
+     */
+    public static PixelCursor create(Object[] data, DataType dataType, int sizeX, int sizeY)
+    {
+        switch (dataType)
+        {
+            case UBYTE:
+            {
+                final byte[][] typed = new byte[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (byte[]) data[i];
+                return new UByteCursor(typed, sizeX, sizeY);
+            }
+
+            case BYTE:
+            {
+                final byte[][] typed = new byte[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (byte[]) data[i];
+                return new ByteCursor(typed, sizeX, sizeY);
+            }
+
+            case USHORT:
+            {
+                final short[][] typed = new short[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (short[]) data[i];
+                return new UShortCursor(typed, sizeX, sizeY);
+            }
+
+            case SHORT:
+            {
+                final short[][] typed = new short[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (short[]) data[i];
+                return new ShortCursor(typed, sizeX, sizeY);
+            }
+
+            case UINT:
+            {
+                final int[][] typed = new int[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (int[]) data[i];
+                return new UIntCursor(typed, sizeX, sizeY);
+            }
+
+            case INT:
+            {
+                final int[][] typed = new int[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (int[]) data[i];
+                return new IntCursor(typed, sizeX, sizeY);
+            }
+
+            case ULONG:
+            {
+                final long[][] typed = new long[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (long[]) data[i];
+                return new ULongCursor(typed, sizeX, sizeY);
+            }
+
+            case LONG:
+            {
+                final long[][] typed = new long[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (long[]) data[i];
+                return new LongCursor(typed, sizeX, sizeY);
+            }
+
+            case FLOAT:
+            {
+                final float[][] typed = new float[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (float[]) data[i];
+                return new FloatCursor(typed, sizeX, sizeY);
+            }
+
+            case DOUBLE:
+            {
+                final double[][] typed = new double[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    typed[i] = (double[]) data[i];
+                return new DoubleCursor(typed, sizeX, sizeY);
+            }
+
+            default:
+                throw new IllegalArgumentException("PixelCursor.create(..) : unsupported data type " + dataType);
+        }
+    }
+
+    /**
+     * dimension
+     */
+    protected final int sizeX;
+    protected final int sizeY;
+    protected final int sizeZ;
+
+    /**
+     * iteration region (max values are exclusive)
+     */
+    private int minX;
+    private int minY;
+    private int minZ;
+    private int maxX;
+    private int maxY;
+    private int maxZ;
+
+    /**
+     * optional mask
+     */
+    private boolean[] mask;
+    private int maskX;
+    private int maskY;
+    private int maskW;
+
+    /**
+     * current position
+     */
+    protected int x;
+    protected int y;
+    protected int z;
+    protected int offset;
+
+    protected PixelCursor(int sizeX, int sizeY, int sizeZ)
+    {
+        super();
+
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+
+        minX = 0;
+        minY = 0;
+        minZ = 0;
+        maxX = sizeX;
+        maxY = sizeY;
+        maxZ = sizeZ;
+        mask = null;
+
+        reset();
+    }
+
+    /**
+     * Return the data type handled by this cursor
+     */
+    public abstract DataType getDataType();
+
+    /**
+     * Return value at current position
+     */
+    public abstract double get();
+
+    /**
+     * Set value at current position
+     */
+    public abstract void set(double value);
+
+    /**
+     * Return value at specified position (no bounds check)
+     */
+    public abstract double get(int x, int y, int z);
+
+    /**
+     * Set value at specified position (no bounds check)
+     */
+    public abstract void set(int x, int y, int z, double value);
+
+    /**
+     * Copy the specified row in a double array (allocated if <code>out</code> is null or too
+     * small) and return it.
+     */
+    public abstract double[] getRow(int y, int z, double[] out);
+
+    /**
+     * Set the specified row from a double array.
+     */
+    public abstract void setRow(int y, int z, double[] values);
+
+    /**
+     * Return the backing data array of plane Z (direct typed access, offset = x + y * sizeX).
+     */
+    public abstract Object getPlaneData(int z);
+
+    protected double[] allocRow(double[] out)
+    {
+        if ((out == null) || (out.length < sizeX))
+            return new double[sizeX];
+
+        return out;
+    }
+
+    /**
+     * Restrict iteration to the specified XY region (clipped to image bounds).<br>
+     * Iteration is reset.
+     */
+    public void setRegion(Rectangle region)
+    {
+        if (region == null)
+        {
+            minX = 0;
+            minY = 0;
+            maxX = sizeX;
+            maxY = sizeY;
+        }
+        else
+        {
+            minX = Math.max(0, region.x);
+            minY = Math.max(0, region.y);
+            maxX = Math.min(sizeX, region.x + region.width);
+            maxY = Math.min(sizeY, region.y + region.height);
+        }
+
+        reset();
+    }
+
+    /**
+     * Restrict iteration to the specified Z range (inclusive).<br>
+     * An empty range (zMax < zMin) gives an empty iteration. Iteration is reset.
+     */
+    public void setZRange(int zMin, int zMax)
+    {
+        minZ = Math.max(0, zMin);
+        maxZ = Math.min(sizeZ, zMax + 1);
+        // empty range
+        if (minZ >= maxZ)
+            maxZ = minZ;
+
+        reset();
+    }
+
+    /**
+     * Restrict iteration to pixels contained in the specified mask (applied on each Z plane).<br>
+     * The iteration region is set to the mask bounds and iteration is reset.
+     */
+    public void setMask(BooleanMask2D booleanMask)
+    {
+        if ((booleanMask == null) || (booleanMask.bounds == null))
+        {
+            mask = null;
+            setRegion(null);
+        }
+        else
+        {
+            mask = booleanMask.mask;
+            maskX = booleanMask.bounds.x;
+            maskY = booleanMask.bounds.y;
+            maskW = booleanMask.bounds.width;
+            setRegion(booleanMask.bounds);
+        }
+    }
+
+    /**
+     * Reset iteration (next call to {@link #next()} moves to the first pixel)
+     */
+    public final void reset()
+    {
+        x = minX - 1;
+        y = minY;
+        z = minZ;
+        offset = x + (y * sizeX);
+    }
+
+    /**
+     * Move to the next pixel of the iteration region.<br>
+     * Return false when iteration is done.
+     */
+    public final boolean next()
+    {
+        // empty region or iteration done
+        if ((minX >= maxX) || (minY >= maxY) || (z >= maxZ))
+            return false;
+
+        while (true)
+        {
+            if (++x >= maxX)
+            {
+                x = minX;
+                if (++y >= maxY)
+                {
+                    y = minY;
+                    if (++z >= maxZ)
+                    {
+                        // stay done (tested on entry)
+                        z = maxZ;
+                        return false;
+                    }
+                }
+            }
+
+            if ((mask == null) || mask[(x - maskX) + ((y - maskY) * maskW)])
+                break;
+        }
+
+        offset = x + (y * sizeX);
+
+        return true;
+    }
+
+    /**
+     * Set current position
+     */
+    public final void setPosition(int x, int y, int z)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        offset = x + (y * sizeX);
+    }
+
+    /**
+     * Return value of the neighbor at specified offset from current position.<br>
+     * Coordinates are clamped to image bounds.
+     */
+    public final double getNeighbor(int dx, int dy)
+    {
+        return get(clamp(x + dx, sizeX), clamp(y + dy, sizeY), z);
+    }
+
+    /**
+     * Return value of the neighbor at specified offset from current position.<br>
+     * Coordinates are clamped to volume bounds.
+     */
+    public final double getNeighbor(int dx, int dy, int dz)
+    {
+        return get(clamp(x + dx, sizeX), clamp(y + dy, sizeY), clamp(z + dz, sizeZ));
+    }
+
+    private static int clamp(int value, int size)
+    {
+        if (value < 0)
+            return 0;
+        if (value >= size)
+            return size - 1;
+
+        return value;
+    }
+
+    public final int getX()
+    {
+        return x;
+    }
+
+    public final int getY()
+    {
+        return y;
+    }
+
+    public final int getZ()
+    {
+        return z;
+    }
+
+    /**
+     * Return current offset in plane data (x + y * sizeX)
+     */
+    public final int getOffset()
+    {
+        return offset;
+    }
+
+    public final int getSizeX()
+    {
+        return sizeX;
+    }
+
+    public final int getSizeY()
+    {
+        return sizeY;
+    }
+
+    public final int getSizeZ()
+    {
+        return sizeZ;
+    }
+
+    /**
+     * {@link DataType#UBYTE} cursor
+     */
+    static final class UByteCursor extends PixelCursor
+    {
+        private final byte[][] data;
+
+        UByteCursor(byte[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.UBYTE;
+        }
+
+        @Override
+        public double get()
+        {
+            return (data[z][offset] & 0xFF);
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (byte) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return (data[z][x + (y * sizeX)] & 0xFF);
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (byte) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.byteArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX, false);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToByteArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#BYTE} cursor
+     */
+    static final class ByteCursor extends PixelCursor
+    {
+        private final byte[][] data;
+
+        ByteCursor(byte[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.BYTE;
+        }
+
+        @Override
+        public double get()
+        {
+            return data[z][offset];
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (byte) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return data[z][x + (y * sizeX)];
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (byte) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.byteArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX, true);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToByteArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#USHORT} cursor
+     */
+    static final class UShortCursor extends PixelCursor
+    {
+        private final short[][] data;
+
+        UShortCursor(short[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.USHORT;
+        }
+
+        @Override
+        public double get()
+        {
+            return (data[z][offset] & 0xFFFF);
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (short) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return (data[z][x + (y * sizeX)] & 0xFFFF);
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (short) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.shortArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX, false);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToShortArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#SHORT} cursor
+     */
+    static final class ShortCursor extends PixelCursor
+    {
+        private final short[][] data;
+
+        ShortCursor(short[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.SHORT;
+        }
+
+        @Override
+        public double get()
+        {
+            return data[z][offset];
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (short) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return data[z][x + (y * sizeX)];
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (short) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.shortArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX, true);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToShortArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#UINT} cursor
+     */
+    static final class UIntCursor extends PixelCursor
+    {
+        private final int[][] data;
+
+        UIntCursor(int[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.UINT;
+        }
+
+        @Override
+        public double get()
+        {
+            return (data[z][offset] & 0xFFFFFFFFL);
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (int) (long) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return (data[z][x + (y * sizeX)] & 0xFFFFFFFFL);
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (int) (long) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.intArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX, false);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToIntArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#INT} cursor
+     */
+    static final class IntCursor extends PixelCursor
+    {
+        private final int[][] data;
+
+        IntCursor(int[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.INT;
+        }
+
+        @Override
+        public double get()
+        {
+            return data[z][offset];
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (int) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return data[z][x + (y * sizeX)];
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (int) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.intArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX, true);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToIntArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#ULONG} cursor
+     */
+    static final class ULongCursor extends PixelCursor
+    {
+        private final long[][] data;
+
+        ULongCursor(long[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.ULONG;
+        }
+
+        @Override
+        public double get()
+        {
+            return TypeUtil.unsign(data[z][offset]);
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (long) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return TypeUtil.unsign(data[z][x + (y * sizeX)]);
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (long) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.longArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX, false);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToLongArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#LONG} cursor
+     */
+    static final class LongCursor extends PixelCursor
+    {
+        private final long[][] data;
+
+        LongCursor(long[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.LONG;
+        }
+
+        @Override
+        public double get()
+        {
+            return data[z][offset];
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (long) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return data[z][x + (y * sizeX)];
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (long) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.longArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX, true);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToLongArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#FLOAT} cursor
+     */
+    static final class FloatCursor extends PixelCursor
+    {
+        private final float[][] data;
+
+        FloatCursor(float[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.FLOAT;
+        }
+
+        @Override
+        public double get()
+        {
+            return data[z][offset];
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = (float) value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return data[z][x + (y * sizeX)];
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = (float) value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            return Array1DUtil.floatArrayToDoubleArray(data[z], y * sizeX, result, 0, sizeX);
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            Array1DUtil.doubleArrayToFloatArray(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+
+    /**
+     * {@link DataType#DOUBLE} cursor
+     */
+    static final class DoubleCursor extends PixelCursor
+    {
+        private final double[][] data;
+
+        DoubleCursor(double[][] data, int sizeX, int sizeY)
+        {
+            super(sizeX, sizeY, data.length);
+
+            this.data = data;
+        }
+
+        @Override
+        public DataType getDataType()
+        {
+            return DataType.DOUBLE;
+        }
+
+        @Override
+        public double get()
+        {
+            return data[z][offset];
+        }
+
+        @Override
+        public void set(double value)
+        {
+            data[z][offset] = value;
+        }
+
+        @Override
+        public double get(int x, int y, int z)
+        {
+            return data[z][x + (y * sizeX)];
+        }
+
+        @Override
+        public void set(int x, int y, int z, double value)
+        {
+            data[z][x + (y * sizeX)] = value;
+        }
+
+        @Override
+        public double[] getRow(int y, int z, double[] out)
+        {
+            final double[] result = allocRow(out);
+            System.arraycopy(data[z], y * sizeX, result, 0, sizeX);
+            return result;
+        }
+
+        @Override
+        public void setRow(int y, int z, double[] values)
+        {
+            System.arraycopy(values, 0, data[z], y * sizeX, sizeX);
+        }
+
+        @Override
+        public Object getPlaneData(int z)
+        {
+            return data[z];
+        }
+    }
+}
@@ -21,14 +21,13 @@ package icy.image.lut;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.common.listener.ListenerList;
 import icy.image.colormodel.IcyColorModel;
 import icy.image.colorspace.IcyColorSpace;
 import icy.math.Scaler;
 
 import java.util.ArrayList;
 
-import javax.swing.event.EventListenerList;
-
 public class LUT implements LUTBandListener, ChangeListener
 {
     private ArrayList<LUTBand> lutBands = new ArrayList<LUTBand>();
@@ -42,7 +41,7 @@ public class LUT implements LUTBandListener, ChangeListener
     /**
      * listeners
      */
-    private final EventListenerList listeners;
+    private final ListenerList<LUTListener> listeners;
 
     /**
      * internal updater
@@ -70,7 +69,7 @@ public class LUT implements LUTBandListener, ChangeListener
             lutBands.add(band);
         }
 
-        listeners = new EventListenerList();
+        listeners = new ListenerList<LUTListener>(LUTListener.class);
         updater = new UpdateEventHandler(this, false);
     }
 
@@ -192,7 +191,7 @@ public class LUT implements LUTBandListener, ChangeListener
      */
     public void addListener(LUTListener listener)
     {
-        listeners.add(LUTListener.class, listener);
+        listeners.add(listener);
     }
 
     /**
@@ -202,12 +201,12 @@ public class LUT implements LUTBandListener, ChangeListener
      */
     public void removeListener(LUTListener listener)
     {
-        listeners.remove(LUTListener.class, listener);
+        listeners.remove(listener);
     }
 
     public void fireLUTChanged(LUTEvent e)
     {
-        for (LUTListener lutListener : listeners.getListeners(LUTListener.class))
+        for (LUTListener lutListener : listeners.getListeners())
             lutListener.lutChanged(e);
     }
 
@@ -18,6 +18,7 @@
  */
 package icy.image.lut;
 
+import icy.common.listener.ListenerList;
 import icy.image.colormap.IcyColorMap;
 import icy.image.colorspace.IcyColorSpace;
 import icy.image.colorspace.IcyColorSpaceEvent;
@@ -29,8 +30,6 @@ import icy.math.ScalerEvent;
 import icy.math.ScalerEvent.ScalerEventType;
 import icy.math.ScalerListener;
 
-import javax.swing.event.EventListenerList;
-
 public class LUTBand implements ScalerListener, IcyColorSpaceListener
 {
     /**
@@ -53,7 +52,7 @@ public class LUTBand implements ScalerListener, IcyColorSpaceListener
     /**
      * listeners
      */
-    private EventListenerList listeners;
+    private ListenerList<LUTBandListener> listeners;
 
     public LUTBand(LUT lut, int component)
     {
@@ -70,7 +69,7 @@ public class LUTBand implements ScalerListener, IcyColorSpaceListener
         // default
         enabled = true;
 
-        listeners = new EventListenerList();
+        listeners = new ListenerList<LUTBandListener>(LUTBandListener.class);
     }
 
     /*
@@ -171,7 +170,7 @@ public class LUTBand implements ScalerListener, IcyColorSpaceListener
      */
     public void addListener(LUTBandListener listener)
     {
-        listeners.add(LUTBandListener.class, listener);
+        listeners.add(listener);
     }
 
     /**
@@ -181,7 +180,7 @@ public class LUTBand implements ScalerListener, IcyColorSpaceListener
      */
     public void removeListener(LUTBandListener listener)
     {
-        listeners.remove(LUTBandListener.class, listener);
+        listeners.remove(listener);
     }
 
     /**
@@ -189,7 +188,7 @@ public class LUTBand implements ScalerListener, IcyColorSpaceListener
      */
     public void fireEvent(LUTBandEvent e)
     {
-        for (LUTBandListener listener : listeners.getListeners(LUTBandListener.class))
+        for (LUTBandListener listener : listeners.getListeners())
             listener.lutBandChanged(e);
     }
 
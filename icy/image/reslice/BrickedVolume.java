@@ -0,0 +1,245 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image.reslice;
+
+import icy.image.IcyBufferedImage;
+import icy.sequence.VolumetricImage;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bricked (chunked) copy of a {@link VolumetricImage}.<br>
+ * The volume is divided in cubic bricks (all channels) so neighbor voxels in any direction are
+ * close in memory. Bricks are built lazily on first access and softly referenced so the cache
+ * never prevents memory to be reclaimed.<br>
+ * The cache is not updated automatically, call {@link #invalidate()} or {@link #invalidateZ(int)}
+ * when volume data changed. If the volume dimension changed the bricked volume is not valid
+ * anymore (see {@link #isValid()}) and should be rebuilt.
+ */
+public class BrickedVolume
+{
+    public static final int DEFAULT_BRICK_SIZE = 32;
+
+    final VolumetricImage volume;
+    final int brickSize;
+    final int sizeX;
+    final int sizeY;
+    final int sizeZ;
+    final int sizeC;
+    final DataType dataType;
+    final int numBrickX;
+    final int numBrickY;
+    final int numBrickZ;
+
+    /**
+     * bricks (index = (bz * numBrickY + by) * numBrickX + bx), each brick contains one array per
+     * channel
+     */
+    private final AtomicReferenceArray<SoftReference<Object[]>> bricks;
+
+    public BrickedVolume(VolumetricImage volume, int brickSize)
+    {
+        super();
+
+        this.volume = volume;
+        this.brickSize = Math.max(1, brickSize);
+
+        final IcyBufferedImage image = volume.getFirstImage();
+
+        if (image != null)
+        {
+            sizeX = image.getSizeX();
+            sizeY = image.getSizeY();
+            sizeC = image.getSizeC();
+            dataType = image.getDataType_();
+        }
+        else
+        {
+            sizeX = 0;
+            sizeY = 0;
+            sizeC = 0;
+            dataType = DataType.UBYTE;
+        }
+        sizeZ = volume.getSize();
+
+        numBrickX = (sizeX + (this.brickSize - 1)) / this.brickSize;
+        numBrickY = (sizeY + (this.brickSize - 1)) / this.brickSize;
+        numBrickZ = (sizeZ + (this.brickSize - 1)) / this.brickSize;
+
+        bricks = new AtomicReferenceArray<SoftReference<Object[]>>(numBrickX * numBrickY * numBrickZ);
+    }
+
+    public BrickedVolume(VolumetricImage volume)
+    {
+        this(volume, DEFAULT_BRICK_SIZE);
+    }
+
+    public VolumetricImage getVolume()
+    {
+        return volume;
+    }
+
+    public int getBrickSize()
+    {
+        return brickSize;
+    }
+
+    public int getSizeX()
+    {
+        return sizeX;
+    }
+
+    public int getSizeY()
+    {
+        return sizeY;
+    }
+
+    public int getSizeZ()
+    {
+        return sizeZ;
+    }
+
+    public int getSizeC()
+    {
+        return sizeC;
+    }
+
+    public DataType getDataType_()
+    {
+        return dataType;
+    }
+
+    /**
+     * Return true if the bricked volume still matches the volume dimension
+     */
+    public boolean isValid()
+    {
+        final IcyBufferedImage image = volume.getFirstImage();
+
+        if (image == null)
+            return sizeZ == 0;
+
+        return (volume.getSize() == sizeZ) && (image.getSizeX() == sizeX) && (image.getSizeY() == sizeY)
+                && (image.getSizeC() == sizeC) && (image.getDataType_() == dataType);
+    }
+
+    /**
+     * Return the offset of the specified voxel in its brick
+     */
+    public int getOffsetInBrick(int x, int y, int z)
+    {
+        return ((((z % brickSize) * brickSize) + (y % brickSize)) * brickSize) + (x % brickSize);
+    }
+
+    /**
+     * Return data of the brick containing the specified voxel (one array per channel)
+     */
+    public Object[] getBrickAt(int x, int y, int z)
+    {
+        return getBrick(x / brickSize, y / brickSize, z / brickSize);
+    }
+
+    /**
+     * Return data of the specified brick (one array per channel), brick is built if needed
+     */
+    public Object[] getBrick(int bx, int by, int bz)
+    {
+        final int index = (((bz * numBrickY) + by) * numBrickX) + bx;
+        final SoftReference<Object[]> ref = bricks.get(index);
+        Object[] result = (ref != null) ? ref.get() : null;
+
+        if (result == null)
+        {
+            // concurrent builds of the same brick give the same result so we don't lock
+            result = buildBrick(bx, by, bz);
+            bricks.set(index, new SoftReference<Object[]>(result));
+        }
+
+        return result;
+    }
+
+    private Object[] buildBrick(int bx, int by, int bz)
+    {
+        final int x0 = bx * brickSize;
+        final int y0 = by * brickSize;
+        final int z0 = bz * brickSize;
+        final int w = Math.min(brickSize, sizeX - x0);
+        final int h = Math.min(brickSize, sizeY - y0);
+        final int d = Math.min(brickSize, sizeZ - z0);
+        final int len = brickSize * brickSize * brickSize;
+        final Object[] result = new Object[sizeC];
+
+        for (int c = 0; c < sizeC; c++)
+            result[c] = Array1DUtil.createArray(dataType, len);
+
+        for (int z = 0; z < d; z++)
+        {
+            final IcyBufferedImage image = volume.getImage(z0 + z);
+
+            // missing or incompatible plane --> keep zero
+            if ((image == null) || (image.getSizeX() != sizeX) || (image.getSizeY() != sizeY)
+                    || (image.getSizeC() < sizeC) || (image.getDataType_() != dataType))
+                continue;
+
+            for (int c = 0; c < sizeC; c++)
+            {
+                final Object src = image.getDataXY(c);
+                final Object dst = result[c];
+                int srcOffset = (y0 * sizeX) + x0;
+                int dstOffset = z * brickSize * brickSize;
+
+                for (int y = 0; y < h; y++)
+                {
+                    System.arraycopy(src, srcOffset, dst, dstOffset, w);
+                    srcOffset += sizeX;
+                    dstOffset += brickSize;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Drop all cached bricks
+     */
+    public void invalidate()
+    {
+        for (int i = 0; i < bricks.length(); i++)
+            bricks.set(i, null);
+    }
+
+    /**
+     * Drop cached bricks containing the specified Z plane
+     */
+    public void invalidateZ(int z)
+    {
+        if ((z < 0) || (z >= sizeZ))
+            return;
+
+        final int sliceLen = numBrickX * numBrickY;
+        final int start = (z / brickSize) * sliceLen;
+
+        for (int i = start; i < (start + sliceLen); i++)
+            bricks.set(i, null);
+    }
+}
@@ -0,0 +1,692 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image.reslice;
+
+import icy.image.IcyBufferedImage;
+import icy.sequence.VolumetricImage;
+import icy.system.SystemUtil;
+import icy.system.thread.CancelToken;
+import icy.system.thread.Processor;
+import icy.system.thread.TaskScheduler;
+import icy.system.thread.TaskScheduler.TaskPriority;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Orthogonal (XZ / YZ) and arbitrary plane reslicing of a {@link VolumetricImage}.<br>
+ * Output rows are computed in parallel on the shared {@link TaskScheduler}. An optional
+ * {@link BrickedVolume} cache gives cache friendly access for YZ and arbitrary planes, bricks are
+ * built lazily so only the region around visited positions is cached.<br>
+ * Asynchronous requests ({@link #requestXZ(int, IcyBufferedImage)}...) cancel the previous
+ * pending request so only the latest position is computed while scrubbing.
+ */
+public class Reslicer
+{
+    /**
+     * minimum number of output rows per parallel band
+     */
+    private static final int MIN_BAND_ROWS = 16;
+
+    /**
+     * Band of output rows
+     */
+    private static abstract class RowBand implements Runnable
+    {
+        final int start;
+        final int end;
+        final CancelToken token;
+
+        RowBand(int start, int end, CancelToken token)
+        {
+            super();
+
+            this.start = start;
+            this.end = end;
+            this.token = token;
+        }
+
+        abstract void process(int row);
+
+        @Override
+        public void run()
+        {
+            for (int row = start; row < end; row++)
+            {
+                if ((token != null) && token.isCancelled())
+                    return;
+
+                process(row);
+            }
+        }
+    }
+
+    /**
+     * Band factory
+     */
+    private static interface RowBandFactory
+    {
+        RowBand createBand(int start, int end, CancelToken token);
+    }
+
+    final VolumetricImage volume;
+    /**
+     * bricked cache (rebuilt when volume dimension changed)
+     */
+    private volatile BrickedVolume bricks;
+
+    /**
+     * asynchronous requests
+     */
+    private final Processor processor;
+    private FutureTask<IcyBufferedImage> pending;
+    private CancelToken pendingToken;
+
+    /**
+     * Create a reslicer for the specified volume.
+     * 
+     * @param useBricks
+     *        use a bricked cache of the volume (faster YZ and arbitrary planes but the volume is
+     *        duplicated in memory as it is visited)
+     */
+    public Reslicer(VolumetricImage volume, boolean useBricks)
+    {
+        super();
+
+        this.volume = volume;
+
+        if (useBricks)
+            bricks = new BrickedVolume(volume);
+        else
+            bricks = null;
+
+        processor = new Processor(1, 1);
+        pending = null;
+        pendingToken = null;
+    }
+
+    public VolumetricImage getVolume()
+    {
+        return volume;
+    }
+
+    /**
+     * Return the bricked cache (null if not used)
+     */
+    public BrickedVolume getBrickedVolume()
+    {
+        final BrickedVolume result = bricks;
+
+        if ((result == null) || result.isValid())
+            return result;
+
+        return rebuildBricks(result);
+    }
+
+    /**
+     * Return the bricked cache if it matches the specified dimension (null otherwise)
+     */
+    private BrickedVolume getBrickedVolume(int sizeX, int sizeY, int sizeZ, int sizeC)
+    {
+        final BrickedVolume result = getBrickedVolume();
+
+        // volume changed meanwhile --> read planes directly
+        if ((result == null) || (result.getSizeX() != sizeX) || (result.getSizeY() != sizeY)
+                || (result.getSizeZ() != sizeZ) || (result.getSizeC() != sizeC))
+            return null;
+
+        return result;
+    }
+
+    /**
+     * Rebuild the bricked cache as volume dimension changed
+     */
+    private synchronized BrickedVolume rebuildBricks(BrickedVolume old)
+    {
+        // not yet rebuilt by another thread ?
+        if (bricks == old)
+            bricks = new BrickedVolume(volume, old.getBrickSize());
+
+        return bricks;
+    }
+
+    /**
+     * Should be called when volume data changed
+     */
+    public void invalidate()
+    {
+        final BrickedVolume bv = bricks;
+
+        if (bv != null)
+            bv.invalidate();
+    }
+
+    /**
+     * Should be called when the specified plane data changed
+     */
+    public void invalidateZ(int z)
+    {
+        final BrickedVolume bv = bricks;
+
+        if (bv != null)
+            bv.invalidateZ(z);
+    }
+
+    /**
+     * Return an image compatible with the volume of the specified dimension (reuse
+     * <code>out</code> if possible)
+     */
+    private IcyBufferedImage getOutput(IcyBufferedImage out, int width, int height, int sizeC, DataType dataType)
+    {
+        if ((out != null) && (out.getSizeX() == width) && (out.getSizeY() == height) && (out.getSizeC() == sizeC)
+                && (out.getDataType_() == dataType))
+            return out;
+
+        return new IcyBufferedImage(width, height, sizeC, dataType);
+    }
+
+    /**
+     * Build the XZ section at the specified Y position (output width = size X, height = size Z).
+     * 
+     * @param out
+     *        output image reused if compatible (can be null)
+     */
+    public IcyBufferedImage getXZ(int y, IcyBufferedImage out) throws InterruptedException, ExecutionException
+    {
+        return getXZ(y, out, null);
+    }
+
+    IcyBufferedImage getXZ(final int y, IcyBufferedImage out, CancelToken token) throws InterruptedException,
+            ExecutionException
+    {
+        final IcyBufferedImage first = volume.getFirstImage();
+
+        if ((first == null) || (y < 0) || (y >= first.getSizeY()))
+            return null;
+
+        final int sizeX = first.getSizeX();
+        final int sizeZ = volume.getSize();
+        final int sizeC = first.getSizeC();
+        final IcyBufferedImage result = getOutput(out, sizeX, sizeZ, sizeC, first.getDataType_());
+
+        // XZ rows are contiguous in planes so we always read planes directly
+        process(sizeZ, new RowBandFactory()
+        {
+            @Override
+            public RowBand createBand(int start, int end, CancelToken tk)
+            {
+                return new RowBand(start, end, tk)
+                {
+                    @Override
+                    void process(int z)
+                    {
+                        final IcyBufferedImage image = volume.getImage(z);
+
+                        for (int c = 0; c < sizeC; c++)
+                        {
+                            final Object dst = result.getDataXY(c);
+
+                            if (image != null)
+                                System.arraycopy(image.getDataXY(c), y * sizeX, dst, z * sizeX, sizeX);
+                            else
+                                fill(dst, z * sizeX, sizeX);
+                        }
+                    }
+                };
+            }
+        }, token);
+
+        result.dataChanged();
+
+        return result;
+    }
+
+    /**
+     * Build the YZ section at the specified X position (output width = size Z, height = size Y).
+     * 
+     * @param out
+     *        output image reused if compatible (can be null)
+     */
+    public IcyBufferedImage getYZ(int x, IcyBufferedImage out) throws InterruptedException, ExecutionException
+    {
+        return getYZ(x, out, null);
+    }
+
+    IcyBufferedImage getYZ(final int x, IcyBufferedImage out, CancelToken token) throws InterruptedException,
+            ExecutionException
+    {
+        final IcyBufferedImage first = volume.getFirstImage();
+
+        if ((first == null) || (x < 0) || (x >= first.getSizeX()))
+            return null;
+
+        final int sizeX = first.getSizeX();
+        final int sizeY = first.getSizeY();
+        final int sizeZ = volume.getSize();
+        final int sizeC = first.getSizeC();
+        final IcyBufferedImage result = getOutput(out, sizeZ, sizeY, sizeC, first.getDataType_());
+        // bricked volume matching current volume dimension
+        final BrickedVolume bricks = getBrickedVolume(sizeX, sizeY, sizeZ, sizeC);
+
+        if (bricks != null)
+        {
+            final int bs = bricks.getBrickSize();
+            final int numBrickZ = bricks.numBrickZ;
+
+            process(sizeY, new RowBandFactory()
+            {
+                @Override
+                public RowBand createBand(int start, int end, CancelToken tk)
+                {
+                    return new RowBand(start, end, tk)
+                    {
+                        @Override
+                        void process(int y)
+                        {
+                            final int offset = bricks.getOffsetInBrick(x, y, 0);
+
+                            for (int bz = 0; bz < numBrickZ; bz++)
+                            {
+                                final Object[] brick = bricks.getBrick(x / bs, y / bs, bz);
+                                final int len = Math.min(bs, sizeZ - (bz * bs));
+
+                                for (int c = 0; c < sizeC; c++)
+                                    copy(brick[c], offset, bs * bs, result.getDataXY(c), (y * sizeZ) + (bz * bs), 1,
+                                            len);
+                            }
+                        }
+                    };
+                }
+            }, token);
+        }
+        else
+        {
+            // process by band of rows so each plane is read once per band
+            process(sizeY, new RowBandFactory()
+            {
+                @Override
+                public RowBand createBand(int start, int end, CancelToken tk)
+                {
+                    return new RowBand(start, end, tk)
+                    {
+                        @Override
+                        public void run()
+                        {
+                            final int len = end - start;
+
+                            for (int z = 0; z < sizeZ; z++)
+                            {
+                                if ((token != null) && token.isCancelled())
+                                    return;
+
+                                final IcyBufferedImage image = volume.getImage(z);
+
+                                for (int c = 0; c < sizeC; c++)
+                                {
+                                    final Object dst = result.getDataXY(c);
+
+                                    if (image != null)
+                                        copy(image.getDataXY(c), (start * sizeX) + x, sizeX, dst, (start * sizeZ) + z,
+                                                sizeZ, len);
+                                    else
+                                        for (int y = start; y < end; y++)
+                                            Array1DUtil.setValue(dst, (y * sizeZ) + z, 0d);
+                                }
+                            }
+                        }
+
+                        @Override
+                        void process(int row)
+                        {
+                            // not used
+                        }
+                    };
+                }
+            }, token);
+        }
+
+        result.dataChanged();
+
+        return result;
+    }
+
+    /**
+     * Build an arbitrary plane section (nearest neighbor sampling).<br>
+     * Output pixel (i, j) is the voxel at <code>origin + i * u + j * v</code>, voxels outside the
+     * volume are set to 0.
+     * 
+     * @param origin
+     *        plane origin (x, y, z)
+     * @param u
+     *        plane X direction (x, y, z)
+     * @param v
+     *        plane Y direction (x, y, z)
+     * @param width
+     *        output width
+     * @param height
+     *        output height
+     * @param out
+     *        output image reused if compatible (can be null)
+     */
+    public IcyBufferedImage getPlane(double[] origin, double[] u, double[] v, int width, int height,
+            IcyBufferedImage out) throws InterruptedException, ExecutionException
+    {
+        return getPlane(origin, u, v, width, height, out, null);
+    }
+
+    IcyBufferedImage getPlane(final double[] origin, final double[] u, final double[] v, final int width,
+            int height, IcyBufferedImage out, CancelToken token) throws InterruptedException, ExecutionException
+    {
+        final IcyBufferedImage first = volume.getFirstImage();
+
+        if (first == null)
+            return null;
+
+        final int sizeX = first.getSizeX();
+        final int sizeY = first.getSizeY();
+        final int sizeZ = volume.getSize();
+        final int sizeC = first.getSizeC();
+        final DataType dataType = first.getDataType_();
+        final IcyBufferedImage result = getOutput(out, width, height, sizeC, dataType);
+        // bricked volume matching current volume dimension
+        final BrickedVolume bricks = getBrickedVolume(sizeX, sizeY, sizeZ, sizeC);
+
+        process(height, new RowBandFactory()
+        {
+            @Override
+            public RowBand createBand(int start, int end, CancelToken tk)
+            {
+                return new RowBand(start, end, tk)
+                {
+                    @Override
+                    void process(int j)
+                    {
+                        int offset = j * width;
+
+                        for (int i = 0; i < width; i++, offset++)
+                        {
+                            final int x = (int) Math.floor(origin[0] + (i * u[0]) + (j * v[0]) + 0.5d);
+                            final int y = (int) Math.floor(origin[1] + (i * u[1]) + (j * v[1]) + 0.5d);
+                            final int z = (int) Math.floor(origin[2] + (i * u[2]) + (j * v[2]) + 0.5d);
+                            final boolean inside = (x >= 0) && (x < sizeX) && (y >= 0) && (y < sizeY) && (z >= 0)
+                                    && (z < sizeZ);
+
+                            if (bricks != null)
+                            {
+                                final Object[] brick = inside ? bricks.getBrickAt(x, y, z) : null;
+                                final int off = inside ? bricks.getOffsetInBrick(x, y, z) : 0;
+
+                                for (int c = 0; c < sizeC; c++)
+                                    Array1DUtil.setValue(result.getDataXY(c), offset,
+                                            inside ? Array1DUtil.getValue(brick[c], off, dataType) : 0d);
+                            }
+                            else
+                            {
+                                final IcyBufferedImage image = inside ? volume.getImage(z) : null;
+                                final int off = (y * sizeX) + x;
+
+                                for (int c = 0; c < sizeC; c++)
+                                    Array1DUtil.setValue(result.getDataXY(c), offset,
+                                            (image != null) ? Array1DUtil.getValue(image.getDataXY(c), off, dataType)
+                                                    : 0d);
+                            }
+                        }
+                    }
+                };
+            }
+        }, token);
+
+        result.dataChanged();
+
+        return result;
+    }
+
+    /**
+     * Asynchronously build the XZ section at the specified Y position.<br>
+     * The previous pending request is cancelled.
+     */
+    public Future<IcyBufferedImage> requestXZ(final int y, final IcyBufferedImage out)
+    {
+        final CancelToken token = new CancelToken();
+
+        return request(new Callable<IcyBufferedImage>()
+        {
+            @Override
+            public IcyBufferedImage call() throws Exception
+            {
+                return getXZ(y, out, token);
+            }
+        }, token);
+    }
+
+    /**
+     * Asynchronously build the YZ section at the specified X position.<br>
+     * The previous pending request is cancelled.
+     */
+    public Future<IcyBufferedImage> requestYZ(final int x, final IcyBufferedImage out)
+    {
+        final CancelToken token = new CancelToken();
+
+        return request(new Callable<IcyBufferedImage>()
+        {
+            @Override
+            public IcyBufferedImage call() throws Exception
+            {
+                return getYZ(x, out, token);
+            }
+        }, token);
+    }
+
+    private synchronized Future<IcyBufferedImage> request(Callable<IcyBufferedImage> callable, CancelToken token)
+    {
+        // cancel previous request (latest position wins)
+        if (pending != null)
+        {
+            pendingToken.cancel();
+            pending.cancel(false);
+            processor.purge();
+        }
+
+        pending = new FutureTask<IcyBufferedImage>(callable);
+        pendingToken = token;
+
+        try
+        {
+            processor.execute(pending);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // should not happen as previous waiting request has been purged
+            pending.cancel(false);
+        }
+
+        return pending;
+    }
+
+    /**
+     * Cancel pending request and release resources
+     */
+    public synchronized void shutdown()
+    {
+        if (pending != null)
+        {
+            pendingToken.cancel();
+            pending.cancel(false);
+        }
+
+        processor.shutdownNow();
+        invalidate();
+    }
+
+    /**
+     * Process the specified number of rows in parallel bands
+     */
+    private static void process(int numRow, RowBandFactory factory, CancelToken token) throws InterruptedException,
+            ExecutionException
+    {
+        final int numBand = Math.max(1, Math.min(SystemUtil.getAvailableProcessors(), numRow / MIN_BAND_ROWS));
+        final CancelToken tk = (token != null) ? token : new CancelToken();
+
+        // single band or already in a scheduler task --> process here to avoid deadlock
+        if ((numBand == 1) || TaskScheduler.isSchedulerThread())
+        {
+            try
+            {
+                factory.createBand(0, numRow, tk).run();
+            }
+            catch (RuntimeException e)
+            {
+                throw new ExecutionException(e);
+            }
+        }
+        else
+        {
+            final TaskScheduler scheduler = TaskScheduler.getInstance();
+            final LinkedList<Future<?>> bands = new LinkedList<Future<?>>();
+
+            try
+            {
+                for (int b = 0; b < numBand; b++)
+                    bands.add(scheduler.submit(factory.createBand((b * numRow) / numBand, ((b + 1) * numRow)
+                            / numBand, tk), TaskPriority.INTERACTIVE, tk));
+
+                while (!bands.isEmpty())
+                {
+                    bands.getFirst().get();
+                    bands.removeFirst();
+                }
+            }
+            catch (CancellationException e)
+            {
+                // request cancelled
+                throw new InterruptedException();
+            }
+            finally
+            {
+                // error or interruption --> cancel remaining bands and wait for running ones
+                // so they don't write in the output image anymore once we returned
+                if (!bands.isEmpty())
+                {
+                    tk.cancel();
+                    waitForCompletion(bands);
+                }
+            }
+        }
+
+        if (tk.isCancelled())
+            throw new InterruptedException();
+    }
+
+    /**
+     * Wait for the specified bands to be done (whatever the result)
+     */
+    private static void waitForCompletion(LinkedList<Future<?>> bands)
+    {
+        boolean interrupted = false;
+
+        while (!bands.isEmpty())
+        {
+            try
+            {
+                bands.getFirst().get();
+            }
+            catch (InterruptedException e)
+            {
+                // wait anyway, interrupt state is restored after
+                interrupted = true;
+                continue;
+            }
+            catch (Exception e)
+            {
+                // cancelled or failed, ignore
+            }
+
+            bands.removeFirst();
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Strided copy between arrays of same type
+     */
+    static void copy(Object src, int srcOffset, int srcStep, Object dst, int dstOffset, int dstStep, int len)
+    {
+        int s = srcOffset;
+        int d = dstOffset;
+
+        if (src instanceof byte[])
+        {
+            final byte[] srcArray = (byte[]) src;
+            final byte[] dstArray = (byte[]) dst;
+
+            for (int i = 0; i < len; i++, s += srcStep, d += dstStep)
+                dstArray[d] = srcArray[s];
+        }
+        else if (src instanceof short[])
+        {
+            final short[] srcArray = (short[]) src;
+            final short[] dstArray = (short[]) dst;
+
+            for (int i = 0; i < len; i++, s += srcStep, d += dstStep)
+                dstArray[d] = srcArray[s];
+        }
+        else if (src instanceof int[])
+        {
+            final int[] srcArray = (int[]) src;
+            final int[] dstArray = (int[]) dst;
+
+            for (int i = 0; i < len; i++, s += srcStep, d += dstStep)
+                dstArray[d] = srcArray[s];
+        }
+        else if (src instanceof float[])
+        {
+            final float[] srcArray = (float[]) src;
+            final float[] dstArray = (float[]) dst;
+
+            for (int i = 0; i < len; i++, s += srcStep, d += dstStep)
+                dstArray[d] = srcArray[s];
+        }
+        else if (src instanceof double[])
+        {
+            final double[] srcArray = (double[]) src;
+            final double[] dstArray = (double[]) dst;
+
+            for (int i = 0; i < len; i++, s += srcStep, d += dstStep)
+                dstArray[d] = srcArray[s];
+        }
+    }
+
+    /**
+     * Clear the specified part of array
+     */
+    static void fill(Object array, int offset, int len)
+    {
+        for (int i = offset; i < (offset + len); i++)
+            Array1DUtil.setValue(array, i, 0d);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image.tile;
+
+import icy.image.IcyBufferedImage;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * {@link TileStorage} backed by an {@link IcyBufferedImage} (in memory).<br>
+ * Writes go directly to the image data, image is notified of the change on {@link #flush()}.
+ */
+public class ImageTileStorage implements TileStorage
+{
+    protected final IcyBufferedImage image;
+
+    public ImageTileStorage(IcyBufferedImage image)
+    {
+        super();
+
+        this.image = image;
+    }
+
+    public IcyBufferedImage getImage()
+    {
+        return image;
+    }
+
+    @Override
+    public int getSizeX()
+    {
+        return image.getSizeX();
+    }
+
+    @Override
+    public int getSizeY()
+    {
+        return image.getSizeY();
+    }
+
+    @Override
+    public int getSizeC()
+    {
+        return image.getSizeC();
+    }
+
+    @Override
+    public DataType getDataType()
+    {
+        return image.getDataType_();
+    }
+
+    @Override
+    public IcyBufferedImage read(Rectangle region)
+    {
+        return image.getSubImageCopy(region.x, region.y, region.width, region.height);
+    }
+
+    @Override
+    public void write(IcyBufferedImage source, Rectangle sourceRegion, Point position)
+    {
+        final boolean signed = source.getDataType_().isSigned();
+        final int sizeC = Math.min(source.getSizeC(), image.getSizeC());
+        final int srcSizeX = source.getSizeX();
+        final int dstSizeX = image.getSizeX();
+
+        for (int c = 0; c < sizeC; c++)
+        {
+            final Object src = source.getDataXY(c);
+            final Object dst = image.getDataXY(c);
+
+            int srcOffset = sourceRegion.x + (sourceRegion.y * srcSizeX);
+            int dstOffset = position.x + (position.y * dstSizeX);
+
+            for (int y = 0; y < sourceRegion.height; y++)
+            {
+                Array1DUtil.arrayToArray(src, srcOffset, dst, dstOffset, sourceRegion.width, signed);
+                srcOffset += srcSizeX;
+                dstOffset += dstSizeX;
+            }
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        image.dataChanged();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image.tile;
+
+import icy.image.IcyBufferedImage;
+import icy.type.DataType;
+import icy.type.collection.array.ByteArrayConvert;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Off heap {@link TileStorage} backed by a memory mapped temporary file.<br>
+ * Data is not limited by java heap size so it can be used for planes larger than memory (the
+ * system pages data in and out as needed).<br>
+ * Call {@link #close()} to release the temporary file when done.
+ */
+public class MappedTileStorage implements TileStorage
+{
+    /**
+     * maximum size of a single mapping
+     */
+    private static final long MAX_CHUNK_SIZE = 256L * 1024L * 1024L;
+
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeC;
+    private final DataType dataType;
+
+    /**
+     * internals
+     */
+    private final int rowSize;
+    private final int rowsPerChunk;
+    private final int chunksPerChannel;
+    private final MappedByteBuffer[] chunks;
+    private final boolean little;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    public MappedTileStorage(int sizeX, int sizeY, int sizeC, DataType dataType) throws IOException
+    {
+        super();
+
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeC = sizeC;
+        this.dataType = dataType;
+
+        rowSize = sizeX * dataType.getSize();
+        rowsPerChunk = (int) Math.max(1L, Math.min(sizeY, MAX_CHUNK_SIZE / rowSize));
+        chunksPerChannel = (sizeY + (rowsPerChunk - 1)) / rowsPerChunk;
+        little = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+        file = File.createTempFile("icy", ".tile");
+        file.deleteOnExit();
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength((long) rowSize * (long) sizeY * (long) sizeC);
+        channel = raf.getChannel();
+
+        chunks = new MappedByteBuffer[chunksPerChannel * sizeC];
+        for (int c = 0; c < sizeC; c++)
+        {
+            for (int k = 0; k < chunksPerChannel; k++)
+            {
+                final int startY = k * rowsPerChunk;
+                final int numRows = Math.min(rowsPerChunk, sizeY - startY);
+                final long position = (((long) c * sizeY) + startY) * rowSize;
+
+                chunks[(c * chunksPerChannel) + k] = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                        (long) numRows * rowSize);
+            }
+        }
+    }
+
+    /**
+     * Create a storage and fill it with specified image data
+     */
+    public MappedTileStorage(IcyBufferedImage image) throws IOException
+    {
+        this(image.getSizeX(), image.getSizeY(), image.getSizeC(), image.getDataType_());
+
+        write(image, new Rectangle(image.getSizeX(), image.getSizeY()), new Point(0, 0));
+    }
+
+    /**
+     * Return a buffer positioned on the specified pixel (we use a duplicate so concurrent
+     * accesses don't interfere)
+     */
+    private ByteBuffer getBuffer(int x, int y, int c)
+    {
+        final ByteBuffer result = chunks[(c * chunksPerChannel) + (y / rowsPerChunk)].duplicate();
+
+        result.position(((y % rowsPerChunk) * rowSize) + (x * dataType.getSize()));
+
+        return result;
+    }
+
+    @Override
+    public int getSizeX()
+    {
+        return sizeX;
+    }
+
+    @Override
+    public int getSizeY()
+    {
+        return sizeY;
+    }
+
+    @Override
+    public int getSizeC()
+    {
+        return sizeC;
+    }
+
+    @Override
+    public DataType getDataType()
+    {
+        return dataType;
+    }
+
+    @Override
+    public IcyBufferedImage read(Rectangle region)
+    {
+        final IcyBufferedImage result = new IcyBufferedImage(region.width, region.height, sizeC, dataType);
+        final byte[] row = new byte[region.width * dataType.getSize()];
+
+        for (int c = 0; c < sizeC; c++)
+        {
+            final Object data = result.getDataXY(c);
+
+            for (int y = 0; y < region.height; y++)
+            {
+                getBuffer(region.x, region.y + y, c).get(row);
+                ByteArrayConvert.byteArrayTo(row, 0, data, y * region.width, -1, little);
+            }
+        }
+
+        result.dataChanged();
+
+        return result;
+    }
+
+    @Override
+    public void write(IcyBufferedImage source, Rectangle sourceRegion, Point position)
+    {
+        final int srcSizeX = source.getSizeX();
+        final int sizeCopyC = Math.min(source.getSizeC(), sizeC);
+        final byte[] row = new byte[sourceRegion.width * dataType.getSize()];
+
+        for (int c = 0; c < sizeCopyC; c++)
+        {
+            final Object data = source.getDataXY(c);
+
+            for (int y = 0; y < sourceRegion.height; y++)
+            {
+                ByteArrayConvert.toByteArray(data, sourceRegion.x + ((sourceRegion.y + y) * srcSizeX), row, 0, -1,
+                        little);
+                getBuffer(position.x, position.y + y, c).put(row);
+            }
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        for (MappedByteBuffer chunk : chunks)
+            chunk.force();
+    }
+
+    /**
+     * Return the whole content as an image (should fit in memory)
+     */
+    public IcyBufferedImage toImage()
+    {
+        return read(new Rectangle(sizeX, sizeY));
+    }
+
+    /**
+     * Release the storage (temporary file is deleted)
+     */
+    public void close()
+    {
+        try
+        {
+            channel.close();
+            raf.close();
+        }
+        catch (IOException e)
+        {
+            // ignore
+        }
+
+        // may fail while mapping is not garbage collected, file is deleted on exit anyway
+        file.delete();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image.tile;
+
+import icy.image.IcyBufferedImage;
+import icy.plugin.interface_.PluginTileFilter;
+import icy.system.SystemUtil;
+import icy.system.thread.CancelToken;
+import icy.system.thread.TaskScheduler;
+import icy.system.thread.TaskScheduler.TaskPriority;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Apply a {@link PluginTileFilter} on a plane tile by tile.<br>
+ * The plane is split in tiles, each tile is read with the halo required by the filter, processed
+ * in parallel on the shared {@link TaskScheduler} and the result (without halo) is stitched in
+ * the destination storage.<br>
+ * The number of tiles in process is bounded so memory usage only depends on the tile size, with
+ * a {@link MappedTileStorage} source and destination planes can be larger than memory.
+ */
+public class TileProcessor
+{
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private static class TileTask implements Runnable
+    {
+        final TileStorage source;
+        final TileStorage destination;
+        final PluginTileFilter filter;
+        final Rectangle tile;
+        final int halo;
+
+        TileTask(TileStorage source, TileStorage destination, PluginTileFilter filter, Rectangle tile, int halo)
+        {
+            super();
+
+            this.source = source;
+            this.destination = destination;
+            this.filter = filter;
+            this.tile = tile;
+            this.halo = halo;
+        }
+
+        @Override
+        public void run()
+        {
+            final Rectangle region = getRegionWithHalo(source, tile, halo);
+            final IcyBufferedImage result = filter.processTile(source.read(region));
+
+            if (result == null)
+                throw new IllegalStateException("PluginTileFilter.processTile(..) returned null.");
+
+            destination.write(result, new Rectangle(tile.x - region.x, tile.y - region.y, tile.width, tile.height),
+                    tile.getLocation());
+        }
+    }
+
+    /**
+     * Apply the filter on the specified image and return the result image.
+     */
+    public static IcyBufferedImage process(IcyBufferedImage image, PluginTileFilter filter)
+            throws InterruptedException, ExecutionException
+    {
+        return process(image, filter, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Apply the filter on the specified image and return the result image.
+     */
+    public static IcyBufferedImage process(IcyBufferedImage image, PluginTileFilter filter, int tileSize)
+            throws InterruptedException, ExecutionException
+    {
+        final ImageTileStorage source = new ImageTileStorage(image);
+        final List<Rectangle> tiles = getTiles(image.getSizeX(), image.getSizeY(), tileSize);
+        final int halo = Math.max(0, filter.getHalo());
+
+        if (tiles.isEmpty())
+            return null;
+
+        // process first tile now to get the result format
+        final Rectangle firstTile = tiles.remove(0);
+        final Rectangle region = getRegionWithHalo(source, firstTile, halo);
+        final IcyBufferedImage firstResult = filter.processTile(source.read(region));
+
+        if (firstResult == null)
+            throw new ExecutionException(new IllegalStateException("PluginTileFilter.processTile(..) returned null."));
+
+        final ImageTileStorage destination = new ImageTileStorage(new IcyBufferedImage(image.getSizeX(),
+                image.getSizeY(), firstResult.getSizeC(), firstResult.getDataType_()));
+
+        destination.write(firstResult, new Rectangle(firstTile.x - region.x, firstTile.y - region.y, firstTile.width,
+                firstTile.height), firstTile.getLocation());
+
+        process(source, destination, filter, tiles, halo);
+
+        return destination.getImage();
+    }
+
+    /**
+     * Apply the filter on the source storage and write result in destination storage (which
+     * should have the same dimension).
+     */
+    public static void process(TileStorage source, TileStorage destination, PluginTileFilter filter, int tileSize)
+            throws InterruptedException, ExecutionException
+    {
+        process(source, destination, filter, getTiles(source.getSizeX(), source.getSizeY(), tileSize),
+                Math.max(0, filter.getHalo()));
+    }
+
+    private static void process(TileStorage source, TileStorage destination, PluginTileFilter filter,
+            List<Rectangle> tiles, int halo) throws InterruptedException, ExecutionException
+    {
+        // already in a scheduler task --> process here to avoid deadlock
+        if (TaskScheduler.isSchedulerThread())
+        {
+            try
+            {
+                for (Rectangle tile : tiles)
+                    new TileTask(source, destination, filter, tile, halo).run();
+            }
+            catch (RuntimeException e)
+            {
+                throw new ExecutionException(e);
+            }
+        }
+        else
+        {
+            final TaskScheduler scheduler = TaskScheduler.getInstance();
+            final CancelToken token = new CancelToken();
+            // limit number of tiles in memory
+            final int maxPending = SystemUtil.getAvailableProcessors() * 2;
+            final LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+
+            try
+            {
+                for (Rectangle tile : tiles)
+                {
+                    while (pending.size() >= maxPending)
+                        pending.removeFirst().get();
+
+                    pending.add(scheduler.submit(new TileTask(source, destination, filter, tile, halo),
+                            TaskPriority.COMPUTE, token));
+                }
+
+                while (!pending.isEmpty())
+                    pending.removeFirst().get();
+            }
+            finally
+            {
+                // error or interruption --> cancel remaining tiles and wait for running ones so
+                // they don't write in the destination anymore once we returned
+                if (!pending.isEmpty())
+                {
+                    token.cancel();
+                    waitForCompletion(pending);
+                }
+            }
+        }
+
+        destination.flush();
+    }
+
+    /**
+     * Wait for the specified tiles to be done (whatever the result)
+     */
+    private static void waitForCompletion(LinkedList<Future<?>> tiles)
+    {
+        boolean interrupted = false;
+
+        while (!tiles.isEmpty())
+        {
+            try
+            {
+                tiles.getFirst().get();
+            }
+            catch (InterruptedException e)
+            {
+                // wait anyway, interrupt state is restored after
+                interrupted = true;
+                continue;
+            }
+            catch (Exception e)
+            {
+                // cancelled or failed, ignore
+            }
+
+            tiles.removeFirst();
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Return the tiles covering the specified dimension
+     */
+    public static List<Rectangle> getTiles(int sizeX, int sizeY, int tileSize)
+    {
+        final int size = Math.max(1, tileSize);
+        final List<Rectangle> result = new ArrayList<Rectangle>();
+
+        for (int y = 0; y < sizeY; y += size)
+            for (int x = 0; x < sizeX; x += size)
+                result.add(new Rectangle(x, y, Math.min(size, sizeX - x), Math.min(size, sizeY - y)));
+
+        return result;
+    }
+
+    static Rectangle getRegionWithHalo(TileStorage storage, Rectangle tile, int halo)
+    {
+        final Rectangle result = new Rectangle(tile);
+
+        result.grow(halo, halo);
+
+        return result.intersection(new Rectangle(storage.getSizeX(), storage.getSizeY()));
+    }
+}
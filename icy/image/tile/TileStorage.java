@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image.tile;
+
+import icy.image.IcyBufferedImage;
+import icy.type.DataType;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * Random access storage for plane data accessed by tile.<br>
+ * Read and write of distinct regions can be done concurrently.
+ */
+public interface TileStorage
+{
+    public int getSizeX();
+
+    public int getSizeY();
+
+    public int getSizeC();
+
+    public DataType getDataType();
+
+    /**
+     * Return a copy of the specified region (should be contained in storage bounds)
+     */
+    public IcyBufferedImage read(Rectangle region);
+
+    /**
+     * Write the specified region of the source image at the specified position
+     */
+    public void write(IcyBufferedImage source, Rectangle sourceRegion, Point position);
+
+    /**
+     * Called when all writes are done
+     */
+    public void flush();
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.main;
+
+import icy.file.FileUtil;
+import icy.file.Saver;
+import icy.image.IcyBufferedImage;
+import icy.math.UnitUtil;
+import icy.plugin.PluginDescriptor;
+import icy.plugin.PluginLoader;
+import icy.plugin.interface_.PluginImageFilter;
+import icy.sequence.Sequence;
+import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+import icy.system.thread.Processor;
+import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import loci.formats.ImageReader;
+
+/**
+ * Headless batch processing entry point.<br>
+ * Run a {@link PluginImageFilter} plugin over a set of image files (or directories) without
+ * building any GUI (no splash screen, look and feel, main frame nor workspace) so it can be used
+ * on computation nodes without display :<br>
+ * 
+ * <pre>
+ * java -cp icy.jar icy.main.IcyHeadless -plugin plugins.xxx.MyFilter -output result [-threads 4]
+ *      [-ext .tif] [-memory 1024] [-recursive] input1.tif inputDir ...
+ * </pre>
+ * 
+ * Plugins are initialized from the cached plugin index (see {@link PluginLoader#reloadFromIndex()}
+ * ), files are processed in parallel and the total size of images in process is bounded by a
+ * memory budget.<br>
+ * Startup time (until first result) and throughput are reported at the end.
+ */
+public class IcyHeadless
+{
+    /**
+     * Simple memory budget (in bytes) shared by processing tasks.
+     */
+    private static class MemoryBudget
+    {
+        private final long capacity;
+        private long available;
+
+        MemoryBudget(long capacity)
+        {
+            super();
+
+            this.capacity = capacity;
+            available = capacity;
+        }
+
+        /**
+         * Reserve the specified amount of memory, wait until enough memory is available.<br>
+         * Return the reserved amount (request larger than capacity are limited to capacity so
+         * they are processed alone).
+         */
+        synchronized long acquire(long size) throws InterruptedException
+        {
+            final long result = Math.min(capacity, size);
+
+            while (available < result)
+                wait();
+
+            available -= result;
+
+            return result;
+        }
+
+        synchronized void release(long size)
+        {
+            available += size;
+            notifyAll();
+        }
+    }
+
+    private static class FileTask implements Runnable
+    {
+        final ImageReader reader;
+        final File input;
+        final long reserved;
+
+        FileTask(ImageReader reader, File input, long reserved)
+        {
+            super();
+
+            this.reader = reader;
+            this.input = input;
+            this.reserved = reserved;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                final PluginImageFilter filter = filters.get();
+                final int sizeZ = reader.getSizeZ();
+                final int sizeT = reader.getSizeT();
+                final Sequence result = new Sequence();
+
+                result.beginUpdate();
+                try
+                {
+                    for (int t = 0; t < sizeT; t++)
+                    {
+                        for (int z = 0; z < sizeZ; z++)
+                        {
+                            final IcyBufferedImage image = filter.processImage(IcyBufferedImage.createFrom(reader,
+                                    z, t));
+
+                            if (image != null)
+                                result.setImage(t, z, image);
+                            numPlane.incrementAndGet();
+                        }
+                    }
+                }
+                finally
+                {
+                    result.endUpdate();
+                }
+
+                // close input before writing
+                reader.close();
+
+                if (!result.isEmpty())
+                {
+                    Saver.saveNoGui(result, getOutputFile(input));
+
+                    // first result
+                    firstResultTime.compareAndSet(0L, System.nanoTime());
+                }
+
+                numDone.incrementAndGet();
+            }
+            catch (Throwable t)
+            {
+                System.err.println("Failed to process '" + input.getAbsolutePath() + "' :");
+                IcyExceptionHandler.showErrorMessage(t, true);
+                numFailed.incrementAndGet();
+            }
+            finally
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (Exception e)
+                {
+                    // ignore
+                }
+
+                budget.release(reserved);
+            }
+        }
+    }
+
+    /**
+     * parameters
+     */
+    static String pluginClassName = null;
+    static File outputDir = null;
+    static String outputExt = null;
+    static int numThread = SystemUtil.getAvailableProcessors();
+    static long memoryLimit = SystemUtil.getJavaMaxMemory() / 2;
+    static boolean recursive = false;
+    static final List<File> inputs = new ArrayList<File>();
+
+    /**
+     * internals
+     */
+    static PluginDescriptor plugin;
+    static MemoryBudget budget;
+    static final long startTime = System.nanoTime();
+    static final AtomicLong firstResultTime = new AtomicLong(0L);
+    static final AtomicInteger numDone = new AtomicInteger(0);
+    static final AtomicInteger numFailed = new AtomicInteger(0);
+    static final AtomicInteger numPlane = new AtomicInteger(0);
+
+    /**
+     * plugins may not be thread safe so we use one instance per processing thread
+     */
+    static final ThreadLocal<PluginImageFilter> filters = new ThreadLocal<PluginImageFilter>()
+    {
+        @Override
+        protected PluginImageFilter initialValue()
+        {
+            try
+            {
+                return (PluginImageFilter) plugin.getPluginClass().getDeclaredConstructor().newInstance();
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException("Can't create plugin '" + plugin.getClassName() + "' instance", e);
+            }
+        }
+    };
+
+    /**
+     * @param args
+     *        Received from the command line.
+     */
+    public static void main(String[] args)
+    {
+        // no display needed (should be done before any AWT class initialization)
+        System.setProperty("java.awt.headless", "true");
+
+        if (!handleAppArgs(args))
+        {
+            printUsage();
+            System.exit(1);
+        }
+
+        // initialize plugins from cached index
+        PluginLoader.reloadFromIndex();
+        plugin = PluginLoader.getPlugin(pluginClassName);
+
+        if ((plugin == null) || !plugin.isInstanceOf(PluginImageFilter.class) || plugin.isAbstract())
+        {
+            System.err.println("Plugin '" + pluginClassName + "' not found or is not an image filter plugin.");
+            System.exit(1);
+        }
+
+        final ArrayList<File> files = FileUtil.explode(inputs, recursive, false);
+
+        if (!outputDir.exists() && !FileUtil.createDir(outputDir))
+        {
+            System.err.println("Can't create output directory '" + outputDir.getAbsolutePath() + "'.");
+            System.exit(1);
+        }
+
+        System.out.println("Processing " + files.size() + " file(s) with " + plugin.getName() + " (" + numThread
+                + " thread(s), " + UnitUtil.getBytesString(memoryLimit) + " memory budget)");
+
+        budget = new MemoryBudget(memoryLimit);
+        // we don't need waiting tasks as we block on memory budget
+        final Processor processor = new Processor(numThread, numThread);
+
+        for (File file : files)
+        {
+            ImageReader reader = null;
+            long reserved = 0;
+            boolean submitted = false;
+
+            try
+            {
+                reader = new ImageReader();
+                reader.setId(file.getAbsolutePath());
+
+                reserved = budget.acquire(getMemorySize(reader));
+
+                final FileTask task = new FileTask(reader, file, reserved);
+
+                while (!processor.addTask(task))
+                    ThreadUtil.sleep(1);
+
+                // task now owns the reader and the reserved memory
+                submitted = true;
+            }
+            catch (Throwable t)
+            {
+                System.err.println("Failed to open '" + file.getAbsolutePath() + "' :");
+                IcyExceptionHandler.showErrorMessage(t, false);
+                numFailed.incrementAndGet();
+            }
+            finally
+            {
+                if (!submitted)
+                {
+                    try
+                    {
+                        if (reader != null)
+                            reader.close();
+                    }
+                    catch (Exception e)
+                    {
+                        // ignore
+                    }
+
+                    budget.release(reserved);
+                }
+            }
+        }
+
+        processor.shutdownAndWait();
+
+        printStatistics();
+
+        System.exit((numFailed.get() > 0) ? 2 : 0);
+    }
+
+    /**
+     * Return estimated memory needed to process the image opened by the specified reader (input
+     * plane + output planes).
+     */
+    static long getMemorySize(ImageReader reader)
+    {
+        final long sizeX = reader.getSizeX();
+        final long planeSize = sizeX * reader.getSizeY() * reader.getSizeC()
+                * DataType.getDataTypeFromFormatToolsType(reader.getPixelType()).getSize();
+
+        return planeSize + (planeSize * reader.getSizeZ() * reader.getSizeT());
+    }
+
+    static File getOutputFile(File input)
+    {
+        final String name;
+
+        if (outputExt != null)
+            name = FileUtil.setExtension(input.getName(), outputExt);
+        else
+            name = input.getName();
+
+        return new File(outputDir, name);
+    }
+
+    private static boolean handleAppArgs(String[] args)
+    {
+        for (int i = 0; i < args.length; i++)
+        {
+            final String arg = args[i];
+            final boolean hasValue = (i + 1) < args.length;
+
+            try
+            {
+                if (arg.equalsIgnoreCase("-plugin") && hasValue)
+                    pluginClassName = args[++i];
+                else if (arg.equalsIgnoreCase("-output") && hasValue)
+                    outputDir = new File(args[++i]);
+                else if (arg.equalsIgnoreCase("-ext") && hasValue)
+                {
+                    outputExt = args[++i];
+                    if (!outputExt.startsWith("."))
+                        outputExt = "." + outputExt;
+                }
+                else if (arg.equalsIgnoreCase("-threads") && hasValue)
+                    numThread = Math.max(1, Integer.parseInt(args[++i]));
+                else if (arg.equalsIgnoreCase("-memory") && hasValue)
+                    memoryLimit = Math.max(1L, Long.parseLong(args[++i])) * 1024L * 1024L;
+                else if (arg.equalsIgnoreCase("-recursive"))
+                    recursive = true;
+                // special flag to disabled JCL (needed for development)
+                else if (arg.equalsIgnoreCase("--disableJCL") || arg.equalsIgnoreCase("-dJCL"))
+                    PluginLoader.JCLDisabled = true;
+                else if (arg.startsWith("-"))
+                {
+                    System.err.println("Unknown parameter : " + arg);
+                    return false;
+                }
+                else
+                    inputs.add(new File(arg));
+            }
+            catch (NumberFormatException e)
+            {
+                System.err.println("Incorrect value for parameter " + arg);
+                return false;
+            }
+        }
+
+        return (pluginClassName != null) && (outputDir != null) && !inputs.isEmpty();
+    }
+
+    private static void printUsage()
+    {
+        System.out.println("Usage : IcyHeadless -plugin <className> -output <directory> [options] <file|directory>...");
+        System.out.println("  -ext <extension>  output file format (default is input file format)");
+        System.out.println("  -threads <n>      number of files processed in parallel (default is "
+                + SystemUtil.getAvailableProcessors() + ")");
+        System.out.println("  -memory <MB>      memory budget for images in process (default is half of max memory)");
+        System.out.println("  -recursive        process sub directories");
+    }
+
+    private static void printStatistics()
+    {
+        final long end = System.nanoTime();
+        final double totalSec = (end - startTime) / 1000000000d;
+        final long first = firstResultTime.get();
+
+        System.out.println();
+        System.out.println(numDone.get() + " file(s) processed, " + numFailed.get() + " failed.");
+        if (first != 0L)
+            System.out.println("Time to first result : " + ((first - startTime) / 1000000L) + " ms");
+        System.out.println("Total time : " + (long) (totalSec * 1000d) + " ms");
+        if (totalSec > 0d)
+            System.out.println("Throughput : " + String.format("%.2f", numDone.get() / totalSec) + " file(s)/s, "
+                    + String.format("%.2f", numPlane.get() / totalSec) + " plane(s)/s");
+    }
+}
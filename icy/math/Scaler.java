@@ -21,14 +21,13 @@ package icy.math;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.common.listener.ListenerList;
 import icy.file.xml.XMLPersistent;
 import icy.math.ScalerEvent.ScalerEventType;
 import icy.type.TypeUtil;
 import icy.type.collection.array.ArrayUtil;
 import icy.util.XMLUtil;
 
-import javax.swing.event.EventListenerList;
-
 import org.w3c.dom.Node;
 
 /**
@@ -68,7 +67,7 @@ public class Scaler implements ChangeListener, XMLPersistent
 
     public double scaleLK[];
 
-    private final EventListenerList listeners;
+    private final ListenerList<ScalerListener> listeners;
 
     /**
      * internal updater
@@ -127,7 +126,7 @@ public class Scaler implements ChangeListener, XMLPersistent
         if (crossed && !canCross)
             throw new IllegalArgumentException("Can't create scaler : left > right and canCross = false");
 
-        listeners = new EventListenerList();
+        listeners = new ListenerList<ScalerListener>(ScalerListener.class);
         updater = new UpdateEventHandler(this, false);
 
         // update scaler
@@ -1203,7 +1202,7 @@ public class Scaler implements ChangeListener, XMLPersistent
      */
     public void fireEvent(ScalerEvent e)
     {
-        for (ScalerListener listener : listeners.getListeners(ScalerListener.class))
+        for (ScalerListener listener : listeners.getListeners())
             listener.scalerChanged(e);
     }
 
@@ -1214,7 +1213,7 @@ public class Scaler implements ChangeListener, XMLPersistent
      */
     public void addListener(ScalerListener listener)
     {
-        listeners.add(ScalerListener.class, listener);
+        listeners.add(listener);
     }
 
     /**
@@ -1224,7 +1223,7 @@ public class Scaler implements ChangeListener, XMLPersistent
      */
     public void removeListener(ScalerListener listener)
     {
-        listeners.remove(ScalerListener.class, listener);
+        listeners.remove(listener);
     }
 
     @Override
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.network;
+
+import icy.file.FileUtil;
+import icy.system.IcyExceptionHandler;
+import icy.util.StringUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Properties;
+
+/**
+ * Local on-disk cache for HTTP resources (repository and plugin descriptor XML, images...).<br>
+ * A cached resource is used directly while it is younger than the time to live, after that it is
+ * revalidated with a conditional request (ETag / Last-Modified) so an unchanged resource only
+ * costs a <code>304 Not Modified</code> response.<br>
+ * When the server cannot be reached the last cached content is used.
+ */
+public class HttpCache
+{
+    public static final String CACHE_DIRECTORY = "cache" + FileUtil.separator + "http";
+    public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000;
+
+    private static final String DATA_EXT = ".data";
+    private static final String META_EXT = ".meta";
+    private static final String TEMP_EXT = ".tmp";
+
+    private static final String ID_URL = "url";
+    private static final String ID_ETAG = "etag";
+    private static final String ID_LAST_MODIFIED = "lastModified";
+    private static final String ID_TIME = "time";
+
+    private static long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    /**
+     * per entry lock
+     */
+    private static final HashMap<String, Object> locks = new HashMap<String, Object>();
+
+    /**
+     * Return the time (in ms) during which a cached resource is used without revalidation
+     */
+    public static long getTimeToLive()
+    {
+        return timeToLive;
+    }
+
+    /**
+     * Set the time (in ms) during which a cached resource is used without revalidation
+     */
+    public static void setTimeToLive(long value)
+    {
+        timeToLive = Math.max(0, value);
+    }
+
+    /**
+     * Return the local file containing the content of the specified URL.<br>
+     * Content is downloaded or revalidated if needed.
+     * 
+     * @return local file or <code>null</code> if the resource can't be retrieved
+     */
+    public static File getFile(URL url, AuthenticationInfo auth, boolean displayError)
+    {
+        if (url == null)
+            return null;
+
+        final String key = getKey(url, auth);
+
+        synchronized (getLock(key))
+        {
+            final File data = new File(CACHE_DIRECTORY, key + DATA_EXT);
+            final File meta = new File(CACHE_DIRECTORY, key + META_EXT);
+            final Properties props = loadMeta(meta, url);
+            final boolean cached = (props != null) && data.exists();
+
+            // fresh enough --> no request at all
+            if (cached && ((System.currentTimeMillis() - getLong(props, ID_TIME)) < timeToLive))
+                return data;
+
+            try
+            {
+                final URLConnection uc = NetworkUtil.openConnection(url, true, displayError);
+                if (uc == null)
+                    return cached ? data : null;
+
+                // set authentication if needed
+                if ((auth != null) && auth.isEnabled())
+                    NetworkUtil.setAuthentication(uc, auth.getLogin(), auth.getPassword());
+
+                // conditional request
+                if (cached)
+                {
+                    final String etag = props.getProperty(ID_ETAG);
+                    final long lastModified = getLong(props, ID_LAST_MODIFIED);
+
+                    if (!StringUtil.isEmpty(etag))
+                        uc.setRequestProperty("If-None-Match", etag);
+                    if (lastModified > 0)
+                        uc.setIfModifiedSince(lastModified);
+                }
+
+                // not modified --> just refresh entry time
+                if (cached && (uc instanceof HttpURLConnection)
+                        && (((HttpURLConnection) uc).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED))
+                {
+                    ((HttpURLConnection) uc).disconnect();
+                    props.setProperty(ID_TIME, Long.toString(System.currentTimeMillis()));
+                    saveMeta(meta, props);
+
+                    return data;
+                }
+
+                final InputStream ip = NetworkUtil.getInputStream(uc, displayError);
+                if (ip == null)
+                    return cached ? data : null;
+
+                // store new content (unique temporary file as several JVM can share the cache)
+                FileUtil.ensureParentDirExist(data);
+                final File temp = File.createTempFile(key, TEMP_EXT, data.getParentFile());
+
+                try
+                {
+                    write(ip, temp);
+                }
+                catch (IOException e)
+                {
+                    temp.delete();
+                    throw e;
+                }
+
+                if (!FileUtil.rename(temp, data, true))
+                {
+                    temp.delete();
+                    return null;
+                }
+
+                final Properties newProps = new Properties();
+
+                newProps.setProperty(ID_URL, url.toString());
+                newProps.setProperty(ID_TIME, Long.toString(System.currentTimeMillis()));
+                newProps.setProperty(ID_LAST_MODIFIED, Long.toString(uc.getLastModified()));
+                if (uc.getHeaderField("ETag") != null)
+                    newProps.setProperty(ID_ETAG, uc.getHeaderField("ETag"));
+                saveMeta(meta, newProps);
+
+                return data;
+            }
+            catch (IOException e)
+            {
+                if (displayError)
+                {
+                    System.err.println("HttpCache.getFile('" + url + "') error :");
+                    IcyExceptionHandler.showErrorMessage(e, false, false);
+                }
+
+                // use last known content
+                return cached ? data : null;
+            }
+        }
+    }
+
+    /**
+     * Remove the cache entry for the specified URL (as when cached content is not valid).
+     */
+    public static void remove(URL url, AuthenticationInfo auth)
+    {
+        if (url == null)
+            return;
+
+        final String key = getKey(url, auth);
+
+        synchronized (getLock(key))
+        {
+            new File(CACHE_DIRECTORY, key + DATA_EXT).delete();
+            new File(CACHE_DIRECTORY, key + META_EXT).delete();
+        }
+    }
+
+    /**
+     * Clear the whole cache
+     */
+    public static void clear()
+    {
+        FileUtil.delete(CACHE_DIRECTORY, true);
+    }
+
+    private static Object getLock(String key)
+    {
+        synchronized (locks)
+        {
+            Object result = locks.get(key);
+
+            if (result == null)
+            {
+                result = new Object();
+                locks.put(key, result);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Return the cache entry key for the specified URL and authentication
+     */
+    private static String getKey(URL url, AuthenticationInfo auth)
+    {
+        String id = url.toString();
+
+        // different users can have different content
+        if ((auth != null) && auth.isEnabled())
+            id = auth.getLogin() + "@" + id;
+
+        try
+        {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(id.getBytes("UTF-8"));
+            final StringBuilder result = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest)
+            {
+                result.append(Character.forDigit((b >> 4) & 0xF, 16));
+                result.append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return result.toString();
+        }
+        catch (Exception e)
+        {
+            // should not happen
+            return Integer.toHexString(id.hashCode());
+        }
+    }
+
+    private static long getLong(Properties props, String name)
+    {
+        try
+        {
+            return Long.parseLong(props.getProperty(name, "0"));
+        }
+        catch (NumberFormatException e)
+        {
+            return 0L;
+        }
+    }
+
+    /**
+     * Load entry informations, return null if entry doesn't exist or doesn't match the URL.
+     */
+    private static Properties loadMeta(File meta, URL url)
+    {
+        if (!meta.exists())
+            return null;
+
+        final Properties result = new Properties();
+
+        try
+        {
+            final InputStream in = new FileInputStream(meta);
+
+            try
+            {
+                result.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+
+        // key collision
+        if (!url.toString().equals(result.getProperty(ID_URL)))
+            return null;
+
+        return result;
+    }
+
+    private static void saveMeta(File meta, Properties props)
+    {
+        try
+        {
+            final OutputStream out = new FileOutputStream(meta);
+
+            try
+            {
+                props.store(out, null);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // entry will be revalidated next time
+            meta.delete();
+        }
+    }
+
+    private static void write(InputStream in, File file) throws IOException
+    {
+        final byte[] buffer = new byte[16 * 1024];
+
+        try
+        {
+            final OutputStream out = new FileOutputStream(file);
+
+            try
+            {
+                int count;
+
+                while ((count = in.read(buffer)) >= 0)
+                    out.write(buffer, 0, count);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -21,7 +21,9 @@ package icy.network;
 import icy.common.listener.ProgressListener;
 import icy.preferences.ApplicationPreferences;
 import icy.system.IcyExceptionHandler;
+import icy.file.FileUtil;
 import icy.system.SystemUtil;
+import icy.system.thread.Processor;
 import icy.system.thread.ThreadUtil;
 import icy.util.StringUtil;
 
@@ -34,19 +36,25 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.security.Security;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Future;
 
 import sun.misc.BASE64Encoder;
 
@@ -58,6 +66,19 @@ public class NetworkUtil
     static final String REPORT_URL = "http://www.bioimageanalysis.org/icy/index.php";
     public static final String USER_INTERRUPT_MESS = "Load interrupted by user";
 
+    /**
+     * extension of partially downloaded file (see {@link #downloadToFile(URL, File, String, String,
+     * ProgressListener, boolean)})
+     */
+    public static final String PARTIAL_EXT = ".part";
+    /**
+     * extension of the file storing the validator (ETag or Last-Modified) of a partial download
+     */
+    public static final String VALIDATOR_EXT = ".validator";
+
+    private static final int DOWNLOAD_BLOCKSIZE = 64 * 1024;
+    private static final int MAX_PARALLEL_DOWNLOAD = 4;
+
     public static void init()
     {
         // use system proxy by default
@@ -327,6 +348,371 @@ public class NetworkUtil
         return download(in, -1, null);
     }
 
+    /**
+     * Download data from specified URL string (or file path) directly to the specified file.<br>
+     * See {@link #downloadToFile(URL, File, String, String, ProgressListener, boolean)}.
+     */
+    public static boolean downloadToFile(String path, File dest, String login, String pass,
+            ProgressListener listener, boolean displayError)
+    {
+        final File file = new File(path);
+
+        try
+        {
+            if (file.exists())
+                return downloadToFile(file.toURI().toURL(), dest, login, pass, listener, displayError);
+        }
+        catch (IOException e)
+        {
+            // try as URL
+        }
+
+        final URL url = URLUtil.getURL(path);
+        if (url != null)
+            return downloadToFile(url, dest, login, pass, listener, displayError);
+
+        if (displayError)
+            System.out.println("Can't download '" + path + "', incorrect path !");
+
+        return false;
+    }
+
+    /**
+     * Download data from specified URL string (or file path) directly to the specified file.<br>
+     * See {@link #downloadToFile(URL, File, String, String, ProgressListener, boolean)}.
+     */
+    public static boolean downloadToFile(String path, File dest, ProgressListener listener, boolean displayError)
+    {
+        return downloadToFile(path, dest, null, null, listener, displayError);
+    }
+
+    /**
+     * Download data from specified URL directly to the specified file.<br>
+     * Data are streamed with a fixed size buffer to a temporary file (<code>dest + PARTIAL_EXT</code>
+     * ) which is renamed to <code>dest</code> only when transfer is complete.<br>
+     * If the transfer is interrupted the partial file is kept and the next download of the same
+     * file resumes from where it stopped (HTTP Range request). The resource validator (ETag or
+     * Last-Modified) is stored next to the partial file and sent in a If-Range header so the
+     * transfer restarts from the beginning if the resource changed meanwhile.<br>
+     * Process authentication process if login / pass are not null.
+     * 
+     * @return true if the file was correctly downloaded
+     */
+    public static boolean downloadToFile(URL url, File dest, String login, String pass, ProgressListener listener,
+            boolean displayError)
+    {
+        if (url == null)
+            return false;
+
+        final File part = new File(dest.getPath() + PARTIAL_EXT);
+        final File validatorFile = new File(part.getPath() + VALIDATOR_EXT);
+        boolean done;
+
+        FileUtil.ensureParentDirExist(part);
+
+        try
+        {
+            // local file
+            if (URLUtil.isFileURL(url))
+            {
+                final File src = new File(url.toURI());
+
+                if (!src.exists())
+                {
+                    if (displayError)
+                        System.err.println("File not found : " + src.getPath());
+                    return false;
+                }
+
+                done = writeToFile(new FileInputStream(src), part, false, 0, src.length(), listener);
+            }
+            else
+            {
+                // disable cache
+                final URLConnection uc = openConnection(url, true, displayError);
+                if (uc == null)
+                    return false;
+                // process authentication if needed
+                if (!(StringUtil.isEmpty(login) || StringUtil.isEmpty(pass)))
+                    setAuthentication(uc, login, pass);
+
+                long offset = part.exists() ? part.length() : 0;
+                final String validator = loadValidator(validatorFile);
+
+                // resume previous transfer (only if we can check the resource didn't change)
+                if ((offset > 0) && (validator != null) && (uc instanceof HttpURLConnection))
+                {
+                    final HttpURLConnection hc = (HttpURLConnection) uc;
+
+                    hc.setRequestProperty("Range", "bytes=" + offset + "-");
+                    hc.setRequestProperty("If-Range", validator);
+
+                    final int code = hc.getResponseCode();
+
+                    // partial file is not valid anymore --> restart from beginning
+                    if (code == 416)
+                    {
+                        hc.disconnect();
+                        part.delete();
+                        validatorFile.delete();
+
+                        return downloadToFile(url, dest, login, pass, listener, displayError);
+                    }
+                    // resource changed or range not supported --> whole content is sent
+                    if ((code != HttpURLConnection.HTTP_PARTIAL)
+                            || !StringUtil.equals(getRangeStart(hc.getHeaderField("Content-Range")), Long.toString(offset)))
+                        offset = 0;
+                }
+                else
+                    offset = 0;
+
+                // new transfer --> store validator of the resource for later resume
+                if (offset == 0)
+                    saveValidator(validatorFile, uc);
+
+                // get input stream with coherence verification
+                final InputStream ip = getInputStream(uc, displayError);
+                if (ip == null)
+                    return false;
+
+                final long len = uc.getContentLength();
+
+                done = writeToFile(ip, part, offset > 0, offset, (len == -1) ? -1 : offset + len, listener);
+            }
+        }
+        catch (Exception e)
+        {
+            // partial file is kept so transfer can be resumed
+            if (displayError)
+            {
+                System.out.println("Error while downloading from '" + url + "' :");
+                IcyExceptionHandler.showErrorMessage(e, false, false);
+            }
+
+            return false;
+        }
+
+        // interrupted by user
+        if (!done)
+        {
+            part.delete();
+            validatorFile.delete();
+            return false;
+        }
+
+        validatorFile.delete();
+
+        // transfer complete --> rename to final file
+        return FileUtil.rename(part, dest, true);
+    }
+
+    /**
+     * Return the strong validator (ETag or Last-Modified) of the specified connection response
+     * usable in a If-Range header (null if none)
+     */
+    private static String getValidator(URLConnection uc)
+    {
+        final String etag = uc.getHeaderField("ETag");
+
+        // weak ETag can't be used for range requests
+        if (!StringUtil.isEmpty(etag) && !etag.startsWith("W/"))
+            return etag;
+
+        final String lastModified = uc.getHeaderField("Last-Modified");
+
+        if (!StringUtil.isEmpty(lastModified))
+            return lastModified;
+
+        return null;
+    }
+
+    private static void saveValidator(File validatorFile, URLConnection uc)
+    {
+        final String validator = getValidator(uc);
+
+        if (validator == null)
+            validatorFile.delete();
+        else
+            FileUtil.save(validatorFile, validator.getBytes(), false);
+    }
+
+    private static String loadValidator(File validatorFile)
+    {
+        if (!validatorFile.exists())
+            return null;
+
+        final byte[] data = FileUtil.load(validatorFile, false);
+
+        if ((data == null) || (data.length == 0))
+            return null;
+
+        return new String(data);
+    }
+
+    /**
+     * Return the first byte position of the specified Content-Range header value (null if
+     * invalid)
+     */
+    private static String getRangeStart(String contentRange)
+    {
+        if ((contentRange == null) || !contentRange.startsWith("bytes "))
+            return null;
+
+        final int end = contentRange.indexOf('-');
+
+        if (end == -1)
+            return null;
+
+        return contentRange.substring(6, end).trim();
+    }
+
+    /**
+     * Download concurrently the specified URL strings (or file paths) to the specified files.<br>
+     * Each file is downloaded as with
+     * {@link #downloadToFile(URL, File, String, String, ProgressListener, boolean)} and global
+     * progress is reported to the specified listener (cancellation stops all transfers).
+     * 
+     * @param displayError
+     *        display error flag for each file (can be <code>null</code> to display all errors)
+     * @return success flag for each file
+     */
+    public static boolean[] downloadToFiles(String[] paths, File[] dests, final String login, final String pass,
+            final ProgressListener listener, boolean[] displayError)
+    {
+        final int num = paths.length;
+        final boolean[] result = new boolean[num];
+        final double[] positions = new double[num];
+        final double[] lengths = new double[num];
+        final boolean[] cancelled = new boolean[1];
+        // processor needs at least one waiting slot
+        final Processor processor = new Processor(Math.max(1, num), Math.max(1, Math.min(num, MAX_PARALLEL_DOWNLOAD)));
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        try
+        {
+            for (int i = 0; i < num; i++)
+            {
+                final int index = i;
+                final String path = paths[i];
+                final File dest = dests[i];
+                final boolean error = (displayError == null) || displayError[i];
+
+                if (StringUtil.isEmpty(path) || (dest == null))
+                    continue;
+
+                // merge progress of all transfers
+                final ProgressListener fileListener = new ProgressListener()
+                {
+                    @Override
+                    public boolean notifyProgress(double position, double length)
+                    {
+                        synchronized (cancelled)
+                        {
+                            positions[index] = position;
+                            lengths[index] = length;
+
+                            if (!cancelled[0] && (listener != null))
+                            {
+                                double pos = 0d;
+                                double len = 0d;
+
+                                for (int j = 0; j < num; j++)
+                                {
+                                    pos += positions[j];
+                                    len += Math.max(0d, lengths[j]);
+                                }
+
+                                if (!listener.notifyProgress(pos, len))
+                                    cancelled[0] = true;
+                            }
+
+                            return !cancelled[0];
+                        }
+                    }
+                };
+
+                futures.add(processor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        result[index] = downloadToFile(path, dest, login, pass, fileListener, error);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (Exception e)
+                {
+                    // result stay false
+                }
+            }
+        }
+        finally
+        {
+            processor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    /**
+     * Stream data from specified InputStream to the specified file (InputStream is closed).
+     * 
+     * @return false if interrupted by user
+     */
+    private static boolean writeToFile(InputStream in, File file, boolean append, long offset, long len,
+            ProgressListener listener) throws IOException
+    {
+        final byte[] data = new byte[DOWNLOAD_BLOCKSIZE];
+
+        try
+        {
+            final OutputStream out = new FileOutputStream(file, append);
+
+            try
+            {
+                long off = offset;
+                int count;
+
+                while ((count = in.read(data)) >= 0)
+                {
+                    if (count > 0)
+                    {
+                        out.write(data, 0, count);
+                        off += count;
+                    }
+
+                    // download canceled ?
+                    if ((listener != null) && !listener.notifyProgress(off, len))
+                    {
+                        System.out.println(USER_INTERRUPT_MESS);
+                        return false;
+                    }
+                }
+
+                // unexpected length
+                if ((len != -1) && (off != len))
+                    throw new EOFException();
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        return true;
+    }
+
     public static URLConnection openConnection(String path, boolean disableCache, boolean displayError)
     {
         return openConnection(URLUtil.getURL(path), disableCache, displayError);
@@ -37,6 +37,16 @@ public class Connector
         state = null;
     }
 
+    /**
+     * 
+     */
+    public Connector(NodeEntry connectPoint)
+    {
+        this();
+
+        this.connectPoint = connectPoint;
+    }
+
     /**
      * @return the connectPoint
      */
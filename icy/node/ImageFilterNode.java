@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ * 
+ * This file is part of ICY.
+ * 
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.node;
+
+import icy.image.IcyBufferedImage;
+import icy.plugin.interface_.PluginImageFilter;
+
+/**
+ * Node applying a {@link PluginImageFilter} on each image of the stream.<br>
+ * By default images are filtered in parallel so the filter should be thread safe (use
+ * {@link #ImageFilterNode(String, PluginImageFilter, boolean)} otherwise), the input image is
+ * read only.
+ */
+public class ImageFilterNode extends Node
+{
+    protected final PluginImageFilter filter;
+    protected final boolean parallel;
+
+    /**
+     * @param parallel
+     *        filter several images at once (filter should be thread safe)
+     */
+    public ImageFilterNode(String name, PluginImageFilter filter, boolean parallel)
+    {
+        super(name);
+
+        this.filter = filter;
+        this.parallel = parallel;
+
+        addInput("image", IcyBufferedImage.class);
+        addOutput("image", IcyBufferedImage.class);
+    }
+
+    /**
+     * 
+     */
+    public ImageFilterNode(String name, PluginImageFilter filter)
+    {
+        this(name, filter, true);
+    }
+
+    /**
+     * 
+     */
+    public ImageFilterNode(PluginImageFilter filter)
+    {
+        this(filter.getClass().getSimpleName(), filter);
+    }
+
+    @Override
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
+    @Override
+    public boolean process(long index, Object[] in, Object[] out)
+    {
+        out[0] = filter.processImage((IcyBufferedImage) in[0]);
+
+        return true;
+    }
+}
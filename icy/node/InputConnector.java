@@ -18,10 +18,137 @@
  */
 package icy.node;
 
+import icy.system.thread.CancelToken;
+
+import java.util.LinkedList;
+
 /**
+ * Connector feeding a {@link NodeInput}.<br>
+ * It is owned by the producing {@link NodeOutput} and buffers a bounded number of data items so
+ * the producer blocks when the consumer is late (memory stays constant whatever the stream
+ * length).<br>
+ * Producer and consumer wait on the consumer node lock (no polling), the {@link NodeGraph} wakes
+ * them up on cancel.
+ * 
  * @author Stephane
  */
 public class InputConnector extends Connector
 {
+    /**
+     * end of stream marker
+     */
+    static final Object END = new Object();
+
+    private final LinkedList<Object> buffer;
+    private final int bufferSize;
+    private volatile boolean closed;
+
+    /**
+     * 
+     */
+    public InputConnector(NodeInput input, int bufferSize)
+    {
+        super(input);
+
+        buffer = new LinkedList<Object>();
+        this.bufferSize = Math.max(1, bufferSize);
+        closed = false;
+    }
+
+    public NodeInput getInput()
+    {
+        return (NodeInput) getConnectPoint();
+    }
+
+    public void setInput(NodeInput input)
+    {
+        setConnectPoint(input);
+    }
+
+    /**
+     * Return the lock producer and consumer wait on (consumer node lock)
+     */
+    Object getLock()
+    {
+        return getInput().getNode().lock;
+    }
+
+    /**
+     * Return true if consumer does not accept data anymore
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Push data to consumer (wait if buffer is full).<br>
+     * Data is dropped if consumer is closed or token cancelled.
+     */
+    void put(Object data, CancelToken token) throws InterruptedException
+    {
+        final Object lock = getLock();
+        // one more place for the end of stream marker
+        final int size = (data == END) ? bufferSize + 1 : bufferSize;
+
+        synchronized (lock)
+        {
+            while (!closed && !token.isCancelled() && (buffer.size() >= size))
+                lock.wait();
+
+            if (closed || token.isCancelled())
+                return;
+
+            buffer.addLast(data);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Return true if data is available (should be called while holding the lock)
+     */
+    boolean isReady()
+    {
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * Return next data (should be called while holding the lock and data is available)
+     */
+    Object poll()
+    {
+        final Object result = buffer.removeFirst();
+
+        // a place is available for producer
+        getLock().notifyAll();
+
+        return result;
+    }
+
+    /**
+     * Consumer is done, release buffered data
+     */
+    void close()
+    {
+        final Object lock = getLock();
+
+        synchronized (lock)
+        {
+            closed = true;
+            buffer.clear();
+            lock.notifyAll();
+        }
+    }
 
+    /**
+     * Prepare for a new run
+     */
+    void reset()
+    {
+        synchronized (getLock())
+        {
+            buffer.clear();
+            closed = false;
+        }
+    }
 }
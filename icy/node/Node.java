@@ -18,10 +18,173 @@
  */
 package icy.node;
 
+import java.util.ArrayList;
+
 /**
+ * Processing node of a {@link NodeGraph}.<br>
+ * A node declares typed inputs and outputs then processes the data stream item per item : for
+ * each item index the node receives one data from each input and should set one data for each
+ * output.<br>
+ * A node without input is a source node, it produces items until
+ * {@link #process(long, Object[], Object[])} returns false.<br>
+ * Processing runs on the shared {@link icy.system.thread.TaskScheduler}. Items are processed
+ * sequentially by a node so its implementation does not need to be thread safe, unless
+ * {@link #isParallel()} returns true: several items are then processed at once (outputs are still
+ * sent in order). Different nodes run in parallel.<br>
+ * Input data can be shared with other consumers (and the producer) so it is read only, an input
+ * declared writable (see {@link NodeInput#setWritable(boolean)}) receives its own copy.
+ * 
  * @author Stephane
  */
-public class Node
+public abstract class Node
 {
+    protected final String name;
+    protected final ArrayList<NodeInput> inputs;
+    protected final ArrayList<NodeOutput> outputs;
+    /**
+     * lock the node runner and the producers feeding it wait on
+     */
+    final Object lock;
+
+    /**
+     * 
+     */
+    public Node(String name)
+    {
+        super();
+
+        this.name = name;
+        inputs = new ArrayList<NodeInput>();
+        outputs = new ArrayList<NodeOutput>();
+        lock = new Object();
+    }
+
+    /**
+     * Add an input of specified data type
+     */
+    protected NodeInput addInput(String name, Class<?> type)
+    {
+        final NodeInput result = new NodeInput(this, name, type);
+
+        inputs.add(result);
+
+        return result;
+    }
+
+    /**
+     * Add an output of specified data type
+     */
+    protected NodeOutput addOutput(String name, Class<?> type)
+    {
+        final NodeOutput result = new NodeOutput(this, name, type);
+
+        outputs.add(result);
+
+        return result;
+    }
+
+    /**
+     * @return the name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the inputs
+     */
+    public ArrayList<NodeInput> getInputs()
+    {
+        return new ArrayList<NodeInput>(inputs);
+    }
+
+    /**
+     * @return the outputs
+     */
+    public ArrayList<NodeOutput> getOutputs()
+    {
+        return new ArrayList<NodeOutput>(outputs);
+    }
+
+    public NodeInput getInput(int index)
+    {
+        return inputs.get(index);
+    }
+
+    public NodeOutput getOutput(int index)
+    {
+        return outputs.get(index);
+    }
+
+    public NodeInput getInput(String name)
+    {
+        for (NodeInput input : inputs)
+            if (input.getName().equals(name))
+                return input;
+
+        return null;
+    }
+
+    public NodeOutput getOutput(String name)
+    {
+        for (NodeOutput output : outputs)
+            if (output.getName().equals(name))
+                return output;
+
+        return null;
+    }
+
+    /**
+     * Return true if this node is a source node (no input)
+     */
+    public boolean isSource()
+    {
+        return inputs.isEmpty();
+    }
+
+    /**
+     * Return true if several items can be processed at once (
+     * {@link #process(long, Object[], Object[])} is then thread safe).<br>
+     * Source nodes always produce items sequentially.
+     */
+    public boolean isParallel()
+    {
+        return false;
+    }
+
+    /**
+     * Called before the first item is processed
+     */
+    public void start()
+    {
+        // nothing by default
+    }
+
+    /**
+     * Called when the stream ended (even on error or cancel)
+     */
+    public void stop()
+    {
+        // nothing by default
+    }
+
+    /**
+     * Process one item of the stream.
+     * 
+     * @param index
+     *        item index in the stream
+     * @param in
+     *        input data (one per input, in declaration order)
+     * @param out
+     *        output data to set (one per output, in declaration order)
+     * @return false to end the stream (outputs are then ignored)
+     */
+    public abstract boolean process(long index, Object[] in, Object[] out) throws Exception;
 
+    @Override
+    public String toString()
+    {
+        return name;
+    }
 }
@@ -19,9 +19,56 @@
 package icy.node;
 
 /**
+ * Typed port of a {@link Node}.<br>
+ * Data going through the port should be instance of the port type.
+ * 
  * @author Stephane
  */
 public class NodeEntry
 {
+    protected final Node node;
+    protected final String name;
+    protected final Class<?> type;
+
+    /**
+     * 
+     */
+    public NodeEntry(Node node, String name, Class<?> type)
+    {
+        super();
+
+        this.node = node;
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * @return the node owning this entry
+     */
+    public Node getNode()
+    {
+        return node;
+    }
+
+    /**
+     * @return the name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the data type
+     */
+    public Class<?> getType()
+    {
+        return type;
+    }
 
+    @Override
+    public String toString()
+    {
+        return node.getName() + "." + name;
+    }
 }
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ * 
+ * This file is part of ICY.
+ * 
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.node;
+
+import icy.system.SystemUtil;
+import icy.system.thread.CancelToken;
+import icy.system.thread.Processor;
+import icy.system.thread.TaskScheduler;
+import icy.system.thread.TaskScheduler.TaskPriority;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Dataflow graph of {@link Node}.<br>
+ * Data items are streamed from source nodes through the graph : each connection buffers at most
+ * <code>bufferSize</code> items so producers wait for consumers and memory usage does not depend
+ * on the stream length, an item is released as soon as all its consumers processed it.<br>
+ * Each node has a runner thread which only dispatches items (it waits for data without polling),
+ * items are processed on the shared {@link TaskScheduler} so successive nodes work in pipeline,
+ * independent branches run in parallel and parallel nodes (see {@link Node#isParallel()})
+ * process several items at once.
+ */
+public class NodeGraph
+{
+    public static final int DEFAULT_BUFFER_SIZE = 2;
+
+    /**
+     * Processing of one item by a node
+     */
+    private static class NodeTask implements Runnable
+    {
+        final Node node;
+        final long index;
+        final Object[] in;
+        final Object[] out;
+        Future<?> future;
+        boolean result;
+        Throwable error;
+        boolean done;
+
+        NodeTask(Node node, long index, Object[] in)
+        {
+            super();
+
+            this.node = node;
+            this.index = index;
+            this.in = in;
+            out = new Object[node.outputs.size()];
+            future = null;
+            result = false;
+            error = null;
+            done = false;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                // writable inputs get their own copy
+                for (int i = 0; i < in.length; i++)
+                {
+                    final NodeInput input = node.inputs.get(i);
+
+                    if (input.isWritable())
+                        in[i] = input.copy(in[i]);
+                }
+
+                result = node.process(index, in, out);
+            }
+            catch (Throwable t)
+            {
+                error = t;
+            }
+            finally
+            {
+                synchronized (node.lock)
+                {
+                    done = true;
+                    node.lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private class NodeRunner implements Runnable
+    {
+        final Node node;
+        final CancelToken token;
+        /**
+         * items being processed (in order)
+         */
+        final LinkedList<NodeTask> running;
+        final int maxRunning;
+
+        NodeRunner(Node node, CancelToken token)
+        {
+            super();
+
+            this.node = node;
+            this.token = token;
+            running = new LinkedList<NodeTask>();
+
+            if (node.isParallel() && !node.isSource())
+                maxRunning = SystemUtil.getAvailableProcessors();
+            else
+                maxRunning = 1;
+        }
+
+        /**
+         * Return true if an item is available on each input (should be called while holding the
+         * node lock)
+         */
+        private boolean isInputReady()
+        {
+            for (NodeInput input : node.inputs)
+                if (!input.connector.isReady())
+                    return false;
+
+            return true;
+        }
+
+        @Override
+        public void run()
+        {
+            final TaskScheduler scheduler = TaskScheduler.getInstance();
+            final int numIn = node.inputs.size();
+            final int numOut = node.outputs.size();
+
+            try
+            {
+                node.start();
+
+                long index = 0;
+                // no more item to process
+                boolean end = false;
+                // results of remaining items aren't needed anymore
+                boolean discard = false;
+
+                while (!token.isCancelled())
+                {
+                    NodeTask task = null;
+                    Object[] in = null;
+
+                    // wait for the oldest item to be processed or for a new item
+                    synchronized (node.lock)
+                    {
+                        while (!token.isCancelled())
+                        {
+                            if (!running.isEmpty() && running.getFirst().done)
+                            {
+                                task = running.removeFirst();
+                                break;
+                            }
+                            if (!end && (running.size() < maxRunning) && isInputReady())
+                            {
+                                // get one item from each input
+                                in = new Object[numIn];
+                                for (int i = 0; i < numIn; i++)
+                                    in[i] = node.inputs.get(i).connector.poll();
+                                break;
+                            }
+                            if (end && running.isEmpty())
+                                break;
+
+                            node.lock.wait();
+                        }
+                    }
+
+                    if (task != null)
+                    {
+                        // stream stopped, just ignore result
+                        if (discard)
+                            continue;
+
+                        if (task.error != null)
+                            throw task.error;
+
+                        if (!task.result)
+                        {
+                            end = true;
+                            discard = true;
+                            continue;
+                        }
+
+                        for (int i = 0; i < numOut; i++)
+                        {
+                            if (task.out[i] == null)
+                                throw new IllegalStateException("Node " + node.getName() + " did not set output "
+                                        + node.outputs.get(i).getName());
+
+                            node.outputs.get(i).push(task.out[i], token);
+                        }
+                    }
+                    else if (in != null)
+                    {
+                        for (int i = 0; i < numIn; i++)
+                            if (in[i] == InputConnector.END)
+                                end = true;
+
+                        // nobody need our data anymore
+                        if ((numOut > 0) && !isConsumed(node))
+                        {
+                            end = true;
+                            discard = true;
+                        }
+
+                        if (!end)
+                        {
+                            task = new NodeTask(node, index++, in);
+
+                            synchronized (node.lock)
+                            {
+                                running.addLast(task);
+                            }
+
+                            task.future = scheduler.submit(task, TaskPriority.COMPUTE, token);
+                        }
+                    }
+                    // end of stream and all items done
+                    else if (end)
+                        break;
+                }
+            }
+            catch (Throwable t)
+            {
+                failed(t);
+            }
+            finally
+            {
+                // wait for items in process so the node is not stopped while processing
+                waitForCompletion();
+
+                try
+                {
+                    node.stop();
+                }
+                catch (Throwable t)
+                {
+                    failed(t);
+                }
+
+                // we don't accept data anymore
+                for (NodeInput input : node.inputs)
+                {
+                    input.connector.close();
+                    input.setConsumed(true);
+                }
+
+                // end of stream for consumers
+                try
+                {
+                    for (NodeOutput output : node.outputs)
+                        output.push(InputConnector.END, token);
+                }
+                catch (InterruptedException e)
+                {
+                    failed(e);
+                }
+            }
+        }
+
+        private void waitForCompletion()
+        {
+            boolean interrupted = false;
+
+            while (!running.isEmpty())
+            {
+                final NodeTask task = running.getFirst();
+
+                try
+                {
+                    // not yet submitted
+                    if (task.future != null)
+                        task.future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    // wait anyway, interrupt state is restored after
+                    interrupted = true;
+                    continue;
+                }
+                catch (Exception e)
+                {
+                    // cancelled or failed, ignore
+                }
+
+                running.removeFirst();
+            }
+
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private final ArrayList<Node> nodes;
+    private final int bufferSize;
+
+    /**
+     * internals
+     */
+    private CancelToken token;
+    private Throwable error;
+
+    /**
+     * Create a new graph.
+     * 
+     * @param bufferSize
+     *        maximum number of items waiting on each connection
+     */
+    public NodeGraph(int bufferSize)
+    {
+        super();
+
+        nodes = new ArrayList<Node>();
+        this.bufferSize = Math.max(1, bufferSize);
+        token = new CancelToken();
+        error = null;
+    }
+
+    /**
+     * Create a new graph.
+     */
+    public NodeGraph()
+    {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Add a node to the graph
+     */
+    public synchronized void add(Node node)
+    {
+        if (!nodes.contains(node))
+            nodes.add(node);
+    }
+
+    /**
+     * Return nodes of the graph
+     */
+    public synchronized ArrayList<Node> getNodes()
+    {
+        return new ArrayList<Node>(nodes);
+    }
+
+    /**
+     * Connect the specified output to the specified input.<br>
+     * Nodes are added to the graph if needed.
+     * 
+     * @throws IllegalArgumentException
+     *         if the input is already connected or types are not compatible
+     */
+    public synchronized void connect(NodeOutput output, NodeInput input) throws IllegalArgumentException
+    {
+        if (input.isConnected())
+            throw new IllegalArgumentException("Input " + input + " is already connected.");
+        if (!input.isCompatible(output))
+            throw new IllegalArgumentException("Can't connect " + output + " (" + output.getType().getSimpleName()
+                    + ") to " + input + " (" + input.getType().getSimpleName() + ").");
+
+        final InputConnector connector = new InputConnector(input, bufferSize);
+
+        output.inputs.add(connector);
+        input.connector = connector;
+        input.outputs.add(new OutputConnector(output));
+
+        add(output.getNode());
+        add(input.getNode());
+    }
+
+    /**
+     * Disconnect the specified input
+     */
+    public synchronized void disconnect(NodeInput input)
+    {
+        if (!input.isConnected())
+            return;
+
+        input.getSource().inputs.remove(input.connector);
+        input.connector = null;
+        input.outputs.clear();
+    }
+
+    /**
+     * Stream data through the graph until all source nodes are exhausted.<br>
+     * This method blocks until completion.
+     * 
+     * @return false if the graph has been cancelled
+     * @throws ExecutionException
+     *         if a node failed (first error is the cause)
+     * @throws IllegalStateException
+     *         if a node input is not connected
+     */
+    public boolean run() throws ExecutionException, IllegalStateException
+    {
+        final ArrayList<Node> toRun;
+
+        synchronized (this)
+        {
+            toRun = new ArrayList<Node>(nodes);
+
+            for (Node node : toRun)
+            {
+                for (NodeInput input : node.inputs)
+                {
+                    if (!input.isConnected())
+                        throw new IllegalStateException("Input " + input + " is not connected.");
+
+                    input.connector.reset();
+                    input.setConsumed(false);
+                }
+                for (NodeOutput output : node.outputs)
+                    output.setDataReady(false);
+            }
+
+            token = new CancelToken();
+            error = null;
+        }
+
+        if (toRun.isEmpty())
+            return true;
+
+        // one runner thread per node as they wait for each other (processing is done on the
+        // task scheduler)
+        final Processor processor = new Processor(toRun.size(), toRun.size());
+
+        for (Node node : toRun)
+            processor.addTask(new NodeRunner(node, token));
+
+        processor.shutdownAndWait();
+
+        synchronized (this)
+        {
+            if (error != null)
+                throw new ExecutionException(error);
+        }
+
+        return !token.isCancelled();
+    }
+
+    /**
+     * Cancel the current run
+     */
+    public synchronized void cancel()
+    {
+        token.cancel();
+        wakeUp();
+    }
+
+    synchronized void failed(Throwable t)
+    {
+        // keep first error
+        if (error == null)
+            error = t;
+
+        // stop everything
+        token.cancel();
+        wakeUp();
+    }
+
+    /**
+     * Wake up runners and producers waiting for data or buffer space
+     */
+    private void wakeUp()
+    {
+        for (Node node : nodes)
+        {
+            synchronized (node.lock)
+            {
+                node.lock.notifyAll();
+            }
+        }
+    }
+
+    static boolean isConsumed(Node node)
+    {
+        for (NodeOutput output : node.outputs)
+            if (output.isConsumed())
+                return true;
+
+        return false;
+    }
+}
@@ -18,25 +18,39 @@
  */
 package icy.node;
 
+import icy.image.IcyBufferedImage;
+import icy.sequence.Sequence;
+
 import java.util.ArrayList;
 
 /**
+ * Input port of a {@link Node}.<br>
+ * An input is connected to a single {@link NodeOutput} and reads data from its
+ * {@link InputConnector} buffer.<br>
+ * Received data is shared with the other consumers of the output so it is read only, unless the
+ * input is writable: the node then receives its own copy (see {@link #copy(Object)}) and can
+ * modify it in place.
+ * 
  * @author Stephane
  */
 public class NodeInput extends NodeEntry
 {
     protected final ArrayList<OutputConnector> outputs;
+    protected InputConnector connector;
     protected boolean consumed;
+    protected boolean writable;
 
     /**
      * 
      */
-    public NodeInput()
+    public NodeInput(Node node, String name, Class<?> type)
     {
-        super();
+        super(node, name, type);
 
         outputs = new ArrayList<OutputConnector>();
+        connector = null;
         consumed = false;
+        writable = false;
     }
 
     /**
@@ -47,6 +61,70 @@ public class NodeInput extends NodeEntry
         return outputs;
     }
 
+    /**
+     * Return the output this input is connected to (null if not connected)
+     */
+    public NodeOutput getSource()
+    {
+        if (outputs.isEmpty())
+            return null;
+
+        return outputs.get(0).getOutput();
+    }
+
+    /**
+     * @return the buffer connector we read from
+     */
+    public InputConnector getConnector()
+    {
+        return connector;
+    }
+
+    public boolean isConnected()
+    {
+        return connector != null;
+    }
+
+    /**
+     * Return true if the specified output can be connected to this input
+     */
+    public boolean isCompatible(NodeOutput output)
+    {
+        return type.isAssignableFrom(output.getType());
+    }
+
+    /**
+     * Return true if the node modifies data received on this input (it then receives a copy)
+     */
+    public boolean isWritable()
+    {
+        return writable;
+    }
+
+    /**
+     * Set to true if the node modifies data received on this input in place (it then receives a
+     * copy of the data).
+     */
+    public void setWritable(boolean writable)
+    {
+        this.writable = writable;
+    }
+
+    /**
+     * Return a copy of the specified data for a writable input.<br>
+     * {@link IcyBufferedImage} and {@link Sequence} are supported, override it for other types.
+     */
+    protected Object copy(Object data)
+    {
+        if (data instanceof IcyBufferedImage)
+            return ((IcyBufferedImage) data).getCopy();
+        if (data instanceof Sequence)
+            return ((Sequence) data).getCopy();
+
+        throw new UnsupportedOperationException("Can't copy " + data.getClass().getName() + " for input " + this
+                + ".");
+    }
+
     /**
      * @return the consumed
      */
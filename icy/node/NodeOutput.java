@@ -18,9 +18,16 @@
  */
 package icy.node;
 
+import icy.system.thread.CancelToken;
+
 import java.util.ArrayList;
 
 /**
+ * Output port of a {@link Node}.<br>
+ * An output can feed several inputs, each one through its own {@link InputConnector} buffer.<br>
+ * The same data instance is sent to all connected inputs so consumers should not modify it
+ * (except through a writable input, see {@link NodeInput#setWritable(boolean)}).
+ * 
  * @author Stephane
  */
 public class NodeOutput extends NodeEntry
@@ -31,9 +38,9 @@ public class NodeOutput extends NodeEntry
     /**
      * 
      */
-    public NodeOutput()
+    public NodeOutput(Node node, String name, Class<?> type)
     {
-        super();
+        super(node, name, type);
 
         inputs = new ArrayList<InputConnector>();
         dataReady = false;
@@ -47,6 +54,29 @@ public class NodeOutput extends NodeEntry
         return inputs;
     }
 
+    /**
+     * Return true if at least one connected input still accept data
+     */
+    public boolean isConsumed()
+    {
+        for (InputConnector connector : inputs)
+            if (!connector.isClosed())
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Send data to all connected inputs
+     */
+    void push(Object data, CancelToken token) throws InterruptedException
+    {
+        for (InputConnector connector : inputs)
+            connector.put(data, token);
+
+        dataReady = true;
+    }
+
     /**
      * @return the dataReady
      */
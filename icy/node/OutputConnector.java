@@ -19,6 +19,8 @@
 package icy.node;
 
 /**
+ * Connector giving the {@link NodeOutput} a {@link NodeInput} reads from.
+ * 
  * @author Stephane
  */
 public class OutputConnector extends Connector
@@ -35,6 +37,16 @@ public class OutputConnector extends Connector
         consumed = false;
     }
 
+    /**
+     * 
+     */
+    public OutputConnector(NodeOutput output)
+    {
+        super(output);
+
+        consumed = false;
+    }
+
     /**
      * @return the consumed
      */
@@ -52,13 +64,13 @@ public class OutputConnector extends Connector
         this.consumed = consumed;
     }
 
-    public NodeInput getInput()
+    public NodeOutput getOutput()
     {
-        return (NodeInput) getConnectPoint();
+        return (NodeOutput) getConnectPoint();
     }
 
-    public void setInput(NodeInput input)
+    public void setOutput(NodeOutput output)
     {
-        setConnectPoint(input);
+        setConnectPoint(output);
     }
 }
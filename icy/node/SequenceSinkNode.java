@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ * 
+ * This file is part of ICY.
+ * 
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.node;
+
+import icy.image.IcyBufferedImage;
+import icy.sequence.Sequence;
+
+/**
+ * Node storing received images in a {@link Sequence} (item index <code>i</code> is stored at
+ * <code>t = i / sizeZ</code> and <code>z = i % sizeZ</code>).<br>
+ * Note that the whole result is kept in memory, use your own node to write images as they come
+ * for constant memory usage.
+ */
+public class SequenceSinkNode extends Node
+{
+    protected final Sequence sequence;
+    protected final int sizeZ;
+
+    /**
+     * 
+     */
+    public SequenceSinkNode(String name, int sizeZ)
+    {
+        super(name);
+
+        sequence = new Sequence();
+        sequence.setName(name);
+        this.sizeZ = Math.max(1, sizeZ);
+
+        addInput("image", IcyBufferedImage.class);
+    }
+
+    @Override
+    public void start()
+    {
+        sequence.beginUpdate();
+    }
+
+    @Override
+    public void stop()
+    {
+        sequence.endUpdate();
+    }
+
+    @Override
+    public boolean process(long index, Object[] in, Object[] out)
+    {
+        sequence.setImage((int) (index / sizeZ), (int) (index % sizeZ), (IcyBufferedImage) in[0]);
+
+        return true;
+    }
+
+    /**
+     * @return the result sequence
+     */
+    public Sequence getSequence()
+    {
+        return sequence;
+    }
+}
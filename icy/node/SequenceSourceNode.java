@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ * 
+ * This file is part of ICY.
+ * 
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.node;
+
+import icy.image.IcyBufferedImage;
+import icy.sequence.Sequence;
+
+/**
+ * Source node streaming images of a {@link Sequence} in T then Z order.<br>
+ * Item index <code>i</code> corresponds to <code>t = i / sizeZ</code> and
+ * <code>z = i % sizeZ</code>.
+ */
+public class SequenceSourceNode extends Node
+{
+    protected final Sequence sequence;
+
+    /**
+     * 
+     */
+    public SequenceSourceNode(Sequence sequence)
+    {
+        super(sequence.getName());
+
+        this.sequence = sequence;
+
+        addOutput("image", IcyBufferedImage.class);
+    }
+
+    @Override
+    public boolean process(long index, Object[] in, Object[] out)
+    {
+        final int sizeZ = sequence.getSizeZ();
+
+        if (sizeZ == 0)
+            return false;
+
+        final int t = (int) (index / sizeZ);
+        final int z = (int) (index % sizeZ);
+
+        if (t >= sequence.getSizeT())
+            return false;
+
+        final IcyBufferedImage image = sequence.getImage(t, z);
+
+        if (image == null)
+            return false;
+
+        out[0] = image;
+
+        return true;
+    }
+}
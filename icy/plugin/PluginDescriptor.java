@@ -23,6 +23,7 @@ import icy.file.FileUtil;
 import icy.file.xml.XMLPersistent;
 import icy.file.xml.XMLPersistentHelper;
 import icy.image.ImageUtil;
+import icy.network.HttpCache;
 import icy.network.URLUtil;
 import icy.plugin.abstract_.Plugin;
 import icy.plugin.interface_.PluginImageAnalysis;
@@ -33,6 +34,8 @@ import icy.util.StringUtil;
 import icy.util.XMLUtil;
 
 import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -657,7 +660,7 @@ public class PluginDescriptor implements XMLPersistent
             return true;
 
         // retrieve document
-        final Document document = XMLUtil.loadDocument(xmlUrl, repository.getAuthenticationInfo(), true);
+        final Document document = XMLUtil.loadCachedDocument(xmlUrl, repository.getAuthenticationInfo(), true);
 
         if (document != null)
         {
@@ -758,7 +761,7 @@ public class PluginDescriptor implements XMLPersistent
     {
         // load icon
         if (url != null)
-            icon = ResourceUtil.getImageIcon(ImageUtil.loadImage(url, false), ICON_SIZE);
+            icon = ResourceUtil.getImageIcon(loadCachedImage(url), ICON_SIZE);
         // get default icon
         if (icon == null)
             icon = DEFAULT_ICON;
@@ -768,12 +771,30 @@ public class PluginDescriptor implements XMLPersistent
     {
         // load image
         if (url != null)
-            image = ImageUtil.scaleImage(ImageUtil.loadImage(url, false), IMAGE_SIZE, IMAGE_SIZE);
+            image = ImageUtil.scaleImage(loadCachedImage(url), IMAGE_SIZE, IMAGE_SIZE);
         // get default image
         if (image == null)
             image = DEFAULT_IMAGE;
     }
 
+    /**
+     * Load image from specified URL (through local HTTP cache for network URL)
+     */
+    private static BufferedImage loadCachedImage(URL url)
+    {
+        if (URLUtil.isNetworkURL(url))
+        {
+            final File file = HttpCache.getFile(url, null, false);
+
+            if (file != null)
+                return ImageUtil.loadImage(file, false);
+
+            return null;
+        }
+
+        return ImageUtil.loadImage(url, false);
+    }
+
     // public void save()
     // {
     // // save icon
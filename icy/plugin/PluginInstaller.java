@@ -32,6 +32,7 @@ import icy.system.thread.ThreadUtil;
 import icy.update.Updater;
 import icy.util.StringUtil;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.EventListener;
 
@@ -65,8 +66,13 @@ public class PluginInstaller
     }
 
     private static final String ERROR_DOWNLOAD = "Error while downloading ";
-    private static final String ERROR_SAVE = "Error while saving";
     private static final String INSTALL_INTERRUPT = "Plugin installation canceled by user.";
+    private static final String ERROR_SAVE = "Error while saving ";
+
+    /**
+     * extension of downloaded files waiting for installation
+     */
+    private static final String DOWNLOAD_EXT = ".download";
 
     /**
      * plugin to install FIFO
@@ -351,43 +357,42 @@ public class PluginInstaller
             pass = null;
         }
 
-        // download and save JAR file
-        result = downloadAndSave(plugin.getJarUrl(), plugin.getJarFilename(), login, pass, true, taskFrame);
-        if (!StringUtil.isEmpty(result))
-            return result;
+        // download JAR, XML, icon & image files concurrently (icon & image are optional)
+        final String[] paths = {plugin.getJarUrl(), plugin.getUrl(), plugin.getIconUrl(), plugin.getImageUrl()};
+        final File[] files = {new File(FileUtil.getGenericPath(plugin.getJarFilename())),
+                new File(FileUtil.getGenericPath(plugin.getXMLFilename())),
+                new File(FileUtil.getGenericPath(plugin.getIconFilename())),
+                new File(FileUtil.getGenericPath(plugin.getImageFilename()))};
+        final File[] tmpFiles = new File[files.length];
 
-        // download and save XML file
-        result = downloadAndSave(plugin.getUrl(), plugin.getXMLFilename(), login, pass, true, taskFrame);
-        if (!StringUtil.isEmpty(result))
-            return result;
+        // files are downloaded aside so a failed download never leaves a half installed plugin
+        for (int i = 0; i < files.length; i++)
+            tmpFiles[i] = new File(files[i].getPath() + DOWNLOAD_EXT);
 
-        // download and save icon & image files
-        downloadAndSave(plugin.getIconUrl(), plugin.getIconFilename(), login, pass, false, taskFrame);
-        downloadAndSave(plugin.getImageUrl(), plugin.getImageFilename(), login, pass, false, taskFrame);
+        final boolean[] done = NetworkUtil.downloadToFiles(paths, tmpFiles, login, pass, taskFrame, new boolean[] {
+                true, true, false, false});
 
-        return "";
-    }
+        try
+        {
+            if (!done[0])
+                return ERROR_DOWNLOAD + paths[0];
+            if (!done[1])
+                return ERROR_DOWNLOAD + paths[1];
 
-    /**
-     * Return an empty string if no error else return error message
-     */
-    private static String downloadAndSave(String downloadPath, String savePath, String login, String pass,
-            boolean displayError, ProgressFrame taskFrame)
-    {
-        // load data
-        final byte[] data = NetworkUtil.download(downloadPath, login, pass, taskFrame, displayError);
-        if (data == null)
-            return ERROR_DOWNLOAD + downloadPath;
+            // install JAR first, the XML file is only installed after JAR succeed
+            for (int i = 0; i < files.length; i++)
+                if (done[i] && !FileUtil.rename(tmpFiles[i], files[i], true))
+                    return ERROR_SAVE + files[i].getPath();
 
-        // save data
-        if (!FileUtil.save(savePath, data, displayError))
+            return "";
+        }
+        finally
         {
-            System.err.println("Can't write '" + savePath + "' !");
-            System.err.println("File may be locked or you don't own the rights to write files here.");
-            return ERROR_SAVE + savePath;
+            // remove remaining downloaded files
+            for (File file : tmpFiles)
+                if (file.exists())
+                    file.delete();
         }
-
-        return null;
     }
 
     private static boolean deletePlugin(PluginDescriptor plugin)
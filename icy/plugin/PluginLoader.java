@@ -21,13 +21,16 @@ package icy.plugin;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.file.FileUtil;
 import icy.plugin.PluginDescriptor.PluginIdent;
 import icy.plugin.PluginDescriptor.PluginNameSorter;
 import icy.plugin.abstract_.Plugin;
 import icy.system.IcyExceptionHandler;
 import icy.system.thread.ThreadUtil;
 import icy.util.ClassUtil;
+import icy.util.StringUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -35,7 +38,9 @@ import java.util.Collections;
 import java.util.EventListener;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.event.EventListenerList;
 
@@ -94,6 +99,10 @@ public class PluginLoader
 
     public final static String PLUGIN_PACKAGE = "plugins";
     public final static String PLUGIN_PATH = "plugins";
+    /**
+     * cached plugin index file (list of plugin class names from last full reload)
+     */
+    public final static String PLUGIN_INDEX_FILE = PLUGIN_PATH + FileUtil.separator + "plugins.idx";
 
     /**
      * static class
@@ -183,10 +192,30 @@ public class PluginLoader
         }
     }
 
+    /**
+     * Reload the list of installed plugins using the cached plugin index when it is still valid
+     * (plugins directory unchanged since last full reload).<br>
+     * This avoids scanning and loading every class of the plugins directory and is the preferred
+     * way to initialize plugins when startup time matters (headless mode for instance).
+     */
+    public static void reloadFromIndex()
+    {
+        waitWhileLoading();
+        reloadInternal(true);
+    }
+
     /**
      * Reload the list of installed plugins (in "plugins" directory)
      */
     static void reloadInternal()
+    {
+        reloadInternal(false);
+    }
+
+    /**
+     * Reload the list of installed plugins (in "plugins" directory)
+     */
+    static void reloadInternal(boolean useIndex)
     {
         loading = true;
         needReload = false;
@@ -206,20 +235,25 @@ public class PluginLoader
         }
 
         final HashSet<String> classes = new HashSet<String>();
+        final String signature = getPluginPathSignature();
+        final boolean fromIndex = useIndex && loadIndex(signature, classes);
 
-        try
-        {
-            // search for plugins in "Plugins" package (needed when working from JAR archive)
-            ClassUtil.findClassNamesInPackage(PLUGIN_PACKAGE, true, classes);
-            // search for plugins in "Plugins" directory with default plugin package name
-            ClassUtil.findClassNamesInPath(PLUGIN_PATH, PLUGIN_PACKAGE, true, classes);
-        }
-        catch (IOException e)
+        if (!fromIndex)
         {
-            if (logError)
+            try
+            {
+                // search for plugins in "Plugins" package (needed when working from JAR archive)
+                ClassUtil.findClassNamesInPackage(PLUGIN_PACKAGE, true, classes);
+                // search for plugins in "Plugins" directory with default plugin package name
+                ClassUtil.findClassNamesInPath(PLUGIN_PATH, PLUGIN_PACKAGE, true, classes);
+            }
+            catch (IOException e)
             {
-                System.err.println("Error loading plugins :");
-                IcyExceptionHandler.showErrorMessage(e, true);
+                if (logError)
+                {
+                    System.err.println("Error loading plugins :");
+                    IcyExceptionHandler.showErrorMessage(e, true);
+                }
             }
         }
 
@@ -281,6 +315,10 @@ public class PluginLoader
         // sort list
         Collections.sort(newPlugins, PluginNameSorter.instance);
 
+        // full reload --> update index for next time
+        if (!fromIndex)
+            saveIndex(signature, newPlugins);
+
         loader = newLoader;
         plugins = newPlugins;
 
@@ -288,6 +326,83 @@ public class PluginLoader
         changed();
     }
 
+    /**
+     * Return a signature of the plugins directory content (number of files, total size and last
+     * modification) so we can detect when the cached index is outdated.
+     */
+    private static String getPluginPathSignature()
+    {
+        final String indexName = FileUtil.getFileName(PLUGIN_INDEX_FILE);
+        int count = 0;
+        long size = 0;
+        long lastModified = 0;
+
+        for (File file : FileUtil.getFileList(PLUGIN_PATH, true, false, false))
+        {
+            // ignore the index itself
+            if (file.getName().equals(indexName))
+                continue;
+
+            count++;
+            size += file.length();
+            lastModified = Math.max(lastModified, file.lastModified());
+        }
+
+        return count + ":" + size + ":" + lastModified;
+    }
+
+    /**
+     * Load plugin class names from the index file.<br>
+     * Return false if index is missing or outdated.
+     */
+    private static boolean loadIndex(String signature, Set<String> classes)
+    {
+        final File file = new File(PLUGIN_INDEX_FILE);
+
+        if (!file.exists())
+            return false;
+
+        final byte[] data = FileUtil.load(file, false);
+        if (data == null)
+            return false;
+
+        final String[] lines = new String(data).split("\n");
+
+        // first line contains the plugins directory signature
+        if ((lines.length == 0) || !lines[0].trim().equals(signature))
+            return false;
+
+        for (int i = 1; i < lines.length; i++)
+        {
+            final String className = lines[i].trim();
+
+            if (!StringUtil.isEmpty(className))
+                classes.add(className);
+        }
+
+        return true;
+    }
+
+    /**
+     * Save plugin class names in the index file.
+     */
+    private static void saveIndex(String signature, List<PluginDescriptor> descriptors)
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append(signature);
+        sb.append('\n');
+        for (PluginDescriptor descriptor : descriptors)
+        {
+            sb.append(descriptor.getClassName());
+            sb.append('\n');
+        }
+
+        // plugins directory may not exist or be read only, just ignore
+        if (new File(PLUGIN_PATH).isDirectory())
+            FileUtil.save(PLUGIN_INDEX_FILE, sb.toString().getBytes(), false);
+    }
+
     /**
      * Return the loader
      */
@@ -25,12 +25,16 @@ import icy.preferences.PluginPreferences;
 import icy.preferences.RepositoryPreferences;
 import icy.preferences.RepositoryPreferences.RepositoryInfo;
 import icy.system.IcyExceptionHandler;
+import icy.system.thread.Processor;
 import icy.system.thread.ThreadUtil;
 import icy.util.XMLUtil;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EventListener;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.swing.event.EventListenerList;
 
@@ -110,14 +114,48 @@ public class PluginRepositoryLoader
             loadingDescriptors = true;
             try
             {
-                // we load descriptor
-                for (PluginDescriptor plugin : plugins)
+                // we load descriptors in parallel (bounded as we don't want to flood the server)
+                final Processor processor = new Processor(Math.max(1, plugins.size()), MAX_PARALLEL_LOAD);
+                final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+                try
                 {
-                    // interrupt requested ? stop
-                    if (interrupted())
-                        return;
+                    for (final PluginDescriptor plugin : plugins)
+                    {
+                        futures.add(processor.submit(new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                plugin.loadDescriptor();
+                            }
+                        }));
+                    }
+
+                    for (Future<?> future : futures)
+                    {
+                        // interrupt requested ? stop
+                        if (interrupted())
+                            return;
 
-                    plugin.loadDescriptor();
+                        try
+                        {
+                            future.get();
+                        }
+                        catch (ExecutionException e)
+                        {
+                            IcyExceptionHandler.showErrorMessage(e.getCause(), false);
+                        }
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    // interrupt requested ? stop
+                    return;
+                }
+                finally
+                {
+                    processor.shutdownNow();
                 }
 
                 // sort list on plugin name
@@ -153,6 +191,8 @@ public class PluginRepositoryLoader
         }
     }
 
+    private static final int MAX_PARALLEL_LOAD = 8;
+
     private static final String ID_ROOT = "plugins";
     private static final String ID_PLUGIN = "plugin";
     // private static final String ID_PATH = "path";
@@ -206,7 +246,8 @@ public class PluginRepositoryLoader
      */
     public static ArrayList<PluginOnlineIdent> getPluginIdents(RepositoryInfo repos)
     {
-        final Document document = XMLUtil.loadDocument(repos.getLocation(), repos.getAuthenticationInfo(), false);
+        final Document document = XMLUtil.loadCachedDocument(repos.getLocation(), repos.getAuthenticationInfo(),
+                false);
 
         if (document != null)
         {
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.plugin.interface_;
+
+import icy.image.IcyBufferedImage;
+import icy.image.tile.TileProcessor;
+
+/**
+ * Tile based companion of {@link PluginImageFilter}.<br>
+ * The filter only sees a tile of the image (plus a halo of surrounding pixels) so the framework
+ * ({@link TileProcessor}) can process images larger than memory and process tiles in parallel.
+ * This fits local filters (convolution, threshold, morphology...).
+ */
+public interface PluginTileFilter
+{
+    /**
+     * Return the number of surrounding pixels needed on each side of a tile to compute it (kernel
+     * radius for a convolution for instance).
+     */
+    public int getHalo();
+
+    /**
+     * Process a tile.<br>
+     * The input contains the tile and its halo (the halo is clipped on image borders), the result
+     * should have the same dimension as the input (only the tile part is kept) and all tiles
+     * should have the same data type and number of component.<br>
+     * This method is called concurrently on different tiles so it should be thread safe.
+     */
+    public IcyBufferedImage processTile(IcyBufferedImage input);
+}
@@ -37,6 +37,16 @@ public class IcyPreferences
     {
         // load preferences
         load();
+
+        // pending changes are saved in background, be sure we don't lose them on exit
+        Runtime.getRuntime().addShutdownHook(new Thread("Preferences flush")
+        {
+            @Override
+            public void run()
+            {
+                flush();
+            }
+        });
     }
 
     public static void load()
@@ -63,6 +73,14 @@ public class IcyPreferences
         root.save();
     }
 
+    /**
+     * Save to setting file only if preferences have been modified since last save
+     */
+    public static void flush()
+    {
+        root.flush();
+    }
+
     public static void clear()
     {
         // removing all from root node is sufficient
@@ -3,11 +3,15 @@
  */
 package icy.preferences;
 
+import icy.file.FileUtil;
 import icy.util.ClassUtil;
 import icy.util.XMLUtil;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -18,10 +22,32 @@ import org.w3c.dom.Node;
  */
 public class XMLPreferences
 {
+    /**
+     * Preferences document attached to a file.<br>
+     * Changes are saved in background (write-behind) a short time after the first modification so
+     * several changes are written at once and callers never wait for disk I/O. The file is written
+     * through a temporary file then renamed so it is never left partially written.<br>
+     * {@link #save()} (or {@link #flush()}) should be called on exit to write pending changes.
+     */
     public static class XMLPreferencesRoot
     {
+        /**
+         * delay (in ms) between the first change and the background save
+         */
+        public static final int SAVE_DELAY = 2000;
+
+        private static final String TEMP_EXT = ".tmp";
+
+        /**
+         * background saver (shared by all roots)
+         */
+        private static final Timer saveTimer = new Timer("Preferences saver", true);
+
         private final String filename;
         private Document doc;
+        private boolean dirty;
+        private boolean saveScheduled;
+        private final Object saveLock;
 
         // cached
         Element element;
@@ -30,6 +56,9 @@ public class XMLPreferences
         public XMLPreferencesRoot(String filename)
         {
             this.filename = filename;
+            saveLock = new Object();
+            dirty = false;
+            saveScheduled = false;
 
             load();
         }
@@ -47,21 +76,25 @@ public class XMLPreferences
          */
         public void load(String filename)
         {
-            // get document
-            doc = XMLUtil.loadDocument(new File(filename));
-            // create it if not existing
-            if (doc == null)
-                doc = XMLUtil.createDocument(false);
-
-            // create root element
-            element = XMLUtil.createRootElement(doc);
-            // create our root XMLPreference object
-            preferences = new XMLPreferences(this, element);
-            preferences.clean();
+            synchronized (this)
+            {
+                // get document
+                doc = XMLUtil.loadDocument(new File(filename));
+                // create it if not existing
+                if (doc == null)
+                    doc = XMLUtil.createDocument(false);
+
+                // create root element
+                element = XMLUtil.createRootElement(doc);
+                // create our root XMLPreference object
+                preferences = new XMLPreferences(this, element);
+                preferences.clean();
+                dirty = false;
+            }
         }
 
         /**
-         * Save preferences to file
+         * Save preferences to file (synchronous)
          */
         public void save()
         {
@@ -69,12 +102,122 @@ public class XMLPreferences
         }
 
         /**
-         * Save preferences to file
+         * Save preferences to file (synchronous)
          */
         public void save(String filename)
         {
-            if (doc != null)
-                XMLUtil.saveDocument(doc, new File(filename));
+            final boolean own = this.filename.equals(filename);
+
+            // snapshot and write in the same critical section so an older snapshot can't
+            // overwrite a newer one
+            synchronized (saveLock)
+            {
+                final Document snapshot;
+
+                synchronized (this)
+                {
+                    if (doc == null)
+                        return;
+
+                    // write a copy so preferences can be modified meanwhile
+                    snapshot = (Document) doc.cloneNode(true);
+                    if (own)
+                        dirty = false;
+                }
+
+                if (!write(snapshot, new File(filename)) && own)
+                {
+                    // retry on next save
+                    synchronized (this)
+                    {
+                        dirty = true;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Save preferences to file only if they have been modified since last save (synchronous)
+         */
+        public void flush()
+        {
+            if (isDirty())
+                save();
+        }
+
+        /**
+         * Return true if preferences have been modified since last save
+         */
+        public synchronized boolean isDirty()
+        {
+            return dirty;
+        }
+
+        /**
+         * Preferences changed --> schedule a background save
+         */
+        void changed()
+        {
+            synchronized (this)
+            {
+                dirty = true;
+
+                // already scheduled ? this change will be saved with it
+                if (saveScheduled)
+                    return;
+
+                saveScheduled = true;
+            }
+
+            saveTimer.schedule(new TimerTask()
+            {
+                @Override
+                public void run()
+                {
+                    synchronized (XMLPreferencesRoot.this)
+                    {
+                        saveScheduled = false;
+                    }
+
+                    flush();
+                }
+            }, SAVE_DELAY);
+        }
+
+        /**
+         * Write document to a temporary file (unique so concurrent writers don't collide) then
+         * rename it to the final file
+         */
+        private static boolean write(Document document, File file)
+        {
+            final File temp;
+
+            try
+            {
+                // same directory so rename stays on the same file system
+                FileUtil.ensureParentDirExist(file);
+                temp = File.createTempFile(file.getName() + "_", TEMP_EXT, file.getAbsoluteFile().getParentFile());
+            }
+            catch (IOException e)
+            {
+                return false;
+            }
+
+            if (!XMLUtil.saveDocument(document, temp))
+            {
+                temp.delete();
+                return false;
+            }
+
+            // atomic replace when supported by file system
+            if (temp.renameTo(file))
+                return true;
+
+            if (FileUtil.rename(temp, file, true))
+                return true;
+
+            temp.delete();
+            return false;
         }
 
         /**
@@ -110,73 +253,91 @@ public class XMLPreferences
 
     public String absolutePath()
     {
-        String result = "/" + name();
-
-        Element parent = XMLUtil.getParentElement(currentElement);
-        while ((parent != null) && (parent != root.element))
+        synchronized (root)
         {
-            result = "/" + XMLUtil.getGenericElementName(parent) + result;
-            parent = XMLUtil.getParentElement(parent);
-        }
+            String result = "/" + name();
 
-        return result;
+            Element parent = XMLUtil.getParentElement(currentElement);
+            while ((parent != null) && (parent != root.element))
+            {
+                result = "/" + XMLUtil.getGenericElementName(parent) + result;
+                parent = XMLUtil.getParentElement(parent);
+            }
+
+            return result;
+        }
     }
 
     public String name()
     {
-        return XMLUtil.getGenericElementName(currentElement);
+        synchronized (root)
+        {
+            return XMLUtil.getGenericElementName(currentElement);
+        }
     }
 
     public XMLPreferences getParent()
     {
-        final Element parent = XMLUtil.getParentElement(currentElement);
+        synchronized (root)
+        {
+            final Element parent = XMLUtil.getParentElement(currentElement);
 
-        if (parent != null)
-            return new XMLPreferences(root, parent);
+            if (parent != null)
+                return new XMLPreferences(root, parent);
 
-        return null;
+            return null;
+        }
     }
 
     public ArrayList<XMLPreferences> getChildren()
     {
-        final ArrayList<XMLPreferences> result = new ArrayList<XMLPreferences>();
+        synchronized (root)
+        {
+            final ArrayList<XMLPreferences> result = new ArrayList<XMLPreferences>();
 
-        for (Element element : XMLUtil.getSubGenericElements(currentElement, TYPE_SECTION))
-            result.add(new XMLPreferences(root, element));
+            for (Element element : XMLUtil.getSubGenericElements(currentElement, TYPE_SECTION))
+                result.add(new XMLPreferences(root, element));
 
-        return result;
+            return result;
+        }
     }
 
     public ArrayList<String> childrenNames()
     {
-        final ArrayList<String> result = new ArrayList<String>();
+        synchronized (root)
+        {
+            final ArrayList<String> result = new ArrayList<String>();
 
-        for (Element element : XMLUtil.getSubGenericElements(currentElement, TYPE_SECTION))
-            result.add(XMLUtil.getGenericElementName(element));
+            for (Element element : XMLUtil.getSubGenericElements(currentElement, TYPE_SECTION))
+                result.add(XMLUtil.getGenericElementName(element));
 
-        return result;
+            return result;
+        }
     }
 
     private Element getSection(String name)
     {
-        Element element;
-
-        // absolute path
-        if (name.startsWith("/"))
-            element = root.element;
-        else
+        synchronized (root)
         {
-            // we test first current node is still existing
-            if (!exists())
-                return null;
-            element = currentElement;
-        }
-
-        for (String subName : name.split("/"))
-            if (!subName.isEmpty())
-                element = XMLUtil.getGenericElement(element, TYPE_SECTION, subName);
+            Element element;
+
+            // absolute path
+            if (name.startsWith("/"))
+                element = root.element;
+            else
+            {
+                // we test first current node is still existing
+                if (!exists())
+                    return null;
+                element = currentElement;
+            }
+
+            for (String subName : name.split("/"))
+                if (!subName.isEmpty())
+                    element = XMLUtil.getGenericElement(element, TYPE_SECTION, subName);
 
-        return element;
+            return element;
+        }
     }
 
     private Element setSection(String name)
@@ -184,24 +345,40 @@ public class XMLPreferences
         if (name == null)
             return currentElement;
 
-        Element element;
-
-        // absolute path
-        if (name.startsWith("/"))
-            element = root.element;
-        else
+        synchronized (root)
         {
-            // we test first current node is still existing
-            if (!exists())
-                return null;
-            element = currentElement;
-        }
-
-        for (String subName : name.split("/"))
-            if (!subName.isEmpty())
-                element = XMLUtil.setGenericElement(element, TYPE_SECTION, subName);
+            Element element;
+
+            // absolute path
+            if (name.startsWith("/"))
+                element = root.element;
+            else
+            {
+                // we test first current node is still existing
+                if (!exists())
+                    return null;
+                element = currentElement;
+            }
+
+            for (String subName : name.split("/"))
+            {
+                if (!subName.isEmpty())
+                {
+                    Element subElement = XMLUtil.getGenericElement(element, TYPE_SECTION, subName);
+
+                    // create it
+                    if (subElement == null)
+                    {
+                        subElement = XMLUtil.setGenericElement(element, TYPE_SECTION, subName);
+                        root.changed();
+                    }
+
+                    element = subElement;
+                }
+            }
 
-        return element;
+            return element;
+        }
     }
 
     /**
@@ -235,23 +412,26 @@ public class XMLPreferences
      */
     public boolean exists()
     {
-        // root element, always exists
-        if (currentElement == root.element)
-            return true;
-
-        // try to reach root from current element
-        Element parent = XMLUtil.getParentElement(currentElement);
-        while (parent != null)
+        synchronized (root)
         {
-            // we reached root so the element still exist
-            if (parent == root.element)
+            // root element, always exists
+            if (currentElement == root.element)
                 return true;
 
-            parent = XMLUtil.getParentElement(parent);
-        }
+            // try to reach root from current element
+            Element parent = XMLUtil.getParentElement(currentElement);
+            while (parent != null)
+            {
+                // we reached root so the element still exist
+                if (parent == root.element)
+                    return true;
 
-        // can't reach root, element is no more existing
-        return false;
+                parent = XMLUtil.getParentElement(parent);
+            }
+
+            // can't reach root, element is no more existing
+            return false;
+        }
     }
 
     /**
@@ -277,12 +457,15 @@ public class XMLPreferences
 
     public ArrayList<String> keys()
     {
-        final ArrayList<String> result = new ArrayList<String>();
+        synchronized (root)
+        {
+            final ArrayList<String> result = new ArrayList<String>();
 
-        for (Element element : XMLUtil.getSubGenericElements(currentElement, TYPE_KEY))
-            result.add(XMLUtil.getGenericElementName(element));
+            for (Element element : XMLUtil.getSubGenericElements(currentElement, TYPE_KEY))
+                result.add(XMLUtil.getGenericElementName(element));
 
-        return result;
+            return result;
+        }
     }
 
     /**
@@ -290,14 +473,17 @@ public class XMLPreferences
      */
     public void clean()
     {
-        final ArrayList<Node> nodes = XMLUtil.getSubNodes(currentElement);
-
-        for (Node node : nodes)
+        synchronized (root)
         {
-            final String nodeName = node.getNodeName();
+            final ArrayList<Node> nodes = XMLUtil.getSubNodes(currentElement);
+
+            for (Node node : nodes)
+            {
+                final String nodeName = node.getNodeName();
 
-            if (!(nodeName.equals(TYPE_KEY) || nodeName.equals(TYPE_SECTION)))
-                XMLUtil.removeNode(currentElement, node);
+                if (!(nodeName.equals(TYPE_KEY) || nodeName.equals(TYPE_SECTION)))
+                    XMLUtil.removeNode(currentElement, node);
+            }
         }
     }
 
@@ -306,7 +492,11 @@ public class XMLPreferences
      */
     public void clear()
     {
-        XMLUtil.removeChilds(currentElement, TYPE_KEY);
+        synchronized (root)
+        {
+            XMLUtil.removeChilds(currentElement, TYPE_KEY);
+            root.changed();
+        }
     }
 
     /**
@@ -314,12 +504,16 @@ public class XMLPreferences
      */
     private void remove(Element element)
     {
-        if (element != null)
+        synchronized (root)
         {
-            final Element parent = XMLUtil.getParentElement(element);
-
-            if (parent != null)
-                XMLUtil.removeNode(parent, element);
+            if (element != null)
+            {
+                final Element parent = XMLUtil.getParentElement(element);
+
+                if (parent != null)
+                    XMLUtil.removeNode(parent, element);
+            }
+            root.changed();
         }
     }
 
@@ -344,77 +538,130 @@ public class XMLPreferences
      */
     public void removeChildren()
     {
-        XMLUtil.removeChilds(currentElement, TYPE_SECTION);
+        synchronized (root)
+        {
+            XMLUtil.removeChilds(currentElement, TYPE_SECTION);
+            root.changed();
+        }
     }
 
     public String get(String key, String def)
     {
-        return XMLUtil.getGenericElementValue(currentElement, TYPE_KEY, key, def);
+        synchronized (root)
+        {
+            return XMLUtil.getGenericElementValue(currentElement, TYPE_KEY, key, def);
+        }
     }
 
     public boolean getBoolean(String key, boolean def)
     {
-        return XMLUtil.getGenericElementBooleanValue(currentElement, TYPE_KEY, key, def);
+        synchronized (root)
+        {
+            return XMLUtil.getGenericElementBooleanValue(currentElement, TYPE_KEY, key, def);
+        }
     }
 
     public byte[] getBytes(String key, byte[] def)
     {
-        return XMLUtil.getGenericElementBytesValue(currentElement, TYPE_KEY, key, def);
+        synchronized (root)
+        {
+            return XMLUtil.getGenericElementBytesValue(currentElement, TYPE_KEY, key, def);
+        }
     }
 
     public double getDouble(String key, double def)
     {
-        return XMLUtil.getGenericElementDoubleValue(currentElement, TYPE_KEY, key, def);
+        synchronized (root)
+        {
+            return XMLUtil.getGenericElementDoubleValue(currentElement, TYPE_KEY, key, def);
+        }
     }
 
     public float getFloat(String key, float def)
     {
-        return XMLUtil.getGenericElementFloatValue(currentElement, TYPE_KEY, key, def);
+        synchronized (root)
+        {
+            return XMLUtil.getGenericElementFloatValue(currentElement, TYPE_KEY, key, def);
+        }
     }
 
     public int getInt(String key, int def)
     {
-        return XMLUtil.getGenericElementIntValue(currentElement, TYPE_KEY, key, def);
+        synchronized (root)
+        {
+            return XMLUtil.getGenericElementIntValue(currentElement, TYPE_KEY, key, def);
+        }
     }
 
     public long getLong(String key, long def)
     {
-        return XMLUtil.getGenericElementLongValue(currentElement, TYPE_KEY, key, def);
+        synchronized (root)
+        {
+            return XMLUtil.getGenericElementLongValue(currentElement, TYPE_KEY, key, def);
+        }
     }
 
     public void put(String key, String value)
     {
-        XMLUtil.setGenericElementValue(currentElement, TYPE_KEY, key, value);
+        synchronized (root)
+        {
+            XMLUtil.setGenericElementValue(currentElement, TYPE_KEY, key, value);
+            root.changed();
+        }
     }
 
     public void putBoolean(String key, boolean value)
     {
-        XMLUtil.setGenericElementBooleanValue(currentElement, TYPE_KEY, key, value);
+        synchronized (root)
+        {
+            XMLUtil.setGenericElementBooleanValue(currentElement, TYPE_KEY, key, value);
+            root.changed();
+        }
     }
 
     public void putBytes(String key, byte[] value)
     {
-        XMLUtil.setGenericElementBytesValue(currentElement, TYPE_KEY, key, value);
+        synchronized (root)
+        {
+            XMLUtil.setGenericElementBytesValue(currentElement, TYPE_KEY, key, value);
+            root.changed();
+        }
     }
 
     public void putDouble(String key, double value)
     {
-        XMLUtil.setGenericElementDoubleValue(currentElement, TYPE_KEY, key, value);
+        synchronized (root)
+        {
+            XMLUtil.setGenericElementDoubleValue(currentElement, TYPE_KEY, key, value);
+            root.changed();
+        }
     }
 
     public void putFloat(String key, float value)
     {
-        XMLUtil.setGenericElementFloatValue(currentElement, TYPE_KEY, key, value);
+        synchronized (root)
+        {
+            XMLUtil.setGenericElementFloatValue(currentElement, TYPE_KEY, key, value);
+            root.changed();
+        }
     }
 
     public void putInt(String key, int value)
     {
-        XMLUtil.setGenericElementIntValue(currentElement, TYPE_KEY, key, value);
+        synchronized (root)
+        {
+            XMLUtil.setGenericElementIntValue(currentElement, TYPE_KEY, key, value);
+            root.changed();
+        }
     }
 
     public void putLong(String key, long value)
     {
-        XMLUtil.setGenericElementLongValue(currentElement, TYPE_KEY, key, value);
+        synchronized (root)
+        {
+            XMLUtil.setGenericElementLongValue(currentElement, TYPE_KEY, key, value);
+            root.changed();
+        }
     }
 
 }
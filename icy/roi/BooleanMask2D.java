@@ -20,6 +20,8 @@ package icy.roi;
 
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Class to define a 2D boolean mask and make basic boolean operation between masks.
@@ -31,32 +33,13 @@ import java.util.ArrayList;
 public class BooleanMask2D
 {
     /**
-     * Build global boolean mask from union of the specified list of ROI2D
+     * Build global boolean mask from union of the specified list of ROI2D.<br>
+     * All ROI are processed in a single pass over their masks (run by run), only the result mask
+     * is allocated over the union bounds.
      */
     public static BooleanMask2D getUnionBooleanMask(ArrayList<ROI2D> rois)
     {
-        BooleanMask2D result = null;
-
-        // compute global union boolean mask of all ROI2D
-        for (ROI2D roi : rois)
-        {
-            // get roi bounds
-            final Rectangle bounds = roi.getBounds();
-            // get the boolean mask of roi (optimized from intersection bounds)
-            final boolean[] mask = roi.getAsBooleanMask(bounds);
-
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bounds, mask);
-            else
-                result.union(bounds, mask);
-        }
-
-        // return an empty BooleanMask2D instead of null
-        if (result == null)
-            return new BooleanMask2D();
-
-        return result;
+        return getUnionOrXorBooleanMask(rois, false);
     }
 
     public static BooleanMask2D getUnionBooleanMask(BooleanMask2D mask1, BooleanMask2D mask2)
@@ -105,32 +88,43 @@ public class BooleanMask2D
     }
 
     /**
-     * Build global boolean mask from intersection of the specified list of ROI2D
+     * Build global boolean mask from intersection of the specified list of ROI2D.<br>
+     * ROI masks are only computed over the common intersection bounds.
      */
     public static BooleanMask2D getIntersectBooleanMask(ArrayList<ROI2D> rois)
     {
-        BooleanMask2D result = null;
+        if (rois.isEmpty())
+            return new BooleanMask2D();
 
-        // compute global intersect boolean mask of all ROI2D
+        // intersection bounds of all ROI
+        Rectangle intersect = null;
         for (ROI2D roi : rois)
         {
-            // get roi bounds
-            final Rectangle bounds = roi.getBounds();
-            // get the boolean mask of roi (optimized from intersection bounds)
-            final boolean[] mask = roi.getAsBooleanMask(bounds);
-
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bounds, mask);
+            if (intersect == null)
+                intersect = roi.getBounds();
             else
-                result.intersect(bounds, mask);
+                intersect = intersect.intersection(roi.getBounds());
+
+            if (intersect.isEmpty())
+                return new BooleanMask2D();
         }
 
-        // return an empty BooleanMask2D instead of null
-        if (result == null)
-            return new BooleanMask2D();
+        boolean[] mask = null;
 
-        return result;
+        for (ROI2D roi : rois)
+        {
+            final boolean[] roiMask = roi.getAsBooleanMask(intersect);
+
+            if (mask == null)
+                mask = roiMask;
+            else
+            {
+                for (int i = 0; i < mask.length; i++)
+                    mask[i] &= roiMask[i];
+            }
+        }
+
+        return new BooleanMask2D(intersect, mask);
     }
 
     public static BooleanMask2D getIntersectBooleanMask(BooleanMask2D mask1, BooleanMask2D mask2)
@@ -168,32 +162,151 @@ public class BooleanMask2D
     }
 
     /**
-     * Build global boolean mask from union of the specified list of ROI2D
+     * Build global boolean mask from exclusive union of the specified list of ROI2D.<br>
+     * All ROI are processed in a single pass over their masks (run by run), only the result mask
+     * is allocated over the union bounds.
      */
     public static BooleanMask2D getXorBooleanMask(ArrayList<ROI2D> rois)
     {
-        BooleanMask2D result = null;
+        final BooleanMask2D result = getUnionOrXorBooleanMask(rois, true);
+
+        // optimize bounds
+        result.optimizeBounds();
+
+        return result;
+    }
+
+    /**
+     * Build boolean mask from the first ROI2D of the list minus the others.<br>
+     * Only the part of others ROI masks overlapping the first ROI are computed.
+     */
+    public static BooleanMask2D getSubtractBooleanMask(ArrayList<ROI2D> rois)
+    {
+        if (rois.isEmpty())
+            return new BooleanMask2D();
+
+        final ROI2D first = rois.get(0);
+        final Rectangle bounds = first.getBounds();
+
+        if (bounds.isEmpty())
+            return new BooleanMask2D();
+
+        final boolean[] mask = first.getAsBooleanMask(bounds);
+
+        for (int i = 1; i < rois.size(); i++)
+        {
+            final ROI2D roi = rois.get(i);
+            final Rectangle intersect = bounds.intersection(roi.getBounds());
+
+            if (!intersect.isEmpty())
+                applyRuns(roi.getAsBooleanMask(intersect), intersect, mask, bounds, false);
+        }
 
-        // compute global union boolean mask of all ROI2D
+        final BooleanMask2D result = new BooleanMask2D(bounds, mask);
+
+        // optimize bounds
+        result.optimizeBounds();
+
+        return result;
+    }
+
+    /**
+     * Union or exclusive union of ROI list, done in one pass
+     */
+    private static BooleanMask2D getUnionOrXorBooleanMask(List<ROI2D> rois, boolean xor)
+    {
+        // compute global bounds first so we allocate the result only once
+        Rectangle union = null;
         for (ROI2D roi : rois)
         {
-            // get roi bounds
             final Rectangle bounds = roi.getBounds();
-            // get the boolean mask of roi (optimized from intersection bounds)
-            final boolean[] mask = roi.getAsBooleanMask(bounds);
 
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bounds, mask);
-            else
-                result.xor(bounds, mask);
+            if (!bounds.isEmpty())
+            {
+                if (union == null)
+                    union = bounds;
+                else
+                    union = union.union(bounds);
+            }
         }
 
         // return an empty BooleanMask2D instead of null
-        if (result == null)
+        if (union == null)
             return new BooleanMask2D();
 
-        return result;
+        final boolean[] mask = new boolean[union.width * union.height];
+
+        for (ROI2D roi : rois)
+        {
+            final Rectangle bounds = roi.getBounds();
+
+            if (!bounds.isEmpty())
+            {
+                if (xor)
+                    toggleRuns(roi.getAsBooleanMask(bounds), bounds, mask, union);
+                else
+                    applyRuns(roi.getAsBooleanMask(bounds), bounds, mask, union, true);
+            }
+        }
+
+        return new BooleanMask2D(union, mask);
+    }
+
+    /**
+     * Set the specified value in destination mask for each run of set pixels of source mask
+     * (source bounds should be contained in destination bounds).
+     */
+    private static void applyRuns(boolean[] src, Rectangle srcBounds, boolean[] dst, Rectangle dstBounds,
+            boolean value)
+    {
+        final int w = srcBounds.width;
+        int srcOff = 0;
+        int dstOff = ((srcBounds.y - dstBounds.y) * dstBounds.width) + (srcBounds.x - dstBounds.x);
+
+        for (int y = 0; y < srcBounds.height; y++)
+        {
+            int x = 0;
+
+            while (x < w)
+            {
+                // skip unset pixels
+                while ((x < w) && !src[srcOff + x])
+                    x++;
+
+                final int start = x;
+
+                // run of set pixels
+                while ((x < w) && src[srcOff + x])
+                    x++;
+
+                if (x > start)
+                    Arrays.fill(dst, dstOff + start, dstOff + x, value);
+            }
+
+            srcOff += w;
+            dstOff += dstBounds.width;
+        }
+    }
+
+    /**
+     * Toggle destination mask for each set pixel of source mask (source bounds should be contained
+     * in destination bounds).
+     */
+    private static void toggleRuns(boolean[] src, Rectangle srcBounds, boolean[] dst, Rectangle dstBounds)
+    {
+        final int w = srcBounds.width;
+        int srcOff = 0;
+        int dstOff = ((srcBounds.y - dstBounds.y) * dstBounds.width) + (srcBounds.x - dstBounds.x);
+
+        for (int y = 0; y < srcBounds.height; y++)
+        {
+            for (int x = 0; x < w; x++)
+                if (src[srcOff + x])
+                    dst[dstOff + x] = !dst[dstOff + x];
+
+            srcOff += w;
+            dstOff += dstBounds.width;
+        }
     }
 
     public static BooleanMask2D getXorBooleanMask(BooleanMask2D mask1, BooleanMask2D mask2)
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import java.awt.Rectangle;
+
+/**
+ * Connected component (object) found by {@link ConnectedComponents}.<br>
+ * It gives the object area, bounds and centroid and a compact mask restricted to the object
+ * bounds.
+ */
+public class ConnectedComponent
+{
+    /**
+     * label (1 based)
+     */
+    final int label;
+
+    /**
+     * number of pixels (voxels in 3D)
+     */
+    final long area;
+
+    /**
+     * XY bounds and Z range
+     */
+    final Rectangle bounds;
+    final int minZ;
+    final int maxZ;
+
+    /**
+     * true if the component comes from a volume (3D labeling)
+     */
+    final boolean volume;
+
+    /**
+     * centroid
+     */
+    final double centroidX;
+    final double centroidY;
+    final double centroidZ;
+
+    /**
+     * compact mask (bounds.width * bounds.height * (maxZ - minZ + 1))
+     */
+    final boolean[] mask;
+
+    ConnectedComponent(int label, long area, Rectangle bounds, int minZ, int maxZ, boolean volume,
+            double centroidX, double centroidY, double centroidZ)
+    {
+        super();
+
+        this.label = label;
+        this.area = area;
+        this.bounds = bounds;
+        this.minZ = minZ;
+        this.maxZ = maxZ;
+        this.volume = volume;
+        this.centroidX = centroidX;
+        this.centroidY = centroidY;
+        this.centroidZ = centroidZ;
+
+        mask = new boolean[bounds.width * bounds.height * ((maxZ - minZ) + 1)];
+    }
+
+    /**
+     * Return the component label (1 based, 0 is the background)
+     */
+    public int getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * Return the number of pixels (voxels in 3D) of the component
+     */
+    public long getArea()
+    {
+        return area;
+    }
+
+    /**
+     * Return the XY bounds of the component
+     */
+    public Rectangle getBounds()
+    {
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * Return the minimum Z position of the component
+     */
+    public int getMinZ()
+    {
+        return minZ;
+    }
+
+    /**
+     * Return the maximum Z position of the component
+     */
+    public int getMaxZ()
+    {
+        return maxZ;
+    }
+
+    /**
+     * Return true if the component was computed from a volume (3D labeling)
+     */
+    public boolean isVolume()
+    {
+        return volume;
+    }
+
+    /**
+     * Return the number of Z slices containing the component
+     */
+    public int getSizeZ()
+    {
+        return (maxZ - minZ) + 1;
+    }
+
+    public double getCentroidX()
+    {
+        return centroidX;
+    }
+
+    public double getCentroidY()
+    {
+        return centroidY;
+    }
+
+    public double getCentroidZ()
+    {
+        return centroidZ;
+    }
+
+    /**
+     * Return the mask of the component for the specified Z position.<br>
+     * Mask bounds are the component XY bounds, return <code>null</code> if the Z position is
+     * outside the component.
+     */
+    public BooleanMask2D getMask(int z)
+    {
+        if ((z < minZ) || (z > maxZ))
+            return null;
+
+        final int len = bounds.width * bounds.height;
+        final boolean[] result = new boolean[len];
+
+        System.arraycopy(mask, (z - minZ) * len, result, 0, len);
+
+        return new BooleanMask2D(new Rectangle(bounds), result);
+    }
+
+    /**
+     * Return true if the component contains the specified point
+     */
+    public boolean contains(int x, int y, int z)
+    {
+        if ((z < minZ) || (z > maxZ) || !bounds.contains(x, y))
+            return false;
+
+        return mask[(((z - minZ) * bounds.height) + (y - bounds.y)) * bounds.width + (x - bounds.x)];
+    }
+
+    /**
+     * Create the ROI(s) corresponding to this component.<br>
+     * A 2D component gives a single {@link ROI2DArea} while a 3D component gives one
+     * {@link ROI2DArea} per Z slice (attached to its Z position).
+     * 
+     * @param t
+     *        T position the ROI(s) should be attached to (-1 = all)
+     */
+    public ROI2DArea[] toROIs(int t)
+    {
+        final ROI2DArea[] result = new ROI2DArea[getSizeZ()];
+        final int len = bounds.width * bounds.height;
+
+        for (int z = minZ; z <= maxZ; z++)
+        {
+            final boolean[] slice = new boolean[len];
+            final ROI2DArea roi = new ROI2DArea();
+
+            System.arraycopy(mask, (z - minZ) * len, slice, 0, len);
+
+            roi.beginUpdate();
+            try
+            {
+                roi.setName("Object #" + label);
+                roi.setAsBooleanMask(new Rectangle(bounds), slice);
+                // only attach to Z for volume component
+                if (volume)
+                    roi.setZ(z);
+                roi.setT(t);
+            }
+            finally
+            {
+                roi.endUpdate();
+            }
+
+            result[z - minZ] = roi;
+        }
+
+        return result;
+    }
+}
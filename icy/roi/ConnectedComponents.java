@@ -0,0 +1,615 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import icy.image.IcyBufferedImage;
+import icy.image.cursor.PixelCursor;
+import icy.sequence.Sequence;
+import icy.system.SystemUtil;
+import icy.system.thread.CancelToken;
+import icy.system.thread.TaskScheduler;
+import icy.system.thread.TaskScheduler.TaskPriority;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Connected component labeling engine.<br>
+ * Pixels (voxels) with a value greater or equal to the threshold are grouped in connected
+ * components using a two-pass union-find labeling in 2D (4 or 8 connectivity) or 3D (6 or 26
+ * connectivity).<br>
+ * The first pass is done in parallel on horizontal bands (Z slabs for volume) on the shared
+ * {@link TaskScheduler}, labels are then merged along band borders and the second pass computes
+ * area, bounds and centroid of each component.<br>
+ * Components can be converted to ROIs in bulk with {@link #createROIs(List, int)} or
+ * {@link #addROIs(Sequence, List, int)}.<br>
+ * Labels are stored in a single int array so the labeled image (volume) can't contain more than
+ * {@link Integer#MAX_VALUE} pixels (an {@link IllegalArgumentException} is thrown).
+ */
+public class ConnectedComponents
+{
+    /**
+     * minimum number of rows per band for 2D labeling
+     */
+    private static final int MIN_BAND_ROWS = 32;
+
+    /**
+     * Labeling band (range of rows in 2D or range of Z slices in 3D)
+     */
+    private static class Band implements Runnable
+    {
+        final Labeler labeler;
+        final int start;
+        final int end;
+
+        /**
+         * band local union-find
+         */
+        int[] parent;
+        int numLabel;
+        int offset;
+
+        Band(Labeler labeler, int start, int end)
+        {
+            super();
+
+            this.labeler = labeler;
+            this.start = start;
+            this.end = end;
+
+            parent = new int[256];
+            numLabel = 0;
+            offset = 0;
+        }
+
+        private int newLabel()
+        {
+            numLabel++;
+
+            if (numLabel >= parent.length)
+            {
+                final int[] newParent = new int[parent.length * 2];
+                System.arraycopy(parent, 0, newParent, 0, parent.length);
+                parent = newParent;
+            }
+
+            parent[numLabel] = numLabel;
+
+            return numLabel;
+        }
+
+        @Override
+        public void run()
+        {
+            final PixelCursor cursor = labeler.cursor;
+            final int[] labels = labeler.labels;
+            final int[][] neighbors = labeler.neighbors;
+            final int[] neighborOffsets = labeler.neighborOffsets;
+            final double threshold = labeler.threshold;
+            final boolean volume = labeler.volume;
+            final int sizeX = labeler.sizeX;
+            final int sizeY = labeler.sizeY;
+            final int zStart = volume ? start : 0;
+            final int zEnd = volume ? end : 1;
+            final int yStart = volume ? 0 : start;
+            final int yEnd = volume ? sizeY : end;
+            double[] row = null;
+
+            for (int z = zStart; z < zEnd; z++)
+            {
+                if (labeler.token.isCancelled())
+                    return;
+
+                for (int y = yStart; y < yEnd; y++)
+                {
+                    row = cursor.getRow(y, z, row);
+
+                    int p = (z * sizeY + y) * sizeX;
+
+                    for (int x = 0; x < sizeX; x++, p++)
+                    {
+                        if (row[x] < threshold)
+                        {
+                            labels[p] = 0;
+                            continue;
+                        }
+
+                        int label = 0;
+
+                        for (int n = 0; n < neighbors.length; n++)
+                        {
+                            final int[] d = neighbors[n];
+                            final int nx = x + d[0];
+                            final int ny = y + d[1];
+                            final int nz = z + d[2];
+
+                            // outside image or outside band
+                            if ((nx < 0) || (nx >= sizeX) || (ny < 0) || (ny >= sizeY) || (nz < 0))
+                                continue;
+                            if ((volume ? nz : ny) < start)
+                                continue;
+
+                            final int l = labels[p + neighborOffsets[n]];
+
+                            if (l != 0)
+                            {
+                                if (label == 0)
+                                    label = find(parent, l);
+                                else if (l != label)
+                                    label = union(parent, label, l);
+                            }
+                        }
+
+                        if (label == 0)
+                            label = newLabel();
+
+                        labels[p] = label;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Labeling context
+     */
+    private static class Labeler
+    {
+        final PixelCursor cursor;
+        final double threshold;
+        final boolean volume;
+        final int sizeX;
+        final int sizeY;
+        final int sizeZ;
+        final int[] labels;
+        final int[][] neighbors;
+        final int[] neighborOffsets;
+        final CancelToken token;
+
+        Labeler(PixelCursor cursor, double threshold, boolean fullConnectivity)
+        {
+            super();
+
+            this.cursor = cursor;
+            this.threshold = threshold;
+
+            sizeX = cursor.getSizeX();
+            sizeY = cursor.getSizeY();
+            sizeZ = cursor.getSizeZ();
+            volume = sizeZ > 1;
+
+            // labels are indexed by an int
+            final long size = (long) sizeX * (long) sizeY * (long) sizeZ;
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Can't label " + sizeX + "x" + sizeY + "x" + sizeZ
+                        + " volume : more than " + Integer.MAX_VALUE + " voxels.");
+
+            labels = new int[(int) size];
+            neighbors = getCausalNeighbors(volume, fullConnectivity);
+            neighborOffsets = new int[neighbors.length];
+            for (int n = 0; n < neighbors.length; n++)
+            {
+                final int[] d = neighbors[n];
+                neighborOffsets[n] = d[0] + (d[1] * sizeX) + (d[2] * sizeX * sizeY);
+            }
+            token = new CancelToken();
+        }
+    }
+
+    /**
+     * Return the already visited neighbors (in raster order) for the specified connectivity
+     */
+    static int[][] getCausalNeighbors(boolean volume, boolean fullConnectivity)
+    {
+        final List<int[]> result = new ArrayList<int[]>();
+
+        for (int dz = volume ? -1 : 0; dz <= 0; dz++)
+        {
+            for (int dy = -1; dy <= 1; dy++)
+            {
+                for (int dx = -1; dx <= 1; dx++)
+                {
+                    // only neighbors visited before current position
+                    if ((dz == 0) && ((dy > 0) || ((dy == 0) && (dx >= 0))))
+                        continue;
+                    // face connectivity only
+                    if (!fullConnectivity && ((Math.abs(dx) + Math.abs(dy) + Math.abs(dz)) != 1))
+                        continue;
+
+                    result.add(new int[] {dx, dy, dz});
+                }
+            }
+        }
+
+        return result.toArray(new int[result.size()][]);
+    }
+
+    static int find(int[] parent, int label)
+    {
+        int l = label;
+
+        while (parent[l] != l)
+        {
+            // path halving
+            parent[l] = parent[parent[l]];
+            l = parent[l];
+        }
+
+        return l;
+    }
+
+    /**
+     * Merge the specified labels and return the resulting root (smallest root is kept so a root
+     * always precede its members)
+     */
+    static int union(int[] parent, int label1, int label2)
+    {
+        final int root1 = find(parent, label1);
+        final int root2 = find(parent, label2);
+
+        if (root1 < root2)
+        {
+            parent[root2] = root1;
+            return root1;
+        }
+
+        parent[root1] = root2;
+        return root2;
+    }
+
+    /**
+     * Find connected components in the specified image channel.
+     * 
+     * @param image
+     *        source image
+     * @param c
+     *        channel to label
+     * @param threshold
+     *        pixels with value greater or equal to threshold are considered as object
+     * @param fullConnectivity
+     *        use 8 connectivity if true, 4 connectivity otherwise
+     */
+    public static List<ConnectedComponent> label(IcyBufferedImage image, int c, double threshold,
+            boolean fullConnectivity) throws InterruptedException, ExecutionException
+    {
+        return label(PixelCursor.create(image, c), threshold, fullConnectivity);
+    }
+
+    /**
+     * Find connected components in the specified sequence volume (3D labeling).
+     * 
+     * @param sequence
+     *        source sequence
+     * @param t
+     *        T position of the volume to label
+     * @param c
+     *        channel to label
+     * @param threshold
+     *        voxels with value greater or equal to threshold are considered as object
+     * @param fullConnectivity
+     *        use 26 connectivity if true, 6 connectivity otherwise
+     */
+    public static List<ConnectedComponent> label(Sequence sequence, int t, int c, double threshold,
+            boolean fullConnectivity) throws InterruptedException, ExecutionException
+    {
+        return label(PixelCursor.create(sequence, t, c), threshold, fullConnectivity);
+    }
+
+    /**
+     * Find connected components from the specified pixel cursor (2D or 3D depending the cursor
+     * Z size).
+     */
+    public static List<ConnectedComponent> label(PixelCursor cursor, double threshold, boolean fullConnectivity)
+            throws InterruptedException, ExecutionException
+    {
+        final Labeler labeler = new Labeler(cursor, threshold, fullConnectivity);
+        final List<Band> bands = createBands(labeler);
+
+        // first pass
+        labelBands(labeler, bands);
+
+        // merge band local labels
+        int numLabel = 0;
+        for (Band band : bands)
+        {
+            band.offset = numLabel;
+            numLabel += band.numLabel;
+        }
+
+        final int[] parent = new int[numLabel + 1];
+        for (Band band : bands)
+            for (int l = 1; l <= band.numLabel; l++)
+                parent[l + band.offset] = band.parent[l] + band.offset;
+
+        for (int b = 1; b < bands.size(); b++)
+            mergeBorder(labeler, bands.get(b - 1), bands.get(b), parent);
+
+        // resolve final labels (root always precede its members)
+        final int[] finalLabels = new int[numLabel + 1];
+        int numComponent = 0;
+        for (int l = 1; l <= numLabel; l++)
+        {
+            final int root = find(parent, l);
+
+            if (root == l)
+                finalLabels[l] = ++numComponent;
+            else
+                finalLabels[l] = finalLabels[root];
+        }
+
+        return computeComponents(labeler, bands, finalLabels, numComponent);
+    }
+
+    private static List<Band> createBands(Labeler labeler)
+    {
+        final List<Band> result = new ArrayList<Band>();
+        final int numSlice = labeler.volume ? labeler.sizeZ : labeler.sizeY;
+        final int minSlice = labeler.volume ? 1 : MIN_BAND_ROWS;
+        final int numBand = Math.max(1, Math.min(SystemUtil.getAvailableProcessors(), numSlice / minSlice));
+
+        for (int b = 0; b < numBand; b++)
+            result.add(new Band(labeler, (b * numSlice) / numBand, ((b + 1) * numSlice) / numBand));
+
+        return result;
+    }
+
+    private static void labelBands(Labeler labeler, List<Band> bands) throws InterruptedException,
+            ExecutionException
+    {
+        // single band or already in a scheduler task --> process here to avoid deadlock
+        if ((bands.size() == 1) || TaskScheduler.isSchedulerThread())
+        {
+            try
+            {
+                for (Band band : bands)
+                    band.run();
+            }
+            catch (RuntimeException e)
+            {
+                throw new ExecutionException(e);
+            }
+        }
+        else
+        {
+            final TaskScheduler scheduler = TaskScheduler.getInstance();
+            final LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+
+            try
+            {
+                for (Band band : bands)
+                    pending.add(scheduler.submit(band, TaskPriority.COMPUTE, labeler.token));
+
+                while (!pending.isEmpty())
+                    pending.removeFirst().get();
+            }
+            finally
+            {
+                // error or interruption --> cancel remaining bands
+                if (!pending.isEmpty())
+                    labeler.token.cancel();
+            }
+        }
+    }
+
+    /**
+     * Merge labels across the border between the specified bands
+     */
+    private static void mergeBorder(Labeler labeler, Band previous, Band band, int[] parent)
+    {
+        final int[] labels = labeler.labels;
+        final int[][] neighbors = labeler.neighbors;
+        final int[] neighborOffsets = labeler.neighborOffsets;
+        final boolean volume = labeler.volume;
+        final int sizeX = labeler.sizeX;
+        final int sizeY = labeler.sizeY;
+        // first row (or slice) of band
+        final int z = volume ? band.start : 0;
+        final int yStart = volume ? 0 : band.start;
+        final int yEnd = volume ? sizeY : band.start + 1;
+
+        for (int y = yStart; y < yEnd; y++)
+        {
+            int p = (z * sizeY + y) * sizeX;
+
+            for (int x = 0; x < sizeX; x++, p++)
+            {
+                final int l = labels[p];
+
+                if (l == 0)
+                    continue;
+
+                for (int n = 0; n < neighbors.length; n++)
+                {
+                    final int[] d = neighbors[n];
+                    final int nx = x + d[0];
+                    final int ny = y + d[1];
+                    final int nz = z + d[2];
+
+                    // only neighbors from previous band
+                    if ((nx < 0) || (nx >= sizeX) || (ny < 0) || (ny >= sizeY) || (nz < 0))
+                        continue;
+                    if ((volume ? nz : ny) >= band.start)
+                        continue;
+
+                    final int nl = labels[p + neighborOffsets[n]];
+
+                    if (nl != 0)
+                        union(parent, l + band.offset, nl + previous.offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Relabel image with final labels then compute components statistics and masks
+     */
+    private static List<ConnectedComponent> computeComponents(Labeler labeler, List<Band> bands,
+            int[] finalLabels, int numComponent)
+    {
+        final int[] labels = labeler.labels;
+        final boolean volume = labeler.volume;
+        final int sizeX = labeler.sizeX;
+        final int sizeY = labeler.sizeY;
+        final int sizeZ = labeler.sizeZ;
+        final int planeSize = sizeX * sizeY;
+
+        final long[] area = new long[numComponent + 1];
+        final int[] minX = new int[numComponent + 1];
+        final int[] minY = new int[numComponent + 1];
+        final int[] minZ = new int[numComponent + 1];
+        final int[] maxX = new int[numComponent + 1];
+        final int[] maxY = new int[numComponent + 1];
+        final int[] maxZ = new int[numComponent + 1];
+        final double[] sumX = new double[numComponent + 1];
+        final double[] sumY = new double[numComponent + 1];
+        final double[] sumZ = new double[numComponent + 1];
+
+        for (int i = 1; i <= numComponent; i++)
+        {
+            minX[i] = Integer.MAX_VALUE;
+            minY[i] = Integer.MAX_VALUE;
+            minZ[i] = Integer.MAX_VALUE;
+            maxX[i] = -1;
+            maxY[i] = -1;
+            maxZ[i] = -1;
+        }
+
+        // second pass: relabel and compute statistics in the same loop
+        for (Band band : bands)
+        {
+            final int start = (volume ? band.start * planeSize : band.start * sizeX);
+            final int end = (volume ? band.end * planeSize : band.end * sizeX);
+            final int offset = band.offset;
+
+            int x = 0;
+            int y = start / sizeX;
+            int z = y / sizeY;
+            y -= z * sizeY;
+
+            for (int p = start; p < end; p++)
+            {
+                final int l = labels[p];
+
+                if (l != 0)
+                {
+                    final int label = finalLabels[l + offset];
+
+                    labels[p] = label;
+                    area[label]++;
+                    sumX[label] += x;
+                    sumY[label] += y;
+                    sumZ[label] += z;
+                    if (x < minX[label])
+                        minX[label] = x;
+                    if (x > maxX[label])
+                        maxX[label] = x;
+                    if (y < minY[label])
+                        minY[label] = y;
+                    if (y > maxY[label])
+                        maxY[label] = y;
+                    if (z < minZ[label])
+                        minZ[label] = z;
+                    if (z > maxZ[label])
+                        maxZ[label] = z;
+                }
+
+                if (++x == sizeX)
+                {
+                    x = 0;
+                    if (++y == sizeY)
+                    {
+                        y = 0;
+                        z++;
+                    }
+                }
+            }
+        }
+
+        final List<ConnectedComponent> result = new ArrayList<ConnectedComponent>(numComponent);
+
+        for (int i = 1; i <= numComponent; i++)
+        {
+            final double a = area[i];
+
+            result.add(new ConnectedComponent(i, area[i], new Rectangle(minX[i], minY[i], (maxX[i] - minX[i]) + 1,
+                    (maxY[i] - minY[i]) + 1), minZ[i], maxZ[i], volume, sumX[i] / a, sumY[i] / a, sumZ[i] / a));
+        }
+
+        // then fill compact masks
+        int p = 0;
+        for (int z = 0; z < sizeZ; z++)
+        {
+            for (int y = 0; y < sizeY; y++)
+            {
+                for (int x = 0; x < sizeX; x++, p++)
+                {
+                    final int l = labels[p];
+
+                    if (l != 0)
+                    {
+                        final ConnectedComponent component = result.get(l - 1);
+                        final Rectangle bounds = component.bounds;
+
+                        component.mask[(((z - component.minZ) * bounds.height) + (y - bounds.y)) * bounds.width
+                                + (x - bounds.x)] = true;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Create ROIs for the specified components (see {@link ConnectedComponent#toROIs(int)}).
+     * 
+     * @param t
+     *        T position the ROIs should be attached to (-1 = all)
+     */
+    public static List<ROI2DArea> createROIs(List<ConnectedComponent> components, int t)
+    {
+        final List<ROI2DArea> result = new ArrayList<ROI2DArea>(components.size());
+
+        for (ConnectedComponent component : components)
+            for (ROI2DArea roi : component.toROIs(t))
+                result.add(roi);
+
+        return result;
+    }
+
+    /**
+     * Create ROIs for the specified components and add them to the sequence in a single update.
+     * 
+     * @param t
+     *        T position the ROIs should be attached to (-1 = all)
+     * @return created ROIs
+     */
+    public static List<ROI2DArea> addROIs(Sequence sequence, List<ConnectedComponent> components, int t)
+    {
+        final List<ROI2DArea> result = createROIs(components, t);
+
+        sequence.addROIs(result);
+
+        return result;
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Flattened (polyline) form of a {@link Shape} with a spatial index for fast hit tests.<br>
+ * All segments (including implicit closing segments) are stored in a uniform grid so
+ * intersection tests only look at segments near the tested region and in horizontal strips for
+ * point containment (crossing number / winding rule).<br>
+ * The object is immutable and should be rebuilt when the shape changes.
+ */
+public class FlattenedShape
+{
+    /**
+     * segment coordinates (outline segments first then closing segments)
+     */
+    final double[] x1;
+    final double[] y1;
+    final double[] x2;
+    final double[] y2;
+    final int numOutline;
+    final int numSegment;
+    final int windingRule;
+
+    /**
+     * bounds
+     */
+    final double minX;
+    final double minY;
+    final double maxX;
+    final double maxY;
+
+    /**
+     * segment grid (cell -> segment indexes)
+     */
+    final int gridSizeX;
+    final int gridSizeY;
+    final double cellW;
+    final double cellH;
+    final int[] cellStart;
+    final int[] cellSegments;
+
+    /**
+     * strips (strip -> segment indexes)
+     */
+    final int numStrip;
+    final double stripH;
+    final int[] stripStart;
+    final int[] stripSegments;
+
+    public FlattenedShape(Shape shape, double flatness)
+    {
+        super();
+
+        // flatten path
+        final PathIterator path = shape.getPathIterator(null, flatness);
+        final double[] crd = new double[6];
+        double[] sx1 = new double[64];
+        double[] sy1 = new double[64];
+        double[] sx2 = new double[64];
+        double[] sy2 = new double[64];
+        double[] cx1 = new double[16];
+        double[] cy1 = new double[16];
+        double[] cx2 = new double[16];
+        double[] cy2 = new double[16];
+        int numS = 0;
+        int numC = 0;
+        double startX = 0d, startY = 0d;
+        double lastX = 0d, lastY = 0d;
+        boolean open = false;
+
+        windingRule = path.getWindingRule();
+
+        while (!path.isDone())
+        {
+            final int type = path.currentSegment(crd);
+
+            switch (type)
+            {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_CLOSE:
+                    // close previous sub path (explicitly or implicitly)
+                    if (open && ((lastX != startX) || (lastY != startY)))
+                    {
+                        if (type == PathIterator.SEG_CLOSE)
+                        {
+                            if (numS == sx1.length)
+                            {
+                                sx1 = grow(sx1);
+                                sy1 = grow(sy1);
+                                sx2 = grow(sx2);
+                                sy2 = grow(sy2);
+                            }
+                            sx1[numS] = lastX;
+                            sy1[numS] = lastY;
+                            sx2[numS] = startX;
+                            sy2[numS] = startY;
+                            numS++;
+                        }
+                        else
+                        {
+                            // implicit closing is only used for containment
+                            if (numC == cx1.length)
+                            {
+                                cx1 = grow(cx1);
+                                cy1 = grow(cy1);
+                                cx2 = grow(cx2);
+                                cy2 = grow(cy2);
+                            }
+                            cx1[numC] = lastX;
+                            cy1[numC] = lastY;
+                            cx2[numC] = startX;
+                            cy2[numC] = startY;
+                            numC++;
+                        }
+                    }
+
+                    if (type == PathIterator.SEG_MOVETO)
+                    {
+                        startX = crd[0];
+                        startY = crd[1];
+                        open = true;
+                    }
+                    else
+                        open = false;
+
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+
+                default:
+                    // SEG_LINETO (flattened path)
+                    if (numS == sx1.length)
+                    {
+                        sx1 = grow(sx1);
+                        sy1 = grow(sy1);
+                        sx2 = grow(sx2);
+                        sy2 = grow(sy2);
+                    }
+                    sx1[numS] = lastX;
+                    sy1[numS] = lastY;
+                    sx2[numS] = crd[0];
+                    sy2[numS] = crd[1];
+                    numS++;
+                    lastX = crd[0];
+                    lastY = crd[1];
+                    open = true;
+                    break;
+            }
+
+            path.next();
+        }
+
+        // implicit close of last sub path
+        if (open && ((lastX != startX) || (lastY != startY)))
+        {
+            if (numC == cx1.length)
+            {
+                cx1 = grow(cx1);
+                cy1 = grow(cy1);
+                cx2 = grow(cx2);
+                cy2 = grow(cy2);
+            }
+            cx1[numC] = lastX;
+            cy1[numC] = lastY;
+            cx2[numC] = startX;
+            cy2[numC] = startY;
+            numC++;
+        }
+
+        numOutline = numS;
+        numSegment = numS + numC;
+        x1 = new double[numSegment];
+        y1 = new double[numSegment];
+        x2 = new double[numSegment];
+        y2 = new double[numSegment];
+        System.arraycopy(sx1, 0, x1, 0, numS);
+        System.arraycopy(sy1, 0, y1, 0, numS);
+        System.arraycopy(sx2, 0, x2, 0, numS);
+        System.arraycopy(sy2, 0, y2, 0, numS);
+        System.arraycopy(cx1, 0, x1, numS, numC);
+        System.arraycopy(cy1, 0, y1, numS, numC);
+        System.arraycopy(cx2, 0, x2, numS, numC);
+        System.arraycopy(cy2, 0, y2, numS, numC);
+
+        // bounds
+        double mnX = Double.POSITIVE_INFINITY;
+        double mnY = Double.POSITIVE_INFINITY;
+        double mxX = Double.NEGATIVE_INFINITY;
+        double mxY = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < numSegment; i++)
+        {
+            mnX = Math.min(mnX, Math.min(x1[i], x2[i]));
+            mnY = Math.min(mnY, Math.min(y1[i], y2[i]));
+            mxX = Math.max(mxX, Math.max(x1[i], x2[i]));
+            mxY = Math.max(mxY, Math.max(y1[i], y2[i]));
+        }
+
+        if (numSegment == 0)
+        {
+            mnX = mnY = mxX = mxY = 0d;
+        }
+
+        minX = mnX;
+        minY = mnY;
+        maxX = mxX;
+        maxY = mxY;
+
+        // about sqrt(n) cells per dimension
+        final int gridSize = Math.max(1, (int) Math.sqrt(numSegment));
+
+        gridSizeX = gridSize;
+        gridSizeY = gridSize;
+        cellW = Math.max((maxX - minX) / gridSizeX, Double.MIN_VALUE);
+        cellH = Math.max((maxY - minY) / gridSizeY, Double.MIN_VALUE);
+        cellStart = new int[(gridSizeX * gridSizeY) + 1];
+
+        // count segments per cell (segment bounding box cells)
+        for (int i = 0; i < numSegment; i++)
+        {
+            final int cx0 = getCellX(Math.min(x1[i], x2[i]));
+            final int cxe = getCellX(Math.max(x1[i], x2[i]));
+            final int cy0 = getCellY(Math.min(y1[i], y2[i]));
+            final int cye = getCellY(Math.max(y1[i], y2[i]));
+
+            for (int cy = cy0; cy <= cye; cy++)
+                for (int cx = cx0; cx <= cxe; cx++)
+                    cellStart[(cy * gridSizeX) + cx + 1]++;
+        }
+        for (int c = 1; c < cellStart.length; c++)
+            cellStart[c] += cellStart[c - 1];
+
+        // then fill
+        cellSegments = new int[cellStart[cellStart.length - 1]];
+        final int[] cellFill = cellStart.clone();
+
+        for (int i = 0; i < numSegment; i++)
+        {
+            final int cx0 = getCellX(Math.min(x1[i], x2[i]));
+            final int cxe = getCellX(Math.max(x1[i], x2[i]));
+            final int cy0 = getCellY(Math.min(y1[i], y2[i]));
+            final int cye = getCellY(Math.max(y1[i], y2[i]));
+
+            for (int cy = cy0; cy <= cye; cy++)
+                for (int cx = cx0; cx <= cxe; cx++)
+                    cellSegments[cellFill[(cy * gridSizeX) + cx]++] = i;
+        }
+
+        // strips (all segments)
+        numStrip = Math.max(1, (int) Math.sqrt(numSegment));
+        stripH = Math.max((maxY - minY) / numStrip, Double.MIN_VALUE);
+        stripStart = new int[numStrip + 1];
+
+        for (int i = 0; i < numSegment; i++)
+        {
+            final int s0 = getStrip(Math.min(y1[i], y2[i]));
+            final int se = getStrip(Math.max(y1[i], y2[i]));
+
+            for (int s = s0; s <= se; s++)
+                stripStart[s + 1]++;
+        }
+        for (int s = 1; s < stripStart.length; s++)
+            stripStart[s] += stripStart[s - 1];
+
+        stripSegments = new int[stripStart[numStrip]];
+        final int[] stripFill = stripStart.clone();
+
+        for (int i = 0; i < numSegment; i++)
+        {
+            final int s0 = getStrip(Math.min(y1[i], y2[i]));
+            final int se = getStrip(Math.max(y1[i], y2[i]));
+
+            for (int s = s0; s <= se; s++)
+                stripSegments[stripFill[s]++] = i;
+        }
+    }
+
+    private static double[] grow(double[] array)
+    {
+        final double[] result = new double[array.length * 2];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private int getCellX(double x)
+    {
+        return Math.max(0, Math.min(gridSizeX - 1, (int) ((x - minX) / cellW)));
+    }
+
+    private int getCellY(double y)
+    {
+        return Math.max(0, Math.min(gridSizeY - 1, (int) ((y - minY) / cellH)));
+    }
+
+    private int getStrip(double y)
+    {
+        return Math.max(0, Math.min(numStrip - 1, (int) ((y - minY) / stripH)));
+    }
+
+    /**
+     * Return the number of outline segments
+     */
+    public int getNumSegment()
+    {
+        return numOutline;
+    }
+
+    /**
+     * Return true if the shape outline intersects the specified rectangle
+     */
+    public boolean intersectsOutline(Rectangle2D rect)
+    {
+        return intersectsSegments(rect, false);
+    }
+
+    /**
+     * Return true if a segment intersects the specified rectangle.<br>
+     * Implicit closing segments of open sub paths are tested only if <code>closing</code> is true.
+     */
+    private boolean intersectsSegments(Rectangle2D rect, boolean closing)
+    {
+        final int num = closing ? numSegment : numOutline;
+
+        // fast discard
+        if ((num == 0) || (rect.getMaxX() < minX) || (rect.getMinX() > maxX) || (rect.getMaxY() < minY)
+                || (rect.getMinY() > maxY))
+            return false;
+
+        final int cx0 = getCellX(rect.getMinX());
+        final int cxe = getCellX(rect.getMaxX());
+        final int cy0 = getCellY(rect.getMinY());
+        final int cye = getCellY(rect.getMaxY());
+
+        for (int cy = cy0; cy <= cye; cy++)
+        {
+            for (int cx = cx0; cx <= cxe; cx++)
+            {
+                final int cell = (cy * gridSizeX) + cx;
+
+                for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++)
+                {
+                    final int i = cellSegments[j];
+
+                    if ((i < num) && rect.intersectsLine(x1[i], y1[i], x2[i], y2[i]))
+                        return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Return true if the specified point is inside the shape (using shape winding rule)
+     */
+    public boolean contains(double x, double y)
+    {
+        // fast discard
+        if ((numSegment == 0) || (x < minX) || (x > maxX) || (y < minY) || (y > maxY))
+            return false;
+
+        final int strip = getStrip(y);
+        int winding = 0;
+
+        for (int j = stripStart[strip]; j < stripStart[strip + 1]; j++)
+        {
+            final int i = stripSegments[j];
+            final double ya = y1[i];
+            final double yb = y2[i];
+
+            // half open crossing rule
+            if ((ya <= y) == (yb <= y))
+                continue;
+
+            final double xc = x1[i] + (((y - ya) * (x2[i] - x1[i])) / (yb - ya));
+
+            if (xc > x)
+                winding += (yb > ya) ? 1 : -1;
+        }
+
+        if (windingRule == PathIterator.WIND_EVEN_ODD)
+            return (winding & 1) != 0;
+
+        return winding != 0;
+    }
+
+    /**
+     * Return true if the specified rectangle is entirely inside the shape
+     */
+    public boolean contains(Rectangle2D rect)
+    {
+        // implicit closing segments bound the interior too
+        return !intersectsSegments(rect, true) && contains(rect.getCenterX(), rect.getCenterY());
+    }
+
+    /**
+     * Return true if the shape interior or outline intersects the specified rectangle
+     */
+    public boolean intersects(Rectangle2D rect)
+    {
+        if (intersectsOutline(rect))
+            return true;
+
+        // rectangle inside shape
+        if (contains(rect.getCenterX(), rect.getCenterY()))
+            return true;
+
+        // shape inside rectangle
+        return (numSegment > 0) && rect.contains(x1[0], y1[0]);
+    }
+}
@@ -22,6 +22,7 @@ import icy.canvas.IcyCanvas;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.common.listener.ListenerList;
 import icy.file.xml.XMLPersistent;
 import icy.main.Icy;
 import icy.painter.AbstractPainter;
@@ -37,6 +38,7 @@ import java.awt.Color;
 import java.awt.geom.Point2D;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.EventListener;
 
 import javax.swing.event.EventListenerList;
 
@@ -292,9 +294,13 @@ public abstract class ROI implements ChangeListener, XMLPersistent
     protected final Point2D mousePos;
 
     /**
-     * listeners
+     * listeners (kept for subclasses, ROI listeners are mirrored in {@link #roiListeners})
      */
     protected final EventListenerList listeners;
+    /**
+     * ROI listeners used for event dispatching (no allocation)
+     */
+    private final ListenerList<ROIListener> roiListeners;
     /**
      * internal updater
      */
@@ -316,7 +322,29 @@ public abstract class ROI implements ChangeListener, XMLPersistent
         selected = false;
 
         mousePos = new Point2D.Double();
-        listeners = new EventListenerList();
+        roiListeners = new ListenerList<ROIListener>(ROIListener.class);
+        listeners = new EventListenerList()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public synchronized <T extends EventListener> void add(Class<T> t, T l)
+            {
+                super.add(t, l);
+
+                if ((t == ROIListener.class) && (l != null))
+                    roiListeners.add((ROIListener) l);
+            }
+
+            @Override
+            public synchronized <T extends EventListener> void remove(Class<T> t, T l)
+            {
+                super.remove(t, l);
+
+                if ((t == ROIListener.class) && (l != null))
+                    roiListeners.remove((ROIListener) l);
+            }
+        };
         updater = new UpdateEventHandler(this, false);
     }
 
@@ -798,7 +826,7 @@ public abstract class ROI implements ChangeListener, XMLPersistent
 
     private void fireChangedEvent(ROIEvent event)
     {
-        for (ROIListener listener : listeners.getListeners(ROIListener.class))
+        for (ROIListener listener : roiListeners.getListeners())
             listener.roiChanged(event);
     }
 
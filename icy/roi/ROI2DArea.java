@@ -43,6 +43,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
+import java.util.Arrays;
 
 import org.w3c.dom.Node;
 
@@ -402,6 +403,14 @@ public class ROI2DArea extends ROI2D
     double translateX, translateY;
     Color previousColor;
 
+    /**
+     * bulk mask edition
+     */
+    int maskUpdateLevel;
+    boolean maskChanged;
+    boolean boundsGrown;
+    Graphics2D maskGraphics;
+
     public ROI2DArea(Point2D position)
     {
         super();
@@ -410,6 +419,10 @@ public class ROI2DArea extends ROI2D
         boundsNeedUpdate = false;
         translateX = 0d;
         translateY = 0d;
+        maskUpdateLevel = 0;
+        maskChanged = false;
+        boundsGrown = false;
+        maskGraphics = null;
         // keep trace of previous color
         previousColor = getDisplayColor();
 
@@ -450,14 +463,51 @@ public class ROI2DArea extends ROI2D
 
     void addToBounds(Rectangle bnd)
     {
+        // grow geometrically while in bulk edition
+        addToBounds(bnd, maskUpdateLevel > 0);
+    }
+
+    void addToBounds(Rectangle bnd, boolean grow)
+    {
+        // nothing to do
+        if (bnd.isEmpty() || bounds.contains(bnd))
+            return;
+
         // save previous bounds
         final Rectangle oldBounds = new Rectangle(bounds);
 
         if (bounds.isEmpty())
             bounds.setBounds(bnd);
         else
+        {
             bounds.add(bnd);
 
+            if (grow)
+            {
+                final int extX = oldBounds.width / 2;
+                final int extY = oldBounds.height / 2;
+
+                // extend in growing directions so next additions don't need reallocation
+                if (bounds.x < oldBounds.x)
+                {
+                    bounds.x -= extX;
+                    bounds.width += extX;
+                }
+                if ((bounds.x + bounds.width) > (oldBounds.x + oldBounds.width))
+                    bounds.width += extX;
+                if (bounds.y < oldBounds.y)
+                {
+                    bounds.y -= extY;
+                    bounds.height += extY;
+                }
+                if ((bounds.y + bounds.height) > (oldBounds.y + oldBounds.height))
+                    bounds.height += extY;
+
+                // bounds will be optimized at end of bulk edition
+                boundsGrown = true;
+            }
+        }
+
         try
         {
             // update image to the new bounds
@@ -553,6 +603,7 @@ public class ROI2DArea extends ROI2D
         colorModel = new IndexColorModel(8, 256, red, green, blue, 0);
         // recreate image from array data
         imageMask = ImageUtil.createIndexedImage(w, h, colorModel, maskData);
+        releaseMaskGraphics();
     }
 
     void updateImage(Rectangle oldBnd, Rectangle newBnd)
@@ -603,35 +654,165 @@ public class ROI2DArea extends ROI2D
             // set new image and maskData
             imageMask = newImageMask;
             maskData = newMaskData;
+            releaseMaskGraphics();
         }
     }
 
     /**
-     * add or remove a point in the mask
+     * Start a bulk mask edition.<br>
+     * Until the matching {@link #endMaskUpdate()} call, mask modifications don't send any change
+     * event and the mask grows geometrically so successive additions don't reallocate it.<br>
+     * Calls can be nested.
      */
-    public void updateMask(int x, int y, boolean remove)
+    public void beginMaskUpdate()
+    {
+        maskUpdateLevel++;
+    }
+
+    /**
+     * End a bulk mask edition started with {@link #beginMaskUpdate()}.<br>
+     * Bounds are optimized if the mask has been enlarged and a single change event is sent.
+     */
+    public void endMaskUpdate()
+    {
+        if (maskUpdateLevel <= 0)
+            return;
+
+        maskUpdateLevel--;
+
+        if (maskUpdateLevel == 0)
+        {
+            releaseMaskGraphics();
+
+            if (boundsGrown)
+            {
+                boundsGrown = false;
+                maskChanged = false;
+
+                beginUpdate();
+                try
+                {
+                    optimizeBounds(false);
+                    roiChanged();
+                }
+                finally
+                {
+                    endUpdate();
+                }
+            }
+            else if (maskChanged)
+            {
+                maskChanged = false;
+                roiChanged();
+            }
+        }
+    }
+
+    /**
+     * Return true if a bulk mask edition is in progress
+     */
+    public boolean isMaskUpdating()
+    {
+        return maskUpdateLevel > 0;
+    }
+
+    /**
+     * Pre-size the mask so it contains the specified region.<br>
+     * Use it before adding many points or shapes in a known region to avoid successive
+     * reallocations of the mask. Bounds are optimized at the end of the bulk edition (or by
+     * calling {@link #optimizeBounds(boolean)}).
+     */
+    public void ensureBounds(Rectangle r)
+    {
+        if (bounds.contains(r))
+            return;
+
+        addToBounds(r, false);
+
+        if (maskUpdateLevel > 0)
+            boundsGrown = true;
+        else
+            boundsNeedUpdate = true;
+    }
+
+    private Graphics2D getMaskGraphics()
+    {
+        if (maskGraphics == null)
+        {
+            maskGraphics = imageMask.createGraphics();
+            maskGraphics.setComposite(AlphaComposite.Src);
+        }
+
+        return maskGraphics;
+    }
+
+    void releaseMaskGraphics()
+    {
+        if (maskGraphics != null)
+        {
+            maskGraphics.dispose();
+            maskGraphics = null;
+        }
+    }
+
+    /**
+     * set or clear a point in the mask (no event)
+     */
+    private void setMaskPoint(int x, int y, boolean remove)
     {
         if (remove)
+        {
+            // nothing to remove
+            if (!bounds.contains(x, y))
+                return;
+
             // mark that bounds need to be updated
             boundsNeedUpdate = true;
+        }
         else
             // update bounds (this update the image dimension if needed)
             addToBounds(new Rectangle(x, y, 1, 1));
 
-        final int adjX = x - bounds.x;
-        final int adjY = y - bounds.y;
-
         // set color depending remove or adding to mask
-        maskData[adjX + (adjY * bounds.width)] = (byte) (remove ? 0 : 1);
+        maskData[(x - bounds.x) + ((y - bounds.y) * bounds.width)] = (byte) (remove ? 0 : 1);
+    }
 
-        // notify roi changed
-        roiChanged();
+    /**
+     * set or clear an horizontal run in the mask (no event)
+     */
+    private void setMaskRun(int x, int y, int length, boolean remove)
+    {
+        int startX = x;
+        int endX = x + length;
+
+        if (remove)
+        {
+            // clip to bounds
+            if ((y < bounds.y) || (y >= (bounds.y + bounds.height)))
+                return;
+
+            startX = Math.max(startX, bounds.x);
+            endX = Math.min(endX, bounds.x + bounds.width);
+
+            // mark that bounds need to be updated
+            boundsNeedUpdate = true;
+        }
+        else
+            // update bounds (this update the image dimension if needed)
+            addToBounds(new Rectangle(x, y, length, 1));
+
+        if (endX > startX)
+        {
+            final int offset = (y - bounds.y) * bounds.width - bounds.x;
+
+            Arrays.fill(maskData, offset + startX, offset + endX, (byte) (remove ? 0 : 1));
+        }
     }
 
     /**
-     * Update mask from specified shape
+     * fill a shape in the mask (no event)
      */
-    public void updateMask(Shape shape, boolean remove)
+    private void fillMaskShape(Shape shape, boolean remove)
     {
         if (remove)
             // mark that bounds need to be updated
@@ -640,10 +821,17 @@ public class ROI2DArea extends ROI2D
             // update bounds (this update the image dimension if needed)
             addToBounds(shape.getBounds());
 
-        // get image graphics object
-        final Graphics2D g = imageMask.createGraphics();
+        // get image graphics object (kept during bulk edition)
+        final Graphics2D g;
+
+        if (maskUpdateLevel > 0)
+            g = getMaskGraphics();
+        else
+        {
+            g = imageMask.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+        }
 
-        g.setComposite(AlphaComposite.Src);
         // set color depending remove or adding to mask
         if (remove)
             g.setColor(new Color(colorModel.getRGB(0), true));
@@ -654,10 +842,142 @@ public class ROI2DArea extends ROI2D
         // draw cursor in the mask
         g.fill(shape);
 
-        g.dispose();
+        if (maskUpdateLevel > 0)
+            g.translate(bounds.x, bounds.y);
+        else
+            g.dispose();
+    }
 
-        // notify roi changed
-        roiChanged();
+    /**
+     * mask modified, notify change now or at end of bulk edition
+     */
+    private void maskChanged()
+    {
+        if (maskUpdateLevel > 0)
+            maskChanged = true;
+        else
+            // notify roi changed
+            roiChanged();
+    }
+
+    /**
+     * add or remove a point in the mask
+     */
+    public void updateMask(int x, int y, boolean remove)
+    {
+        setMaskPoint(x, y, remove);
+        maskChanged();
+    }
+
+    /**
+     * Update mask from specified shape
+     */
+    public void updateMask(Shape shape, boolean remove)
+    {
+        fillMaskShape(shape, remove);
+        maskChanged();
+    }
+
+    /**
+     * Add or remove the specified points in the mask.<br>
+     * Mask is resized only once and a single change event is sent.
+     */
+    public void updateMask(Point[] points, boolean remove)
+    {
+        if (points.length == 0)
+            return;
+
+        beginMaskUpdate();
+        try
+        {
+            if (!remove)
+            {
+                final Rectangle r = new Rectangle(points[0].x, points[0].y, 1, 1);
+
+                for (Point pt : points)
+                    r.add(new Rectangle(pt.x, pt.y, 1, 1));
+
+                addToBounds(r, false);
+            }
+
+            for (Point pt : points)
+                setMaskPoint(pt.x, pt.y, remove);
+
+            maskChanged = true;
+        }
+        finally
+        {
+            endMaskUpdate();
+        }
+    }
+
+    /**
+     * Add or remove the specified horizontal runs in the mask.<br>
+     * <code>runs</code> contains (x, y, length) triplets.<br>
+     * Mask is resized only once and a single change event is sent.
+     */
+    public void updateMaskRuns(int[] runs, boolean remove)
+    {
+        final int numRun = runs.length / 3;
+
+        if (numRun == 0)
+            return;
+
+        beginMaskUpdate();
+        try
+        {
+            if (!remove)
+            {
+                final Rectangle r = new Rectangle(runs[0], runs[1], runs[2], 1);
+
+                for (int i = 0; i < numRun; i++)
+                    r.add(new Rectangle(runs[i * 3], runs[(i * 3) + 1], runs[(i * 3) + 2], 1));
+
+                addToBounds(r, false);
+            }
+
+            for (int i = 0; i < numRun; i++)
+                setMaskRun(runs[i * 3], runs[(i * 3) + 1], runs[(i * 3) + 2], remove);
+
+            maskChanged = true;
+        }
+        finally
+        {
+            endMaskUpdate();
+        }
+    }
+
+    /**
+     * Add or remove the specified shapes in the mask.<br>
+     * Mask is resized only once and a single change event is sent.
+     */
+    public void updateMask(Shape[] shapes, boolean remove)
+    {
+        if (shapes.length == 0)
+            return;
+
+        beginMaskUpdate();
+        try
+        {
+            if (!remove)
+            {
+                final Rectangle r = shapes[0].getBounds();
+
+                for (Shape shape : shapes)
+                    r.add(shape.getBounds());
+
+                addToBounds(r, false);
+            }
+
+            for (Shape shape : shapes)
+                fillMaskShape(shape, remove);
+
+            maskChanged = true;
+        }
+        finally
+        {
+            endMaskUpdate();
+        }
     }
 
     @Override
@@ -737,6 +1057,23 @@ public class ROI2DArea extends ROI2D
         updateMask(x, y, false);
     }
 
+    /**
+     * Add points to the mask (single change event)
+     */
+    public void addPoints(Point[] points)
+    {
+        updateMask(points, false);
+    }
+
+    /**
+     * Add horizontal runs to the mask (single change event).<br>
+     * <code>runs</code> contains (x, y, length) triplets.
+     */
+    public void addRuns(int[] runs)
+    {
+        updateMaskRuns(runs, false);
+    }
+
     /**
      * Remove a point to the mask.<br>
      * Don't forget to call optimizeBounds() after consecutive remove operation<br>
@@ -757,6 +1094,27 @@ public class ROI2DArea extends ROI2D
         updateMask(x, y, true);
     }
 
+    /**
+     * Remove points from the mask (single change event).<br>
+     * Don't forget to call optimizeBounds() after consecutive remove operation<br>
+     * to refresh the mask bounds.
+     */
+    public void removePoints(Point[] points)
+    {
+        updateMask(points, true);
+    }
+
+    /**
+     * Remove horizontal runs from the mask (single change event).<br>
+     * <code>runs</code> contains (x, y, length) triplets.<br>
+     * Don't forget to call optimizeBounds() after consecutive remove operation<br>
+     * to refresh the mask bounds.
+     */
+    public void removeRuns(int[] runs)
+    {
+        updateMaskRuns(runs, true);
+    }
+
     /**
      * Add a rectangle to the mask
      */
@@ -801,6 +1159,14 @@ public class ROI2DArea extends ROI2D
         updateMask(s, false);
     }
 
+    /**
+     * Add shapes to the mask (single change event)
+     */
+    public void addShapes(Shape[] shapes)
+    {
+        updateMask(shapes, false);
+    }
+
     /**
      * Remove a shape to the mask.<br>
      * Don't forget to call optimizeBounds() after consecutive remove operation<br>
@@ -811,6 +1177,16 @@ public class ROI2DArea extends ROI2D
         updateMask(s, true);
     }
 
+    /**
+     * Remove shapes from the mask (single change event).<br>
+     * Don't forget to call optimizeBounds() after consecutive remove operation<br>
+     * to refresh the mask bounds.
+     */
+    public void removeShapes(Shape[] shapes)
+    {
+        updateMask(shapes, true);
+    }
+
     /**
      * Return true if bounds need to be updated by calling optimizeBounds() method.
      */
@@ -32,7 +32,6 @@ import icy.painter.VtkPainter;
 import icy.roi.ROIEvent.ROIPointEventType;
 import icy.sequence.Sequence;
 import icy.util.EventUtil;
-import icy.util.ShapeUtil;
 import icy.util.StringUtil;
 import icy.vtk.VtkUtil;
 
@@ -479,10 +478,23 @@ public abstract class ROI2DShape extends ROI2D implements Shape, Anchor2DListene
         double z;
     }
 
+    /**
+     * flatness used for hit tests
+     */
+    private static final double HIT_FLATNESS = 0.1d;
+    /**
+     * minimum number of segments to use the indexed geometry for contains / intersects tests
+     */
+    private static final int MIN_INDEXED_SEGMENTS = 64;
+
     /**
      * ROI shape (in image coordinates)
      */
     protected final Shape shape;
+    /**
+     * cached flattened shape (rebuilt on shape change)
+     */
+    private volatile FlattenedShape flattenedShape;
     /**
      * control points
      */
@@ -494,6 +506,7 @@ public abstract class ROI2DShape extends ROI2D implements Shape, Anchor2DListene
 
         this.shape = shape;
         controlPoints = new ArrayList<Anchor2D>();
+        flattenedShape = null;
     }
 
     @Override
@@ -548,6 +561,46 @@ public abstract class ROI2DShape extends ROI2D implements Shape, Anchor2DListene
     {
         // the shape should have been rebuilt here
         ((ROI2DShapePainter) painter).needRebuild = true;
+        flattenedShape = null;
+    }
+
+    /**
+     * Return the flattened form of the shape used for hit tests (cached until shape changes)
+     */
+    public FlattenedShape getFlattenedShape()
+    {
+        FlattenedShape result = flattenedShape;
+
+        if (result == null)
+        {
+            result = new FlattenedShape(shape, HIT_FLATNESS);
+            flattenedShape = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the flattened shape if the shape is complex enough to benefit from it, null
+     * otherwise
+     */
+    private FlattenedShape getIndexedShape()
+    {
+        final FlattenedShape result = getFlattenedShape();
+
+        if (result.getNumSegment() >= MIN_INDEXED_SEGMENTS)
+            return result;
+
+        return null;
+    }
+
+    @Override
+    public void roiChanged(ROIPointEventType pointEventType, Object point)
+    {
+        // shape may have changed
+        flattenedShape = null;
+
+        super.roiChanged(pointEventType, point);
     }
 
     protected Anchor2D getSelectedControlPoint()
@@ -867,8 +920,8 @@ public abstract class ROI2DShape extends ROI2D implements Shape, Anchor2DListene
         // use bigger stroke for isOver test for easier intersection
         final double strk = getAdjustedStroke(canvas) * 3;
         final Rectangle2D rect = new Rectangle2D.Double(x - (strk * 0.5), y - (strk * 0.5), strk, strk);
-        // use flatten path, intersects on curved shape return incorrect result
-        return ShapeUtil.pathIntersects(getPathIterator(null, 0.1), rect);
+        // use cached flatten path, intersects on curved shape return incorrect result
+        return getFlattenedShape().intersectsOutline(rect);
     }
 
     @Override
@@ -909,25 +962,35 @@ public abstract class ROI2DShape extends ROI2D implements Shape, Anchor2DListene
     @Override
     public boolean contains(Point2D p)
     {
-        return shape.contains(p);
+        return contains(p.getX(), p.getY());
     }
 
     @Override
     public boolean contains(Rectangle2D r)
     {
+        final FlattenedShape indexed = getIndexedShape();
+
+        if (indexed != null)
+            return indexed.contains(r);
+
         return shape.contains(r);
     }
 
     @Override
     public boolean contains(double x, double y)
     {
+        final FlattenedShape indexed = getIndexedShape();
+
+        if (indexed != null)
+            return indexed.contains(x, y);
+
         return shape.contains(x, y);
     }
 
     @Override
     public boolean contains(double x, double y, double w, double h)
     {
-        return shape.contains(x, y, w, h);
+        return contains(new Rectangle2D.Double(x, y, w, h));
     }
 
     @Override
@@ -945,13 +1008,18 @@ public abstract class ROI2DShape extends ROI2D implements Shape, Anchor2DListene
     @Override
     public boolean intersects(Rectangle2D r)
     {
+        final FlattenedShape indexed = getIndexedShape();
+
+        if (indexed != null)
+            return indexed.intersects(r);
+
         return shape.intersects(r);
     }
 
     @Override
     public boolean intersects(double x, double y, double w, double h)
     {
-        return shape.intersects(x, y, w, h);
+        return intersects(new Rectangle2D.Double(x, y, w, h));
     }
 
     @Override
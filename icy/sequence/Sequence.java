@@ -21,6 +21,7 @@ package icy.sequence;
 import icy.common.EventHierarchicalChecker;
 import icy.common.UpdateEventHandler;
 import icy.common.listener.ChangeListener;
+import icy.common.listener.ListenerList;
 import icy.gui.viewer.Viewer;
 import icy.image.IcyBufferedImage;
 import icy.image.IcyBufferedImageEvent;
@@ -41,6 +42,8 @@ import icy.roi.ROIListener;
 import icy.sequence.SequenceEdit.ROIAdd;
 import icy.sequence.SequenceEdit.ROIRemove;
 import icy.sequence.SequenceEdit.ROIRemoveAll;
+import icy.sequence.SequenceEdit.ROIsAdd;
+import icy.sequence.SequenceEdit.ROIsRemove;
 import icy.sequence.SequenceEvent.SequenceEventSourceType;
 import icy.sequence.SequenceEvent.SequenceEventType;
 import icy.system.thread.ThreadUtil;
@@ -55,13 +58,13 @@ import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
-import javax.swing.event.EventListenerList;
-
 import loci.formats.meta.IMetadata;
 import loci.formats.ome.OMEXMLMetadataImpl;
 import ome.xml.model.primitives.PositiveFloat;
@@ -126,6 +129,11 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      * volumetric images (4D [XYCZ])
      */
     private final TreeMap<Integer, VolumetricImage> volumetricImages;
+    /**
+     * dense copy of volumetric images (index = t position) rebuilt on each modification so read
+     * access is lock and allocation free
+     */
+    private volatile VolumetricImage[] volumetricTable;
     /**
      * painters
      */
@@ -198,13 +206,18 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
     /**
      * listeners
      */
-    private final EventListenerList listeners;
+    private final ListenerList<SequenceListener> listeners;
 
     /**
      * internals
      */
     private boolean componentBoundsInvalid;
 
+    /**
+     * data event parameter for images layout change (no data change)
+     */
+    private static final int PARAM_LAYOUT_CHANGED = 1;
+
     /**
      * Create a new empty sequence
      */
@@ -230,13 +243,14 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
         metaData.setPixelsTimeIncrement(Double.valueOf(1d), 0);
 
         volumetricImages = new TreeMap<Integer, VolumetricImage>();
+        volumetricTable = new VolumetricImage[0];
         painters = new HashSet<Painter>();
         rois = new HashSet<ROI>();
         persistent = new SequencePersistent(this);
         undoManager = new IcyUndoManager(this);
 
         updater = new UpdateEventHandler(this, false);
-        listeners = new EventListenerList();
+        listeners = new ListenerList<SequenceListener>(SequenceListener.class);
 
         // no colorModel yet
         colorModel = null;
@@ -413,6 +427,16 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
         return convertToType(DataType.getDataType(dataType, signed), rescale);
     }
 
+    /**
+     * Return a view over the whole sequence.<br>
+     * The view can then be restricted to a XY region, some channels and Z / T ranges without
+     * copying any data (see {@link SequenceView}).
+     */
+    public SequenceView getView()
+    {
+        return new SequenceView(this);
+    }
+
     /**
      * Build a new 1 channel sequence (grey) from the specified channel number
      * 
@@ -756,7 +780,7 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     public void addListener(SequenceListener listener)
     {
-        listeners.add(SequenceListener.class, listener);
+        listeners.add(listener);
     }
 
     /**
@@ -764,7 +788,7 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     public void removeListener(SequenceListener listener)
     {
-        listeners.remove(SequenceListener.class, listener);
+        listeners.remove(listener);
     }
 
     /**
@@ -772,7 +796,7 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     public SequenceListener[] getListeners()
     {
-        return listeners.getListeners(SequenceListener.class);
+        return listeners.getListeners().clone();
     }
 
     /**
@@ -1146,6 +1170,71 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
 
     }
 
+    /**
+     * Add the specified ROIs to the sequence.
+     * 
+     * @param rois
+     *        ROIs to attach to the sequence
+     * @return number of added ROIs (ROIs already attached are ignored)
+     */
+    public int addROIs(Collection<? extends ROI> rois)
+    {
+        return addROIs(rois, false);
+    }
+
+    /**
+     * Add the specified ROIs to the sequence.<br>
+     * This is much faster than adding ROIs one by one: a single ROI event and a single painter
+     * event are sent (canvases update their layers once) and a single undo edit is recorded.
+     * 
+     * @param rois
+     *        ROIs to attach to the sequence
+     * @param canUndo
+     *        If true the action can be canceled by the undo manager.
+     * @return number of added ROIs (ROIs already attached are ignored)
+     */
+    public int addROIs(Collection<? extends ROI> rois, boolean canUndo)
+    {
+        final ArrayList<ROI> added = new ArrayList<ROI>(rois.size());
+
+        synchronized (this.rois)
+        {
+            for (ROI roi : rois)
+                if ((roi != null) && this.rois.add(roi))
+                    added.add(roi);
+        }
+
+        if (added.isEmpty())
+            return 0;
+
+        synchronized (painters)
+        {
+            for (ROI roi : added)
+                painters.add(roi.getPainter());
+        }
+
+        // add listener to ROIs
+        for (ROI roi : added)
+            roi.addListener(this);
+
+        beginUpdate();
+        try
+        {
+            // notify roi and painter added (global events)
+            roiChanged(null, SequenceEventType.ADDED);
+            painterChanged(null, SequenceEventType.ADDED);
+        }
+        finally
+        {
+            endUpdate();
+        }
+
+        if (canUndo)
+            undoManager.addEdit(new ROIsAdd(this, added));
+
+        return added.size();
+    }
+
     /**
      * Remove the specified ROI from the sequence.
      * 
@@ -1190,6 +1279,71 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
         return false;
     }
 
+    /**
+     * Remove the specified ROIs from the sequence.
+     * 
+     * @param rois
+     *        ROIs to detach from the sequence
+     * @return number of removed ROIs
+     */
+    public int removeROIs(Collection<? extends ROI> rois)
+    {
+        return removeROIs(rois, false);
+    }
+
+    /**
+     * Remove the specified ROIs from the sequence.<br>
+     * This is much faster than removing ROIs one by one: a single ROI event and a single painter
+     * event are sent (canvases update their layers once) and a single undo edit is recorded.
+     * 
+     * @param rois
+     *        ROIs to detach from the sequence
+     * @param canUndo
+     *        If true the action can be canceled by the undo manager.
+     * @return number of removed ROIs
+     */
+    public int removeROIs(Collection<? extends ROI> rois, boolean canUndo)
+    {
+        final ArrayList<ROI> removed = new ArrayList<ROI>(rois.size());
+
+        synchronized (this.rois)
+        {
+            for (ROI roi : rois)
+                if ((roi != null) && this.rois.remove(roi))
+                    removed.add(roi);
+        }
+
+        if (removed.isEmpty())
+            return 0;
+
+        synchronized (painters)
+        {
+            for (ROI roi : removed)
+                painters.remove(roi.getPainter());
+        }
+
+        // remove listeners
+        for (ROI roi : removed)
+            roi.removeListener(this);
+
+        beginUpdate();
+        try
+        {
+            // notify painter and roi removed (global events)
+            painterChanged(null, SequenceEventType.REMOVED);
+            roiChanged(null, SequenceEventType.REMOVED);
+        }
+        finally
+        {
+            endUpdate();
+        }
+
+        if (canUndo)
+            undoManager.addEdit(new ROIsRemove(this, removed));
+
+        return removed.size();
+    }
+
     /**
      * Remove all ROI from the sequence.
      */
@@ -1285,10 +1439,37 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     public VolumetricImage getVolumetricImage(int t)
     {
-        synchronized (volumetricImages)
+        final VolumetricImage[] table = volumetricTable;
+
+        if ((t >= 0) && (t < table.length))
+            return table[t];
+
+        return null;
+    }
+
+    /**
+     * Rebuild the dense volumetric images table (should be called with volumetricImages lock)
+     */
+    private void updateVolumetricTable()
+    {
+        if (volumetricImages.isEmpty())
+        {
+            volumetricTable = new VolumetricImage[0];
+            return;
+        }
+
+        final VolumetricImage[] result = new VolumetricImage[Math.max(0,
+                volumetricImages.lastKey().intValue() + 1)];
+
+        for (Entry<Integer, VolumetricImage> entry : volumetricImages.entrySet())
         {
-            return volumetricImages.get(Integer.valueOf(t));
+            final int t = entry.getKey().intValue();
+
+            if (t >= 0)
+                result[t] = entry.getValue();
         }
+
+        volumetricTable = result;
     }
 
     /**
@@ -1347,7 +1528,8 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
 
         synchronized (volumetricImages)
         {
-            volumetricImages.put(new Integer(t), volImg);
+            volumetricImages.put(Integer.valueOf(t), volImg);
+            updateVolumetricTable();
         }
 
         return volImg;
@@ -1394,6 +1576,7 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
         synchronized (volumetricImages)
         {
             volImg = volumetricImages.remove(Integer.valueOf(t));
+            updateVolumetricTable();
         }
 
         // we do manual clear to dispatch events correctly
@@ -1411,16 +1594,20 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
         beginUpdate();
         try
         {
+            final ArrayList<VolumetricImage> removed;
+
             synchronized (volumetricImages)
             {
-                while (!volumetricImages.isEmpty())
-                {
-                    final VolumetricImage volImg = volumetricImages.pollFirstEntry().getValue();
-                    // we do manual clear to dispatch events correctly
-                    if (volImg != null)
-                        volImg.clear();
-                }
+                removed = new ArrayList<VolumetricImage>(volumetricImages.values());
+                volumetricImages.clear();
+                // rebuild table only once
+                updateVolumetricTable();
             }
+
+            // we do manual clear to dispatch events correctly
+            for (VolumetricImage volImg : removed)
+                if (volImg != null)
+                    volImg.clear();
         }
         finally
         {
@@ -1459,16 +1646,13 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     public IcyBufferedImage getFirstNonNullImage()
     {
-        synchronized (volumetricImages)
+        for (VolumetricImage volImg : volumetricTable)
         {
-            for (VolumetricImage volImg : volumetricImages.values())
+            if (volImg != null)
             {
-                synchronized (volImg.images)
-                {
-                    for (IcyBufferedImage img : volImg.images.values())
-                        if (img != null)
-                            return img;
-                }
+                for (IcyBufferedImage img : volImg.getPlanes())
+                    if (img != null)
+                        return img;
             }
         }
 
@@ -1710,6 +1894,107 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
         removeAllVolumetricImage();
     }
 
+    /**
+     * Structural edit: set the whole images layout of the sequence in a single operation.<br>
+     * <code>layout[t][z]</code> gives the image at position (t, z) (<code>null</code> for no
+     * image). Images are only moved (no data copy) and images of the sequence which are not
+     * present in the new layout are removed.<br>
+     * Images bounds are not recalculated and a single change event is sent so it is much faster
+     * than successive setImage / removeImage calls to reorder or reshape the sequence (see
+     * {@link SequenceUtil}).
+     * 
+     * @throws IllegalArgumentException
+     *         if a new image is not compatible with the sequence or if an image is used twice
+     */
+    public void setImageLayout(IcyBufferedImage[][] layout) throws IllegalArgumentException
+    {
+        final IdentityHashMap<IcyBufferedImage, Boolean> oldImages = new IdentityHashMap<IcyBufferedImage, Boolean>();
+        final IdentityHashMap<IcyBufferedImage, Boolean> newImages = new IdentityHashMap<IcyBufferedImage, Boolean>();
+        final TreeMap<Integer, VolumetricImage> newVolumes = new TreeMap<Integer, VolumetricImage>();
+
+        for (VolumetricImage volImg : volumetricTable)
+            if (volImg != null)
+                for (IcyBufferedImage image : volImg.getPlanes())
+                    if (image != null)
+                        oldImages.put(image, Boolean.TRUE);
+
+        // build new volumes
+        for (int t = 0; t < layout.length; t++)
+        {
+            final IcyBufferedImage[] images = layout[t];
+
+            if (images == null)
+                continue;
+
+            final TreeMap<Integer, IcyBufferedImage> volImages = new TreeMap<Integer, IcyBufferedImage>();
+
+            for (int z = 0; z < images.length; z++)
+            {
+                final IcyBufferedImage image = images[z];
+
+                if (image == null)
+                    continue;
+
+                if (newImages.put(image, Boolean.TRUE) != null)
+                    throw new IllegalArgumentException("Sequence.setImageLayout: image used twice in layout");
+                if (!oldImages.containsKey(image) && !isCompatible(image))
+                    throw new IllegalArgumentException("Sequence.setImageLayout: image is not compatible");
+
+                volImages.put(Integer.valueOf(z), image);
+            }
+
+            if (!volImages.isEmpty())
+            {
+                final VolumetricImage volImg = new VolumetricImage(this);
+
+                volImg.setImagesInternal(volImages);
+                newVolumes.put(Integer.valueOf(t), volImg);
+            }
+        }
+
+        beginUpdate();
+        try
+        {
+            // swap index
+            synchronized (volumetricImages)
+            {
+                volumetricImages.clear();
+                volumetricImages.putAll(newVolumes);
+                updateVolumetricTable();
+            }
+
+            // update image listeners
+            for (IcyBufferedImage image : oldImages.keySet())
+                if (!newImages.containsKey(image))
+                    image.removeListener(this);
+            for (IcyBufferedImage image : newImages.keySet())
+            {
+                if (!oldImages.containsKey(image))
+                {
+                    // colorModel not yet defined ?
+                    if (colorModel == null)
+                        setColorModel(IcyColorModel.createInstance(image.getIcyColorModel(), true, true));
+
+                    image.addListener(this);
+                }
+            }
+
+            // no more image ?
+            if (newImages.isEmpty())
+                setColorModel(null);
+
+            // dimensions may have changed
+            typeChanged();
+            // data layout changed (images data and bounds didn't change)
+            updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_DATA, null,
+                    SequenceEventType.CHANGED, PARAM_LAYOUT_CHANGED));
+        }
+        finally
+        {
+            endUpdate();
+        }
+    }
+
     /**
      * Remove empty element of image list
      */
@@ -1752,12 +2037,9 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
     {
         int result = 0;
 
-        synchronized (volumetricImages)
-        {
-            for (VolumetricImage volImg : volumetricImages.values())
-                if (volImg != null)
-                    result += volImg.getNumImage();
-        }
+        for (VolumetricImage volImg : volumetricTable)
+            if (volImg != null)
+                result += volImg.getNumImage();
 
         return result;
     }
@@ -1767,12 +2049,9 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     public boolean isEmpty()
     {
-        synchronized (volumetricImages)
-        {
-            for (VolumetricImage volImg : volumetricImages.values())
-                if ((volImg != null) && (!volImg.isEmpty()))
-                    return false;
-        }
+        for (VolumetricImage volImg : volumetricTable)
+            if ((volImg != null) && (!volImg.isEmpty()))
+                return false;
 
         return true;
     }
@@ -1803,13 +2082,7 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     public int getSizeT()
     {
-        synchronized (volumetricImages)
-        {
-            if (volumetricImages.isEmpty())
-                return 0;
-
-            return volumetricImages.lastKey().intValue() + 1;
-        }
+        return volumetricTable.length;
     }
 
     /**
@@ -1830,11 +2103,11 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     public int getSizeZ()
     {
-        final int sizeT = getSizeT();
         int maxZ = 0;
 
-        for (int i = 0; i < sizeT; i++)
-            maxZ = Math.max(maxZ, getSizeZ(i));
+        for (VolumetricImage volImg : volumetricTable)
+            if (volImg != null)
+                maxZ = Math.max(maxZ, volImg.getSize());
 
         return maxZ;
     }
@@ -2097,15 +2370,13 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
 
         bounds = null;
         // recalculate bounds from all images
-        synchronized (volumetricImages)
+        for (VolumetricImage volImg : volumetricTable)
         {
-            for (VolumetricImage volImg : volumetricImages.values())
+            if (volImg != null)
             {
-                synchronized (volImg.images)
-                {
-                    for (IcyBufferedImage img : volImg.images.values())
+                for (IcyBufferedImage img : volImg.getPlanes())
+                    if (img != null)
                         bounds = adjustBounds(img.getComponentsAbsBounds(), bounds);
-                }
             }
         }
 
@@ -2116,15 +2387,13 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
         {
             bounds = null;
             // recalculate user bounds from all images
-            synchronized (volumetricImages)
+            for (VolumetricImage volImg : volumetricTable)
             {
-                for (VolumetricImage volImg : volumetricImages.values())
+                if (volImg != null)
                 {
-                    synchronized (volImg.images)
-                    {
-                        for (IcyBufferedImage img : volImg.images.values())
+                    for (IcyBufferedImage img : volImg.getPlanes())
+                        if (img != null)
                             bounds = adjustBounds(img.getComponentsUserBounds(), bounds);
-                    }
                 }
             }
 
@@ -4569,7 +4838,7 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     private void fireChangeEvent(SequenceEvent e)
     {
-        for (SequenceListener listener : listeners.getListeners(SequenceListener.class))
+        for (SequenceListener listener : listeners.getListeners())
             listener.sequenceChanged(e);
     }
 
@@ -4578,7 +4847,7 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
      */
     private void fireCloseEvent()
     {
-        for (SequenceListener listener : listeners.getListeners(SequenceListener.class))
+        for (SequenceListener listener : listeners.getListeners())
             listener.sequenceClosed(this);
     }
 
@@ -4766,8 +5035,8 @@ public class Sequence implements IcyColorModelListener, IcyBufferedImageListener
                 // automatic components bounds update enabled
                 if (componentAbsBoundsAutoUpdate)
                 {
-                    // generic CHANGED event
-                    if (event.getSource() == null)
+                    // generic CHANGED event (images data may have changed)
+                    if ((event.getSource() == null) && (event.getParam() != PARAM_LAYOUT_CHANGED))
                         // recalculate all images bounds and update sequence bounds
                         updateComponentsBounds(true, false);
                     else
@@ -176,16 +176,7 @@ public class SequenceEdit extends IcyUndoableEdit
         {
             super.undo();
 
-            sequence.beginUpdate();
-            try
-            {
-                for (ROI roi : getROIs())
-                    sequence.addROI(roi, false);
-            }
-            finally
-            {
-                sequence.endUpdate();
-            }
+            sequence.addROIs(getROIs(), false);
         }
 
         @Override
@@ -193,16 +184,7 @@ public class SequenceEdit extends IcyUndoableEdit
         {
             super.redo();
 
-            sequence.beginUpdate();
-            try
-            {
-                for (ROI roi : getROIs())
-                    sequence.removeROI(roi, false);
-            }
-            finally
-            {
-                sequence.endUpdate();
-            }
+            sequence.removeROIs(getROIs(), false);
         }
 
         @Override
@@ -220,4 +202,106 @@ public class SequenceEdit extends IcyUndoableEdit
         }
     }
 
+    /**
+     * Multiple ROI add Sequence edit event
+     */
+    public static class ROIsAdd extends SequenceEdit
+    {
+        Sequence sequence;
+
+        public ROIsAdd(Sequence sequence, List<ROI> source)
+        {
+            super(source);
+
+            this.sequence = sequence;
+        }
+
+        @SuppressWarnings("unchecked")
+        public List<ROI> getROIs()
+        {
+            return (List<ROI>) getSource();
+        }
+
+        @Override
+        public void undo() throws CannotUndoException
+        {
+            super.undo();
+
+            sequence.removeROIs(getROIs(), false);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException
+        {
+            super.redo();
+
+            sequence.addROIs(getROIs(), false);
+        }
+
+        @Override
+        public void die()
+        {
+            super.die();
+
+            sequence = null;
+        }
+
+        @Override
+        public String getPresentationName()
+        {
+            return "ROIs added";
+        }
+    }
+
+    /**
+     * Multiple ROI remove Sequence edit event
+     */
+    public static class ROIsRemove extends SequenceEdit
+    {
+        Sequence sequence;
+
+        public ROIsRemove(Sequence sequence, List<ROI> source)
+        {
+            super(source);
+
+            this.sequence = sequence;
+        }
+
+        @SuppressWarnings("unchecked")
+        public List<ROI> getROIs()
+        {
+            return (List<ROI>) getSource();
+        }
+
+        @Override
+        public void undo() throws CannotUndoException
+        {
+            super.undo();
+
+            sequence.addROIs(getROIs(), false);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException
+        {
+            super.redo();
+
+            sequence.removeROIs(getROIs(), false);
+        }
+
+        @Override
+        public void die()
+        {
+            super.die();
+
+            sequence = null;
+        }
+
+        @Override
+        public String getPresentationName()
+        {
+            return "ROIs removed";
+        }
+    }
+
 }
@@ -168,6 +168,8 @@ public class SequenceEvent implements EventHierarchicalChecker
                         type = SequenceEventType.CHANGED;
                     if (e.getSource() != source)
                         source = null;
+                    if (e.getParam() != param)
+                        param = -1;
                     return true;
 
                 case SEQUENCE_PAINTER:
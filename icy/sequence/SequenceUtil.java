@@ -31,6 +31,23 @@ import java.util.TreeMap;
  */
 public class SequenceUtil
 {
+    /**
+     * Return the current images layout of the sequence (<code>layout[t][z]</code>) so it can be
+     * modified then applied with {@link Sequence#setImageLayout(IcyBufferedImage[][])}
+     */
+    private static IcyBufferedImage[][] getImageLayout(Sequence sequence)
+    {
+        final int sizeT = sequence.getSizeT();
+        final int sizeZ = sequence.getSizeZ();
+        final IcyBufferedImage[][] result = new IcyBufferedImage[sizeT][sizeZ];
+
+        for (int t = 0; t < sizeT; t++)
+            for (int z = 0; z < sizeZ; z++)
+                result[t][z] = sequence.getImage(t, z);
+
+        return result;
+    }
+
     /**
      * Exchange 2 T stack on the whole sequence<br>
      */
@@ -41,39 +58,13 @@ public class SequenceUtil
         if ((t1 < 0) || (t2 < 0) || (t1 >= sizeT) || (t2 >= sizeT))
             return;
 
-        // get volume images at position t1 & t2
-        final VolumetricImage vi1 = sequence.getVolumetricImage(t1);
-        final VolumetricImage vi2 = sequence.getVolumetricImage(t2);
+        final IcyBufferedImage[][] layout = getImageLayout(sequence);
+        final IcyBufferedImage[] images = layout[t1];
 
-        sequence.beginUpdate();
-        try
-        {
-            // start by removing old volume image (if any)
-            sequence.removeVolumetricImage(t1);
-            sequence.removeVolumetricImage(t2);
-
-            // safe volume image copy (TODO : check if we can't direct set volume image internally)
-            if (vi1 != null)
-            {
-                final TreeMap<Integer, IcyBufferedImage> images = vi1.getImages();
+        layout[t1] = layout[t2];
+        layout[t2] = images;
 
-                // copy images of volume image 1 at position t2
-                for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
-                    sequence.setImage(t2, entry.getKey().intValue(), entry.getValue());
-            }
-            if (vi2 != null)
-            {
-                final TreeMap<Integer, IcyBufferedImage> images = vi2.getImages();
-
-                // copy images of volume image 2 at position t1
-                for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
-                    sequence.setImage(t1, entry.getKey().intValue(), entry.getValue());
-            }
-        }
-        finally
-        {
-            sequence.endUpdate();
-        }
+        sequence.setImageLayout(layout);
     }
 
     /**
@@ -182,16 +173,13 @@ public class SequenceUtil
         if ((t < 0) || (t >= sizeT))
             return;
 
-        sequence.beginUpdate();
-        try
-        {
-            removeT(sequence, t);
-            moveT(sequence, t + 1, sizeT - 1, -1);
-        }
-        finally
-        {
-            sequence.endUpdate();
-        }
+        final IcyBufferedImage[][] layout = getImageLayout(sequence);
+        final IcyBufferedImage[][] newLayout = new IcyBufferedImage[sizeT - 1][];
+
+        System.arraycopy(layout, 0, newLayout, 0, t);
+        System.arraycopy(layout, t + 1, newLayout, t, sizeT - (t + 1));
+
+        sequence.setImageLayout(newLayout);
     }
 
     /**
@@ -199,47 +187,19 @@ public class SequenceUtil
      */
     public static void reverseT(Sequence sequence)
     {
-        final int sizeT = sequence.getSizeT();
+        final IcyBufferedImage[][] layout = getImageLayout(sequence);
+        final int sizeT = layout.length;
 
-        sequence.beginUpdate();
-        try
+        for (int t = 0; t < (sizeT >> 1); t++)
         {
-            for (int t = 0; t < (sizeT >> 1); t++)
-            {
-                final int te = sizeT - (t + 1);
-
-                // get volume images at position t & te
-                final VolumetricImage vi = sequence.getVolumetricImage(t);
-                final VolumetricImage vie = sequence.getVolumetricImage(te);
+            final int te = sizeT - (t + 1);
+            final IcyBufferedImage[] images = layout[t];
 
-                // start by removing old volume image (if any)
-                sequence.removeVolumetricImage(t);
-                sequence.removeVolumetricImage(te);
-
-                // safe volume image copy (TODO : check if we can't direct set volume image
-                // internally)
-                if (vi != null)
-                {
-                    final TreeMap<Integer, IcyBufferedImage> images = vi.getImages();
-
-                    // copy images of volume image at position te
-                    for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
-                        sequence.setImage(te, entry.getKey().intValue(), entry.getValue());
-                }
-                if (vie != null)
-                {
-                    final TreeMap<Integer, IcyBufferedImage> images = vie.getImages();
-
-                    // copy images of volume image end at position t
-                    for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
-                        sequence.setImage(t, entry.getKey().intValue(), entry.getValue());
-                }
-            }
-        }
-        finally
-        {
-            sequence.endUpdate();
+            layout[t] = layout[te];
+            layout[te] = images;
         }
+
+        sequence.setImageLayout(layout);
     }
 
     /**
@@ -248,34 +208,21 @@ public class SequenceUtil
     public static void swapZ(Sequence sequence, int z1, int z2)
     {
         final int sizeZ = sequence.getSizeZ();
-        final int sizeT = sequence.getSizeT();
 
         if ((z1 < 0) || (z2 < 0) || (z1 >= sizeZ) || (z2 >= sizeZ))
             return;
 
-        sequence.beginUpdate();
-        try
-        {
-            for (int t = 0; t < sizeT; t++)
-            {
-                final IcyBufferedImage image1 = sequence.getImage(t, z1);
-                final IcyBufferedImage image2 = sequence.getImage(t, z2);
+        final IcyBufferedImage[][] layout = getImageLayout(sequence);
 
-                // set image at new position
-                if (image1 != null)
-                    sequence.setImage(t, z2, image1);
-                else
-                    sequence.removeImage(t, z2);
-                if (image2 != null)
-                    sequence.setImage(t, z1, image2);
-                else
-                    sequence.removeImage(t, z1);
-            }
-        }
-        finally
+        for (IcyBufferedImage[] images : layout)
         {
-            sequence.endUpdate();
+            final IcyBufferedImage image = images[z1];
+
+            images[z1] = images[z2];
+            images[z2] = image;
         }
+
+        sequence.setImageLayout(layout);
     }
 
     /**
@@ -394,16 +341,19 @@ public class SequenceUtil
         if ((z < 0) || (z >= sizeZ))
             return;
 
-        sequence.beginUpdate();
-        try
-        {
-            removeZ(sequence, z);
-            moveZ(sequence, z + 1, sizeZ - 1, -1);
-        }
-        finally
+        final IcyBufferedImage[][] layout = getImageLayout(sequence);
+
+        for (int t = 0; t < layout.length; t++)
         {
-            sequence.endUpdate();
+            final IcyBufferedImage[] images = layout[t];
+            final IcyBufferedImage[] newImages = new IcyBufferedImage[sizeZ - 1];
+
+            System.arraycopy(images, 0, newImages, 0, z);
+            System.arraycopy(images, z + 1, newImages, z, sizeZ - (z + 1));
+            layout[t] = newImages;
         }
+
+        sequence.setImageLayout(layout);
     }
 
     /**
@@ -411,36 +361,23 @@ public class SequenceUtil
      */
     public static void reverseZ(Sequence sequence)
     {
-        final int sizeT = sequence.getSizeT();
-        final int sizeZ = sequence.getSizeZ();
+        final IcyBufferedImage[][] layout = getImageLayout(sequence);
 
-        sequence.beginUpdate();
-        try
+        for (IcyBufferedImage[] images : layout)
         {
-            for (int t = 0; t < sizeT; t++)
+            final int sizeZ = images.length;
+
+            for (int z = 0; z < (sizeZ >> 1); z++)
             {
-                for (int z = 0; z < (sizeZ >> 1); z++)
-                {
-                    final int ze = sizeZ - (z + 1);
-                    final IcyBufferedImage image1 = sequence.getImage(t, z);
-                    final IcyBufferedImage image2 = sequence.getImage(t, ze);
+                final int ze = sizeZ - (z + 1);
+                final IcyBufferedImage image = images[z];
 
-                    // set image at new position
-                    if (image1 != null)
-                        sequence.setImage(t, ze, image1);
-                    else
-                        sequence.removeImage(t, ze);
-                    if (image2 != null)
-                        sequence.setImage(t, z, image2);
-                    else
-                        sequence.removeImage(t, z);
-                }
+                images[z] = images[ze];
+                images[ze] = image;
             }
         }
-        finally
-        {
-            sequence.endUpdate();
-        }
+
+        sequence.setImageLayout(layout);
     }
 
     /**
@@ -449,19 +386,13 @@ public class SequenceUtil
      */
     public static void convertToTime(Sequence sequence)
     {
-        sequence.beginUpdate();
-        try
-        {
-            final ArrayList<IcyBufferedImage> images = sequence.getAllImage();
+        final ArrayList<IcyBufferedImage> images = sequence.getAllImage();
+        final IcyBufferedImage[][] layout = new IcyBufferedImage[images.size()][1];
 
-            sequence.removeAllImage();
-            for (int i = 0; i < images.size(); i++)
-                sequence.setImage(i, 0, images.get(i));
-        }
-        finally
-        {
-            sequence.endUpdate();
-        }
+        for (int i = 0; i < images.size(); i++)
+            layout[i][0] = images.get(i);
+
+        sequence.setImageLayout(layout);
     }
 
     /**
@@ -470,20 +401,12 @@ public class SequenceUtil
      */
     public static void convertToVolume(Sequence sequence)
     {
-        sequence.beginUpdate();
-        try
-        {
+        final ArrayList<IcyBufferedImage> images = sequence.getAllImage();
+        final IcyBufferedImage[][] layout = new IcyBufferedImage[1][];
 
-            final ArrayList<IcyBufferedImage> images = sequence.getAllImage();
+        layout[0] = images.toArray(new IcyBufferedImage[images.size()]);
 
-            sequence.removeAllImage();
-            for (int i = 0; i < images.size(); i++)
-                sequence.setImage(0, i, images.get(i));
-        }
-        finally
-        {
-            sequence.endUpdate();
-        }
+        sequence.setImageLayout(layout);
     }
 
     // Add an other sequence at the end of the current sequence
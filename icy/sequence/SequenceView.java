@@ -0,0 +1,594 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import icy.image.IcyBufferedImage;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+import java.awt.Rectangle;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lazily evaluated window over a {@link Sequence}.<br>
+ * A view selects a XY region, a subset of channels and Z / T ranges (with step) of its source
+ * sequence without copying any data when it is created.<br>
+ * Planes are built on access: when the view is not cropped the returned images directly share the
+ * source pixel data (no copy at all), a cropped plane only costs the memory of the cropped region
+ * of the selected channels.<br>
+ * Images returned by {@link #getImage(int, int)} should be considered as read only, use
+ * {@link #getImageForWrite(int, int)} or {@link #setImage(int, int, IcyBufferedImage)} to modify
+ * the view: modified planes are copied into the view (copy on write) and the source sequence is
+ * never modified. The number of modified planes is limited (see
+ * {@link #setMaxModifiedPlanes(int)}).<br>
+ * Use {@link #toSequence()} to pass the view to code working on {@link Sequence} (filters...),
+ * the sequence shares the view planes so it is read only, use {@link #toSequence(boolean)} to get
+ * a modifiable copy.
+ */
+public class SequenceView
+{
+    /**
+     * source sequence
+     */
+    final Sequence source;
+
+    /**
+     * window definition (in source coordinates)
+     */
+    final Rectangle region;
+    final int[] channels;
+    final int zMin;
+    final int zStep;
+    final int sizeZ;
+    final int tMin;
+    final int tStep;
+    final int sizeT;
+
+    /**
+     * default maximum number of modified planes
+     */
+    public static final int DEFAULT_MAX_MODIFIED_PLANES = 256;
+    /**
+     * number of built planes kept in cache
+     */
+    private static final int CACHE_SIZE = 16;
+
+    /**
+     * planes modified in this view (copy on write)
+     */
+    private final HashMap<Long, IcyBufferedImage> written;
+    private int maxModifiedPlanes;
+    /**
+     * recently built planes (LRU)
+     */
+    private final LinkedHashMap<Long, IcyBufferedImage> cache;
+
+    /**
+     * Create a view over the whole sequence
+     */
+    public SequenceView(Sequence source)
+    {
+        this(source, null, null, 0, 1, source.getSizeZ(), 0, 1, source.getSizeT());
+    }
+
+    SequenceView(Sequence source, Rectangle region, int[] channels, int zMin, int zStep, int sizeZ, int tMin,
+            int tStep, int sizeT)
+    {
+        super();
+
+        this.source = source;
+        this.region = region;
+        this.channels = channels;
+        this.zMin = zMin;
+        this.zStep = zStep;
+        this.sizeZ = Math.max(0, sizeZ);
+        this.tMin = tMin;
+        this.tStep = tStep;
+        this.sizeT = Math.max(0, sizeT);
+
+        written = new HashMap<Long, IcyBufferedImage>();
+        maxModifiedPlanes = DEFAULT_MAX_MODIFIED_PLANES;
+        cache = new LinkedHashMap<Long, IcyBufferedImage>(CACHE_SIZE, 0.75f, true)
+        {
+            private static final long serialVersionUID = 6473930530429545466L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, IcyBufferedImage> eldest)
+            {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Return the source sequence
+     */
+    public Sequence getSource()
+    {
+        return source;
+    }
+
+    /**
+     * Return the XY region of the view in source coordinates
+     */
+    public Rectangle getRegion()
+    {
+        final Rectangle bounds = new Rectangle(0, 0, source.getSizeX(), source.getSizeY());
+
+        if (region == null)
+            return bounds;
+
+        return region.intersection(bounds);
+    }
+
+    /**
+     * Return true if the view is restricted to a part of the source XY plane (cropped planes are
+     * built on access instead of sharing the source data)
+     */
+    public boolean isCropped()
+    {
+        return (region != null) && !getRegion().equals(new Rectangle(0, 0, source.getSizeX(), source.getSizeY()));
+    }
+
+    /**
+     * Return true if some planes of the view has been modified (and so copied)
+     */
+    public boolean isModified()
+    {
+        synchronized (written)
+        {
+            return !written.isEmpty();
+        }
+    }
+
+    /**
+     * Return the maximum number of planes which can be modified in this view
+     */
+    public int getMaxModifiedPlanes()
+    {
+        return maxModifiedPlanes;
+    }
+
+    /**
+     * Set the maximum number of planes which can be modified in this view (modified planes are
+     * kept in memory).
+     */
+    public void setMaxModifiedPlanes(int value)
+    {
+        maxModifiedPlanes = Math.max(0, value);
+    }
+
+    /**
+     * Discard all modifications done in the view
+     */
+    public void discardModifications()
+    {
+        synchronized (written)
+        {
+            written.clear();
+        }
+    }
+
+    /**
+     * Clear cache of built planes (call it when source data changed)
+     */
+    public void clearCache()
+    {
+        synchronized (cache)
+        {
+            cache.clear();
+        }
+    }
+
+    public int getSizeX()
+    {
+        return getRegion().width;
+    }
+
+    public int getSizeY()
+    {
+        return getRegion().height;
+    }
+
+    public int getSizeC()
+    {
+        if (channels == null)
+            return source.getSizeC();
+
+        return channels.length;
+    }
+
+    public int getSizeZ()
+    {
+        return sizeZ;
+    }
+
+    public int getSizeT()
+    {
+        return sizeT;
+    }
+
+    public DataType getDataType_()
+    {
+        return source.getDataType_();
+    }
+
+    /**
+     * Return the source Z position for the specified view Z position
+     */
+    public int getSourceZ(int z)
+    {
+        return zMin + (z * zStep);
+    }
+
+    /**
+     * Return the source T position for the specified view T position
+     */
+    public int getSourceT(int t)
+    {
+        return tMin + (t * tStep);
+    }
+
+    /**
+     * Return the source channel for the specified view channel
+     */
+    public int getSourceC(int c)
+    {
+        if (channels == null)
+            return c;
+
+        return channels[c];
+    }
+
+    /**
+     * Return a new view restricted to the specified XY region (in view coordinates)
+     */
+    public SequenceView crop(Rectangle r)
+    {
+        final Rectangle current = getRegion();
+        final Rectangle newRegion = new Rectangle(r);
+
+        newRegion.translate(current.x, current.y);
+
+        return new SequenceView(source, newRegion.intersection(current), channels, zMin, zStep, sizeZ, tMin, tStep,
+                sizeT);
+    }
+
+    /**
+     * Return a new view restricted to the specified channels (view channel index)
+     */
+    public SequenceView selectChannels(int[] c)
+    {
+        final int[] newChannels = new int[c.length];
+
+        for (int i = 0; i < c.length; i++)
+            newChannels[i] = getSourceC(c[i]);
+
+        return new SequenceView(source, region, newChannels, zMin, zStep, sizeZ, tMin, tStep, sizeT);
+    }
+
+    /**
+     * Return a new view restricted to the specified channel (view channel index)
+     */
+    public SequenceView selectChannel(int c)
+    {
+        return selectChannels(new int[] {c});
+    }
+
+    /**
+     * Return a new view restricted to the specified Z range (view Z positions, inclusive) and
+     * step
+     */
+    public SequenceView selectZ(int min, int max, int step)
+    {
+        final int s = Math.max(1, step);
+        final int mn = Math.max(0, min);
+        final int mx = Math.min(sizeZ - 1, max);
+        final int size = (mx < mn) ? 0 : ((mx - mn) / s) + 1;
+
+        return new SequenceView(source, region, channels, getSourceZ(mn), zStep * s, size, tMin, tStep, sizeT);
+    }
+
+    /**
+     * Return a new view restricted to the specified T range (view T positions, inclusive) and
+     * step
+     */
+    public SequenceView selectT(int min, int max, int step)
+    {
+        final int s = Math.max(1, step);
+        final int mn = Math.max(0, min);
+        final int mx = Math.min(sizeT - 1, max);
+        final int size = (mx < mn) ? 0 : ((mx - mn) / s) + 1;
+
+        return new SequenceView(source, region, channels, zMin, zStep, sizeZ, getSourceT(mn), tStep * s, size);
+    }
+
+    private static Long getKey(int t, int z)
+    {
+        return Long.valueOf((((long) t) << 32) | (z & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Return image at position (t, z) of the view.<br>
+     * The returned image may share data with the source sequence so it should be considered as
+     * read only.<br>
+     * Built planes are cached (see {@link #clearCache()}).
+     */
+    public IcyBufferedImage getImage(int t, int z)
+    {
+        if ((t < 0) || (t >= sizeT) || (z < 0) || (z >= sizeZ))
+            return null;
+
+        final Long key = getKey(t, z);
+
+        synchronized (written)
+        {
+            final IcyBufferedImage result = written.get(key);
+
+            if (result != null)
+                return result;
+        }
+
+        synchronized (cache)
+        {
+            final IcyBufferedImage result = cache.get(key);
+
+            if (result != null)
+                return result;
+        }
+
+        final IcyBufferedImage result = buildImage(source.getImage(getSourceT(t), getSourceZ(z)), false);
+
+        if (result != null)
+        {
+            synchronized (cache)
+            {
+                cache.put(key, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Return image at position (t, z) of the view for modification.<br>
+     * The plane is copied in the view on first call (the source sequence is never modified).
+     * 
+     * @throws IllegalStateException
+     *         if the maximum number of modified planes is reached
+     */
+    public IcyBufferedImage getImageForWrite(int t, int z)
+    {
+        if ((t < 0) || (t >= sizeT) || (z < 0) || (z >= sizeZ))
+            return null;
+
+        synchronized (written)
+        {
+            final Long key = getKey(t, z);
+            IcyBufferedImage result = written.get(key);
+
+            if (result == null)
+            {
+                checkCanWrite();
+
+                result = buildImage(source.getImage(getSourceT(t), getSourceZ(z)), true);
+
+                if (result != null)
+                {
+                    written.put(key, result);
+                    removeFromCache(key);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Replace image at position (t, z) of the view (the source sequence is not modified).<br>
+     * Set a null image to discard modification of this plane.
+     * 
+     * @throws IllegalStateException
+     *         if the maximum number of modified planes is reached
+     */
+    public void setImage(int t, int z, IcyBufferedImage image)
+    {
+        if ((t < 0) || (t >= sizeT) || (z < 0) || (z >= sizeZ))
+            return;
+
+        final Long key = getKey(t, z);
+
+        synchronized (written)
+        {
+            if (image == null)
+                written.remove(key);
+            else
+            {
+                if (!written.containsKey(key))
+                    checkCanWrite();
+
+                written.put(key, image);
+                removeFromCache(key);
+            }
+        }
+    }
+
+    private void checkCanWrite()
+    {
+        if (written.size() >= maxModifiedPlanes)
+            throw new IllegalStateException("SequenceView : can't modify more than " + maxModifiedPlanes
+                    + " planes, use toSequence() to get a modifiable copy.");
+    }
+
+    private void removeFromCache(Long key)
+    {
+        synchronized (cache)
+        {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Build the view plane from the source image
+     */
+    private IcyBufferedImage buildImage(IcyBufferedImage srcImage, boolean copy)
+    {
+        if (srcImage == null)
+            return null;
+
+        final Rectangle r = getRegion().intersection(srcImage.getBounds());
+        final int sizeC = getSizeC();
+        final DataType dataType = srcImage.getDataType_();
+        final boolean signed = dataType.isSigned();
+        final boolean crop = (r.width != srcImage.getSizeX()) || (r.height != srcImage.getSizeY());
+        final Object[] data = new Object[sizeC];
+
+        for (int c = 0; c < sizeC; c++)
+        {
+            final Object src = srcImage.getDataXY(getSourceC(c));
+
+            if (!crop && !copy)
+                // share source data
+                data[c] = src;
+            else
+            {
+                final Object dst = Array1DUtil.createArray(dataType, r.width * r.height);
+                final int srcSizeX = srcImage.getSizeX();
+                int srcOffset = srcImage.getOffset(r.x, r.y);
+                int dstOffset = 0;
+
+                for (int y = 0; y < r.height; y++)
+                {
+                    System.arraycopy(src, srcOffset, dst, dstOffset, r.width);
+                    srcOffset += srcSizeX;
+                    dstOffset += r.width;
+                }
+
+                data[c] = dst;
+            }
+        }
+
+        return new IcyBufferedImage(r.width, r.height, data, signed);
+    }
+
+    /**
+     * Build a sequence from the view (so it can be passed to any code working on {@link Sequence}
+     * ) without copying data.<br>
+     * Sequence images share data with the source sequence (whatever the selected channels and Z /
+     * T ranges) or with the view for modified planes, only cropped planes are built (from the view
+     * region). The returned sequence is read only: modify the view (see
+     * {@link #getImageForWrite(int, int)}) or use {@link #toSequence(boolean)} to get a copy.
+     */
+    public Sequence toSequence()
+    {
+        return toSequence(true);
+    }
+
+    /**
+     * Build a sequence from the view (so it can be passed to any code working on {@link Sequence}
+     * ).<br>
+     * If <code>shareData</code> is true the sequence images share data with the source sequence
+     * and the view (see {@link #toSequence()}), the returned sequence is then read only.<br>
+     * Otherwise the window of the view is copied so the sequence can safely be modified without
+     * affecting the source sequence nor the view.
+     */
+    public Sequence toSequence(boolean shareData)
+    {
+        final Sequence result = new Sequence();
+
+        result.beginUpdate();
+        try
+        {
+            for (int t = 0; t < sizeT; t++)
+            {
+                for (int z = 0; z < sizeZ; z++)
+                {
+                    final IcyBufferedImage image;
+
+                    if (shareData)
+                        image = getPlane(t, z);
+                    else
+                        image = getPlaneCopy(t, z);
+
+                    if (image != null)
+                        result.setImage(t, z, image);
+                }
+            }
+
+            if (shareData)
+                result.setName(source.getName() + " (view - read only)");
+            else
+                result.setName(source.getName() + " (view)");
+        }
+        finally
+        {
+            result.endUpdate();
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the plane at position (t, z) sharing data with the source or the view (built planes
+     * aren't cached as each plane is retrieved once)
+     */
+    private IcyBufferedImage getPlane(int t, int z)
+    {
+        final Long key = getKey(t, z);
+
+        synchronized (written)
+        {
+            final IcyBufferedImage result = written.get(key);
+
+            if (result != null)
+                return result;
+        }
+
+        synchronized (cache)
+        {
+            final IcyBufferedImage result = cache.get(key);
+
+            if (result != null)
+                return result;
+        }
+
+        return buildImage(source.getImage(getSourceT(t), getSourceZ(z)), false);
+    }
+
+    /**
+     * Return a copy of the plane at position (t, z) which doesn't share any data with the source
+     */
+    private IcyBufferedImage getPlaneCopy(int t, int z)
+    {
+        synchronized (written)
+        {
+            final IcyBufferedImage result = written.get(getKey(t, z));
+
+            // modified plane is already a copy, duplicate it so further view modifications
+            // don't modify the sequence
+            if (result != null)
+                return result.getCopy();
+        }
+
+        // cached planes can be shared with the source or returned by getImage(..)
+        return buildImage(source.getImage(getSourceT(t), getSourceZ(z)), true);
+    }
+}
@@ -29,13 +29,22 @@ import java.util.TreeMap;
  */
 public class VolumetricImage
 {
+    private static final IcyBufferedImage[] EMPTY_PLANES = new IcyBufferedImage[0];
+
     final Sequence sequence;
     final TreeMap<Integer, IcyBufferedImage> images;
 
+    /**
+     * Dense copy of images (index = z position) rebuilt on each modification.<br>
+     * Published through a volatile reference so reads are lock and allocation free.
+     */
+    private volatile IcyBufferedImage[] planes;
+
     public VolumetricImage(Sequence seq)
     {
         sequence = seq;
         images = new TreeMap<Integer, IcyBufferedImage>();
+        planes = EMPTY_PLANES;
     }
 
     public VolumetricImage()
@@ -44,18 +53,61 @@ public class VolumetricImage
     }
 
     /**
-     * Return number of loaded image
+     * Rebuild the dense images table (should be called with images lock)
      */
-    public int getNumImage()
+    private void updatePlanes()
     {
-        int result = 0;
+        if (images.isEmpty())
+        {
+            planes = EMPTY_PLANES;
+            return;
+        }
+
+        final IcyBufferedImage[] result = new IcyBufferedImage[Math.max(0, images.lastKey().intValue() + 1)];
+
+        for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
+        {
+            final int z = entry.getKey().intValue();
+
+            if (z >= 0)
+                result[z] = entry.getValue();
+        }
+
+        planes = result;
+    }
 
+    /**
+     * Set all images at once without any event (used by sequence structural edit)
+     */
+    void setImagesInternal(TreeMap<Integer, IcyBufferedImage> values)
+    {
         synchronized (images)
         {
-            for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
-                if (entry.getValue() != null)
-                    result++;
+            images.clear();
+            images.putAll(values);
+            updatePlanes();
         }
+    }
+
+    /**
+     * Return the dense images table (index = z position).<br>
+     * The returned array is a snapshot and should not be modified.
+     */
+    IcyBufferedImage[] getPlanes()
+    {
+        return planes;
+    }
+
+    /**
+     * Return number of loaded image
+     */
+    public int getNumImage()
+    {
+        int result = 0;
+
+        for (IcyBufferedImage image : planes)
+            if (image != null)
+                result++;
 
         return result;
     }
@@ -65,13 +117,7 @@ public class VolumetricImage
      */
     public int getSize()
     {
-        synchronized (images)
-        {
-            if (images.isEmpty())
-                return 0;
-
-            return images.lastKey().intValue() + 1;
-        }
+        return planes.length;
     }
 
     /**
@@ -123,10 +169,12 @@ public class VolumetricImage
      */
     public IcyBufferedImage getImage(int z)
     {
-        synchronized (images)
-        {
-            return images.get(Integer.valueOf(z));
-        }
+        final IcyBufferedImage[] p = planes;
+
+        if ((z >= 0) && (z < p.length))
+            return p[z];
+
+        return null;
     }
 
     /**
@@ -139,16 +187,21 @@ public class VolumetricImage
 
         try
         {
+            final ArrayList<IcyBufferedImage> removed;
+
             synchronized (images)
             {
-                while (!images.isEmpty())
-                {
-                    final IcyBufferedImage image = images.pollFirstEntry().getValue();
-                    // raise event on sequence
-                    if ((image != null) && (sequence != null))
-                        sequence.onImageRemoved(image);
-                }
+                removed = new ArrayList<IcyBufferedImage>(images.values());
+                images.clear();
+                // rebuild planes only once
+                updatePlanes();
             }
+
+            // raise event on sequence
+            if (sequence != null)
+                for (IcyBufferedImage image : removed)
+                    if (image != null)
+                        sequence.onImageRemoved(image);
         }
         finally
         {
@@ -167,6 +220,7 @@ public class VolumetricImage
         synchronized (images)
         {
             image = images.remove(Integer.valueOf(z));
+            updatePlanes();
         }
 
         // raise event on sequence
@@ -192,7 +246,8 @@ public class VolumetricImage
             // set the new image
             synchronized (images)
             {
-                images.put(new Integer(z), image);
+                images.put(Integer.valueOf(z), image);
+                updatePlanes();
             }
 
             // raise event on sequence
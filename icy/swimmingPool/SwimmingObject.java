@@ -18,13 +18,26 @@
  */
 package icy.swimmingPool;
 
+import icy.system.IcyExceptionHandler;
 import icy.util.ClassUtil;
 import icy.util.StringUtil;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 
 import javax.swing.ImageIcon;
 
+/**
+ * Object stored in the {@link SwimmingPool}.<br>
+ * An <i>exclusive</i> object (see {@link #SwimmingObject(Object, String, ImageIcon, boolean)}) can
+ * be spilled to disk by the pool when memory budget is exceeded, it is then transparently
+ * restored by {@link #getObject()} (same instance is returned if it is still in memory).<br>
+ * Exclusive means the pool owns the object: the creator doesn't keep any reference to it and
+ * objects returned by {@link #getObject()} are only read (a modification done after the object
+ * has been spilled would be lost). Non exclusive objects are never spilled.
+ */
 public class SwimmingObject
 {
     public static ArrayList<String> getObjectTypes(ArrayList<SwimmingObject> objects)
@@ -47,14 +60,36 @@ public class SwimmingObject
 
     private static int id_gen = 1;
 
-    private final Object object;
+    private Object object;
 
     private final String name;
+    private final String className;
     /** 32x32 icon */
     private final ImageIcon icon;
     private final int id;
 
-    public SwimmingObject(Object object, String name, ImageIcon icon)
+    /**
+     * memory accounting
+     */
+    private final long size;
+    private final boolean exclusive;
+    private volatile long lastAccess;
+    SwimmingPool pool;
+
+    /**
+     * spill state
+     */
+    private File spillFile;
+    private WeakReference<Object> spilledRef;
+
+    /**
+     * Create a new swimming object.
+     * 
+     * @param exclusive
+     *        the pool owns the object (nobody else keeps a reference on it and it is only read
+     *        once retrieved) so it can be spilled to disk when memory budget is exceeded
+     */
+    public SwimmingObject(Object object, String name, ImageIcon icon, boolean exclusive)
     {
         super();
 
@@ -65,6 +100,16 @@ public class SwimmingObject
         }
 
         this.object = object;
+        if (object != null)
+            className = object.getClass().getName();
+        else
+            className = "";
+        size = SwimmingObjectStore.estimateSize(object);
+        this.exclusive = exclusive;
+        lastAccess = System.nanoTime();
+        pool = null;
+        spillFile = null;
+        spilledRef = null;
         if (StringUtil.isEmpty(name))
             this.name = DEFAULT_NAME + " " + id;
         else
@@ -75,6 +120,11 @@ public class SwimmingObject
             this.icon = icon;
     }
 
+    public SwimmingObject(Object object, String name, ImageIcon icon)
+    {
+        this(object, name, icon, false);
+    }
+
     public SwimmingObject(Object object, String name)
     {
         this(object, name, null);
@@ -95,7 +145,163 @@ public class SwimmingObject
      */
     public Object getObject()
     {
-        return object;
+        final File file;
+
+        synchronized (this)
+        {
+            lastAccess = System.nanoTime();
+
+            if ((object != null) || (spillFile == null))
+                return object;
+
+            // still in memory ? --> just take it back
+            final Object o = spilledRef.get();
+
+            if (o != null)
+            {
+                object = o;
+                releaseSpill();
+                file = null;
+            }
+            else
+                file = spillFile;
+        }
+
+        if (file != null)
+        {
+            final Object o;
+
+            // read back outside the lock so state and metrics accessors don't wait for disk
+            try
+            {
+                o = SwimmingObjectStore.read(file);
+            }
+            catch (IOException e)
+            {
+                System.err.println("SwimmingObject.getObject() : can't restore object '" + name + "'");
+                IcyExceptionHandler.showErrorMessage(e, true);
+                return null;
+            }
+
+            synchronized (this)
+            {
+                // restored by another thread meanwhile ? --> use its instance
+                if (object != null)
+                    return object;
+
+                // spill file released meanwhile (object removed from pool), use what we read
+                if (spillFile != file)
+                    return o;
+
+                object = o;
+                releaseSpill();
+            }
+        }
+
+        // memory usage changed
+        final SwimmingPool p = pool;
+
+        if (p != null)
+            p.objectRestored(this);
+
+        synchronized (this)
+        {
+            return object;
+        }
+    }
+
+    /**
+     * Return true if the pool owns the object (it can be spilled to disk)
+     */
+    public boolean isExclusive()
+    {
+        return exclusive;
+    }
+
+    /**
+     * Return true if object is currently spilled to disk
+     */
+    public synchronized boolean isSpilled()
+    {
+        return spillFile != null;
+    }
+
+    /**
+     * Return true if object is still in memory: either we keep it or it has been spilled but is
+     * still referenced elsewhere.
+     */
+    public synchronized boolean isInMemory()
+    {
+        if (object != null)
+            return true;
+
+        return (spilledRef != null) && (spilledRef.get() != null);
+    }
+
+    /**
+     * Return estimated memory size (in bytes) of the object
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Return last access time (from {@link System#nanoTime()})
+     */
+    public long getLastAccess()
+    {
+        return lastAccess;
+    }
+
+    /**
+     * Return true if object can be spilled to disk (only exclusive objects are)
+     */
+    public synchronized boolean isSpillable()
+    {
+        return exclusive && (object != null) && SwimmingObjectStore.isSupported(object);
+    }
+
+    /**
+     * Write object to the specified file and release our reference to it.<br>
+     * Return false if object could not be spilled.
+     */
+    synchronized boolean spill(File file)
+    {
+        if (!isSpillable())
+            return false;
+
+        try
+        {
+            SwimmingObjectStore.write(object, file);
+        }
+        catch (IOException e)
+        {
+            System.err.println("SwimmingObject.spill() : can't write object '" + name + "'");
+            IcyExceptionHandler.showErrorMessage(e, false);
+            file.delete();
+            return false;
+        }
+
+        spillFile = file;
+        // object stay available until it is actually collected
+        spilledRef = new WeakReference<Object>(object);
+        object = null;
+
+        return true;
+    }
+
+    /**
+     * Release spill resources
+     */
+    synchronized void releaseSpill()
+    {
+        if (spillFile != null)
+        {
+            spillFile.delete();
+            spillFile = null;
+        }
+        spilledRef = null;
     }
 
     /**
@@ -108,10 +314,7 @@ public class SwimmingObject
 
     public String getObjectClassName()
     {
-        if (object != null)
-            return object.getClass().getName();
-
-        return "";
+        return className;
     }
 
     public String getObjectSimpleClassName()
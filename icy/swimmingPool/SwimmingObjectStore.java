@@ -0,0 +1,322 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ * 
+ * This file is part of ICY.
+ * 
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.swimmingPool;
+
+import icy.image.IcyBufferedImage;
+import icy.image.colormap.IcyColorMap;
+import icy.image.colormap.IcyColorMap.IcyColorMapType;
+import icy.image.colormap.IcyColorMapBand;
+import icy.image.colormodel.IcyColorModel;
+import icy.sequence.Sequence;
+import icy.type.DataType;
+import icy.type.collection.array.ArrayUtil;
+import icy.type.collection.array.ByteArrayConvert;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Size estimation and disk storage of swimming pool objects.<br>
+ * {@link IcyBufferedImage} (image data and colormaps) are stored in a raw format, others
+ * {@link Serializable} objects (primitive arrays for instance) use java serialization.<br>
+ * {@link Sequence} are never stored as we can't restore all their state (metadata, ROIs,
+ * painters...) in a new instance.
+ */
+public class SwimmingObjectStore
+{
+    private static final int TYPE_IMAGE = 1;
+    private static final int TYPE_SERIALIZABLE = 3;
+
+    /**
+     * size used for object we don't know how to estimate
+     */
+    private static final long DEFAULT_SIZE = 16;
+    /**
+     * maximum recursion depth for collections and arrays of objects
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * Return estimated memory size (in bytes) of the specified object.
+     */
+    public static long estimateSize(Object object)
+    {
+        return estimateSize(object, 0);
+    }
+
+    private static long estimateSize(Object object, int depth)
+    {
+        if (object == null)
+            return 0;
+
+        if (object instanceof Sequence)
+        {
+            final Sequence sequence = (Sequence) object;
+            long result = 0;
+
+            for (IcyBufferedImage image : sequence.getAllImage())
+                result += estimateSize(image, depth);
+
+            return result;
+        }
+        if (object instanceof IcyBufferedImage)
+        {
+            final IcyBufferedImage image = (IcyBufferedImage) object;
+
+            return (long) image.getSizeX() * (long) image.getSizeY() * (long) image.getSizeC()
+                    * image.getDataType_().getSize();
+        }
+        if (object instanceof String)
+            return ((String) object).length() * 2L;
+
+        if (depth < MAX_DEPTH)
+        {
+            if (object instanceof Collection)
+            {
+                long result = DEFAULT_SIZE;
+
+                for (Object o : (Collection<?>) object)
+                    result += estimateSize(o, depth + 1);
+
+                return result;
+            }
+            if (object instanceof Map)
+            {
+                long result = DEFAULT_SIZE;
+
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet())
+                    result += estimateSize(entry.getKey(), depth + 1) + estimateSize(entry.getValue(), depth + 1);
+
+                return result;
+            }
+        }
+
+        if (object.getClass().isArray())
+        {
+            final Class<?> componentType = object.getClass().getComponentType();
+            final int len = ArrayUtil.getLength(object);
+
+            // primitive array
+            if (componentType.isPrimitive())
+            {
+                if (componentType == boolean.class)
+                    return len;
+                if (componentType == char.class)
+                    return len * 2L;
+
+                return len * (long) ArrayUtil.getDataType(object).getSize();
+            }
+
+            long result = len * 4L;
+
+            if (depth < MAX_DEPTH)
+                for (Object o : (Object[]) object)
+                    result += estimateSize(o, depth + 1);
+
+            return result;
+        }
+
+        return DEFAULT_SIZE;
+    }
+
+    /**
+     * Return true if the specified object can be stored on disk
+     */
+    public static boolean isSupported(Object object)
+    {
+        if (object instanceof Sequence)
+            return false;
+
+        return (object instanceof IcyBufferedImage) || (object instanceof Serializable);
+    }
+
+    /**
+     * Write the specified object in the specified file
+     */
+    public static void write(Object object, File file) throws IOException
+    {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        try
+        {
+            if (!isSupported(object))
+                throw new IOException("Unsupported object type : " + object.getClass().getName());
+
+            if (object instanceof IcyBufferedImage)
+            {
+                out.writeInt(TYPE_IMAGE);
+                writeImage((IcyBufferedImage) object, out);
+            }
+            else
+            {
+                out.writeInt(TYPE_SERIALIZABLE);
+                out.flush();
+
+                final ObjectOutputStream oos = new ObjectOutputStream(out);
+
+                oos.writeObject(object);
+                oos.flush();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Read object from the specified file
+     */
+    public static Object read(File file) throws IOException
+    {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try
+        {
+            switch (in.readInt())
+            {
+                case TYPE_IMAGE:
+                    return readImage(in);
+
+                case TYPE_SERIALIZABLE:
+                    try
+                    {
+                        return new ObjectInputStream(in).readObject();
+                    }
+                    catch (ClassNotFoundException e)
+                    {
+                        throw new IOException("Can't restore object : " + e.getMessage());
+                    }
+
+                default:
+                    throw new IOException("Unknown object type in file " + file.getAbsolutePath());
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void writeImage(IcyBufferedImage image, DataOutputStream out) throws IOException
+    {
+        final int sizeC = image.getSizeC();
+
+        out.writeInt(image.getSizeX());
+        out.writeInt(image.getSizeY());
+        out.writeInt(sizeC);
+        out.writeUTF(image.getDataType_().name());
+
+        for (int c = 0; c < sizeC; c++)
+        {
+            final byte[] data = ByteArrayConvert.toByteArray(image.getDataXY(c), false);
+
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        final IcyColorModel colorModel = image.getIcyColorModel();
+
+        for (int c = 0; c < sizeC; c++)
+            writeColormap(colorModel.getColormap(c), out);
+    }
+
+    private static IcyBufferedImage readImage(DataInputStream in) throws IOException
+    {
+        final int sizeX = in.readInt();
+        final int sizeY = in.readInt();
+        final int sizeC = in.readInt();
+        final DataType dataType = DataType.valueOf(in.readUTF());
+        final IcyBufferedImage result = new IcyBufferedImage(sizeX, sizeY, sizeC, dataType);
+
+        for (int c = 0; c < sizeC; c++)
+        {
+            final byte[] data = new byte[in.readInt()];
+
+            in.readFully(data);
+            ByteArrayConvert.byteArrayTo(data, result.getDataXY(c), false);
+        }
+
+        final IcyColorModel colorModel = result.getIcyColorModel();
+
+        for (int c = 0; c < sizeC; c++)
+            colorModel.setColormap(c, readColormap(in));
+
+        result.dataChanged();
+
+        return result;
+    }
+
+    private static void writeColormap(IcyColorMap colormap, DataOutputStream out) throws IOException
+    {
+        out.writeUTF(colormap.getName());
+        out.writeBoolean(colormap.isEnabled());
+        out.writeUTF(colormap.getType().name());
+
+        for (IcyColorMapBand band : getBands(colormap))
+            for (short value : band.map)
+                out.writeShort(value);
+    }
+
+    private static IcyColorMap readColormap(DataInputStream in) throws IOException
+    {
+        final IcyColorMap result = new IcyColorMap(in.readUTF());
+        final boolean enabled = in.readBoolean();
+        final IcyColorMapType type = IcyColorMapType.valueOf(in.readUTF());
+
+        result.beginUpdate();
+        try
+        {
+            for (IcyColorMapBand band : getBands(result))
+            {
+                final short[] map = new short[IcyColorMap.SIZE];
+
+                for (int i = 0; i < map.length; i++)
+                    map[i] = in.readShort();
+
+                band.copyFrom(map, 0);
+            }
+
+            result.setEnabled(enabled);
+            result.setType(type);
+        }
+        finally
+        {
+            result.endUpdate();
+        }
+
+        return result;
+    }
+
+    private static IcyColorMapBand[] getBands(IcyColorMap colormap)
+    {
+        return new IcyColorMapBand[] {colormap.red, colormap.green, colormap.blue, colormap.gray, colormap.alpha};
+    }
+}
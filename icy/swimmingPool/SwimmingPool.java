@@ -18,48 +18,265 @@
  */
 package icy.swimmingPool;
 
+import icy.system.SystemUtil;
+import icy.system.thread.ThreadUtil;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.event.EventListenerList;
 
+/**
+ * Pool of objects shared between plugins.<br>
+ * Estimated memory size of objects is tracked and when it exceeds the memory limit, least recently
+ * used exclusive objects are spilled to scratch files (they are restored on
+ * {@link SwimmingObject#getObject()}).
+ */
 public class SwimmingPool
 {
+    /**
+     * default memory limit (quarter of java max memory)
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = SystemUtil.getJavaMaxMemory() / 4;
+
     private final ArrayList<SwimmingObject> objects;
     private final EventListenerList listeners;
 
+    /**
+     * memory management
+     */
+    private volatile long memoryLimit;
+    private final AtomicLong spillCount;
+    private final AtomicLong restoreCount;
+    private final Runnable memoryChecker;
+
     public SwimmingPool()
     {
         objects = new ArrayList<SwimmingObject>();
         listeners = new EventListenerList();
+
+        memoryLimit = DEFAULT_MEMORY_LIMIT;
+        spillCount = new AtomicLong(0);
+        restoreCount = new AtomicLong(0);
+        memoryChecker = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                checkMemory();
+            }
+        };
     }
 
     public void add(SwimmingObject object)
     {
         if (object != null)
         {
-            objects.add(object);
+            synchronized (objects)
+            {
+                object.pool = this;
+                objects.add(object);
+            }
+
             fireSwimmingPoolEvent(new SwimmingPoolEvent(SwimmingPoolEventType.ELEMENT_ADDED, object));
+            ThreadUtil.bgRunSingle(memoryChecker);
         }
     }
 
     public void remove(SwimmingObject object)
     {
-        if (objects.remove(object))
+        final boolean removed;
+
+        synchronized (objects)
+        {
+            removed = objects.remove(object);
+        }
+
+        if (removed)
+        {
+            object.pool = null;
+            object.releaseSpill();
             fireSwimmingPoolEvent(new SwimmingPoolEvent(SwimmingPoolEventType.ELEMENT_REMOVED, object));
+        }
     }
 
     public void removeAll()
     {
-        if (!objects.isEmpty())
+        final ArrayList<SwimmingObject> removed;
+
+        synchronized (objects)
         {
+            removed = new ArrayList<SwimmingObject>(objects);
             objects.clear();
+        }
+
+        if (!removed.isEmpty())
+        {
+            for (SwimmingObject object : removed)
+            {
+                object.pool = null;
+                object.releaseSpill();
+            }
+
             fireSwimmingPoolEvent(new SwimmingPoolEvent(SwimmingPoolEventType.ELEMENT_REMOVED, null));
         }
     }
 
     public ArrayList<SwimmingObject> getObjects()
     {
-        return new ArrayList<SwimmingObject>(objects);
+        synchronized (objects)
+        {
+            return new ArrayList<SwimmingObject>(objects);
+        }
+    }
+
+    /**
+     * Return the memory limit (in bytes) for objects kept in memory
+     */
+    public long getMemoryLimit()
+    {
+        return memoryLimit;
+    }
+
+    /**
+     * Set the memory limit (in bytes) for objects kept in memory (0 means no limit)
+     */
+    public void setMemoryLimit(long value)
+    {
+        if (memoryLimit != value)
+        {
+            memoryLimit = value;
+            ThreadUtil.bgRunSingle(memoryChecker);
+        }
+    }
+
+    /**
+     * Return estimated memory size (in bytes) of objects in memory (spilled objects still
+     * referenced elsewhere are counted too)
+     */
+    public long getMemoryUsed()
+    {
+        long result = 0;
+
+        for (SwimmingObject object : getObjects())
+            if (object.isInMemory())
+                result += object.getSize();
+
+        return result;
+    }
+
+    /**
+     * Return estimated memory size (in bytes) of objects spilled to disk
+     */
+    public long getSpilledSize()
+    {
+        long result = 0;
+
+        for (SwimmingObject object : getObjects())
+            if (object.isSpilled())
+                result += object.getSize();
+
+        return result;
+    }
+
+    /**
+     * Return number of objects currently spilled to disk
+     */
+    public int getSpilledCount()
+    {
+        int result = 0;
+
+        for (SwimmingObject object : getObjects())
+            if (object.isSpilled())
+                result++;
+
+        return result;
+    }
+
+    /**
+     * Return total number of spill operations
+     */
+    public long getSpillCount()
+    {
+        return spillCount.get();
+    }
+
+    /**
+     * Return total number of restore operations
+     */
+    public long getRestoreCount()
+    {
+        return restoreCount.get();
+    }
+
+    void objectRestored(SwimmingObject object)
+    {
+        restoreCount.incrementAndGet();
+        ThreadUtil.bgRunSingle(memoryChecker);
+    }
+
+    /**
+     * Spill least recently used objects until memory usage fits the memory limit.<br>
+     * The most recently used object is never spilled, so an object bigger than the limit isn't
+     * spilled again right after being restored. Objects we failed to spill are skipped.
+     */
+    void checkMemory()
+    {
+        final long limit = memoryLimit;
+
+        if (limit <= 0)
+            return;
+
+        final ArrayList<SwimmingObject> all = getObjects();
+        final HashSet<SwimmingObject> skipped = new HashSet<SwimmingObject>();
+        SwimmingObject mru = null;
+
+        for (SwimmingObject object : all)
+            if ((mru == null) || (object.getLastAccess() > mru.getLastAccess()))
+                mru = object;
+
+        // spilled objects are only released when nobody else references them so memory
+        // used is recomputed each time, we just consider the pending releases of this pass
+        long pending = 0;
+
+        while ((getMemoryUsed() - pending) > limit)
+        {
+            SwimmingObject lru = null;
+
+            for (SwimmingObject object : all)
+                if ((object != mru) && !skipped.contains(object) && !object.isSpilled() && object.isSpillable()
+                        && ((lru == null) || (object.getLastAccess() < lru.getLastAccess())))
+                    lru = object;
+
+            // nothing more to spill
+            if (lru == null)
+                return;
+
+            try
+            {
+                final File file = File.createTempFile("icy_pool", ".obj");
+
+                file.deleteOnExit();
+
+                if (lru.spill(file))
+                {
+                    spillCount.incrementAndGet();
+                    // still referenced elsewhere --> will be released later (or never)
+                    if (lru.isInMemory())
+                        pending += lru.getSize();
+                }
+                else
+                    skipped.add(lru);
+            }
+            catch (IOException e)
+            {
+                System.err.println("SwimmingPool : can't create scratch file (" + e.getMessage() + ")");
+                skipped.add(lru);
+            }
+        }
     }
 
     public void addListener(SwimmingPoolListener listener)
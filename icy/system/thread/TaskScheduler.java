@@ -0,0 +1,423 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.system.thread;
+
+import icy.system.SystemUtil;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared image processing scheduler.<br>
+ * All tasks are executed by a single bounded pool of threads and waiting tasks are ordered by
+ * {@link TaskPriority} (interactive rendering first, then user triggered computation, then
+ * background statistics).<br>
+ * Tasks can be submitted with a {@link CancelToken} they should observe, waiting tasks whose token
+ * is cancelled are dropped without being executed.<br>
+ * {@link TaskPriority#BACKGROUND} tasks never use all workers so interactive and compute tasks
+ * always find a free worker.<br>
+ * Queue depth and waiting latency are available per priority for monitoring.
+ */
+public class TaskScheduler extends ThreadPoolExecutor
+{
+    public enum TaskPriority
+    {
+        /**
+         * interactive rendering (what the user is looking at)
+         */
+        INTERACTIVE,
+        /**
+         * computation triggered by the user
+         */
+        COMPUTE,
+        /**
+         * background work (statistics, histogram...)
+         */
+        BACKGROUND
+    };
+
+    public static final int DEFAULT_MAX_PROCESSING = SystemUtil.getAvailableProcessors();
+
+    private static final String THREAD_NAME = "Icy scheduler";
+
+    /**
+     * shared instance
+     */
+    private static final TaskScheduler instance = new TaskScheduler(DEFAULT_MAX_PROCESSING);
+
+    /**
+     * Return the shared scheduler instance
+     */
+    public static TaskScheduler getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Return true if the current thread is a scheduler worker thread.<br>
+     * A task running in the scheduler should not wait for completion of others scheduler tasks as
+     * it could lead to a deadlock if all workers are waiting.
+     */
+    public static boolean isSchedulerThread()
+    {
+        return Thread.currentThread() instanceof WorkerThread;
+    }
+
+    static class WorkerThread extends Thread
+    {
+        public WorkerThread(Runnable r, String name)
+        {
+            super(r, name);
+        }
+    }
+
+    class WorkerThreadFactory implements ThreadFactory
+    {
+        private int num = 0;
+
+        @Override
+        public synchronized Thread newThread(Runnable r)
+        {
+            final Thread result = new WorkerThread(r, THREAD_NAME + " #" + (num++));
+
+            result.setDaemon(true);
+
+            return result;
+        }
+    }
+
+    class ScheduledTask<T> extends FutureTask<T> implements Comparable<ScheduledTask<?>>
+    {
+        final TaskPriority priority;
+        final CancelToken token;
+        final long order;
+        final long submitTime;
+
+        ScheduledTask(Callable<T> callable, TaskPriority priority, CancelToken token)
+        {
+            super(callable);
+
+            this.priority = priority;
+            this.token = token;
+            order = orderGen.getAndIncrement();
+            submitTime = System.nanoTime();
+        }
+
+        ScheduledTask(Runnable runnable, T result, TaskPriority priority, CancelToken token)
+        {
+            super(runnable, result);
+
+            this.priority = priority;
+            this.token = token;
+            order = orderGen.getAndIncrement();
+            submitTime = System.nanoTime();
+        }
+
+        @Override
+        public void run()
+        {
+            // cancelled while waiting ? --> don't even start
+            if ((token != null) && token.isCancelled())
+                super.cancel(false);
+            else
+                super.run();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            // so task can observe it
+            if (token != null)
+                token.cancel();
+
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public int compareTo(ScheduledTask<?> o)
+        {
+            final int result = priority.compareTo(o.priority);
+
+            if (result != 0)
+                return result;
+
+            // FIFO for same priority
+            if (order < o.order)
+                return -1;
+            if (order > o.order)
+                return 1;
+
+            return 0;
+        }
+    }
+
+    /**
+     * internals
+     */
+    final AtomicLong orderGen;
+    private final int maxBackground;
+    /**
+     * background tasks waiting for a background slot (FIFO)
+     */
+    private final LinkedList<ScheduledTask<?>> backgroundQueue;
+    private int runningBackground;
+    private final AtomicLong[] waitTimes;
+    private final AtomicLong[] startedCounts;
+
+    /**
+     * Create a new scheduler with the specified number of worker threads.<br>
+     * At most <code>maxProcessing - 1</code> workers (at least 1) are used by background tasks.<br>
+     * You should use the shared instance ({@link #getInstance()}) instead of creating your own.
+     */
+    public TaskScheduler(int maxProcessing)
+    {
+        super(maxProcessing, maxProcessing, 5L, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>());
+
+        setThreadFactory(new WorkerThreadFactory());
+        allowCoreThreadTimeOut(true);
+
+        orderGen = new AtomicLong(0);
+        maxBackground = Math.max(1, maxProcessing - 1);
+        backgroundQueue = new LinkedList<ScheduledTask<?>>();
+        runningBackground = 0;
+
+        final int numPriority = TaskPriority.values().length;
+
+        waitTimes = new AtomicLong[numPriority];
+        startedCounts = new AtomicLong[numPriority];
+        for (int i = 0; i < numPriority; i++)
+        {
+            waitTimes[i] = new AtomicLong(0);
+            startedCounts[i] = new AtomicLong(0);
+        }
+    }
+
+    @Override
+    protected <T> ScheduledTask<T> newTaskFor(Callable<T> callable)
+    {
+        // default priority
+        return new ScheduledTask<T>(callable, TaskPriority.COMPUTE, null);
+    }
+
+    @Override
+    protected <T> ScheduledTask<T> newTaskFor(Runnable runnable, T value)
+    {
+        // default priority
+        return new ScheduledTask<T>(runnable, value, TaskPriority.COMPUTE, null);
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        // we need comparable task in the priority queue
+        final ScheduledTask<?> task;
+
+        if (command instanceof ScheduledTask)
+            task = (ScheduledTask<?>) command;
+        else
+            task = newTaskFor(command, null);
+
+        if (task.priority == TaskPriority.BACKGROUND)
+        {
+            synchronized (backgroundQueue)
+            {
+                backgroundQueue.add(task);
+            }
+
+            dispatchBackground();
+        }
+        else
+            super.execute(task);
+    }
+
+    /**
+     * Pass waiting background tasks to the pool while background slots are available
+     */
+    private void dispatchBackground()
+    {
+        while (true)
+        {
+            final ScheduledTask<?> task;
+
+            synchronized (backgroundQueue)
+            {
+                if ((runningBackground >= maxBackground) || backgroundQueue.isEmpty())
+                    return;
+
+                task = backgroundQueue.removeFirst();
+                runningBackground++;
+            }
+
+            if (isShutdown())
+            {
+                // can't be executed anymore
+                task.cancel(false);
+                backgroundTaskDone();
+            }
+            else
+                super.execute(task);
+        }
+    }
+
+    private void backgroundTaskDone()
+    {
+        synchronized (backgroundQueue)
+        {
+            runningBackground--;
+        }
+    }
+
+    /**
+     * Submit a task with specified priority.
+     */
+    public Future<?> submit(Runnable task, TaskPriority priority)
+    {
+        return submit(task, priority, null);
+    }
+
+    /**
+     * Submit a task with specified priority and cancellation token.<br>
+     * The task is not executed if the token is cancelled while it is waiting and cancelling the
+     * returned {@link Future} cancels the token.
+     */
+    public Future<?> submit(Runnable task, TaskPriority priority, CancelToken token)
+    {
+        final ScheduledTask<Object> result = new ScheduledTask<Object>(task, null, priority, token);
+
+        execute(result);
+
+        return result;
+    }
+
+    /**
+     * Submit a task with specified priority and cancellation token.<br>
+     * The task is not executed if the token is cancelled while it is waiting and cancelling the
+     * returned {@link Future} cancels the token.
+     */
+    public <T> Future<T> submit(Callable<T> task, TaskPriority priority, CancelToken token)
+    {
+        final ScheduledTask<T> result = new ScheduledTask<T>(task, priority, token);
+
+        execute(result);
+
+        return result;
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r)
+    {
+        super.beforeExecute(t, r);
+
+        if (r instanceof ScheduledTask)
+        {
+            final ScheduledTask<?> task = (ScheduledTask<?>) r;
+            final int index = task.priority.ordinal();
+
+            waitTimes[index].addAndGet(System.nanoTime() - task.submitTime);
+            startedCounts[index].incrementAndGet();
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t)
+    {
+        super.afterExecute(r, t);
+
+        // release background slot
+        if ((r instanceof ScheduledTask) && (((ScheduledTask<?>) r).priority == TaskPriority.BACKGROUND))
+        {
+            backgroundTaskDone();
+            dispatchBackground();
+        }
+    }
+
+    /**
+     * Return the number of waiting tasks for the specified priority
+     */
+    public int getQueueDepth(TaskPriority priority)
+    {
+        int result = 0;
+
+        if (priority == TaskPriority.BACKGROUND)
+        {
+            synchronized (backgroundQueue)
+            {
+                result = backgroundQueue.size();
+            }
+        }
+
+        for (Runnable r : getQueue())
+            if ((r instanceof ScheduledTask) && (((ScheduledTask<?>) r).priority == priority))
+                result++;
+
+        return result;
+    }
+
+    /**
+     * Return the total number of waiting tasks
+     */
+    public int getQueueDepth()
+    {
+        synchronized (backgroundQueue)
+        {
+            return getQueue().size() + backgroundQueue.size();
+        }
+    }
+
+    /**
+     * Return the average waiting time (in ms) before execution for tasks of specified priority
+     */
+    public double getAverageLatency(TaskPriority priority)
+    {
+        final int index = priority.ordinal();
+        final long count = startedCounts[index].get();
+
+        if (count == 0)
+            return 0d;
+
+        return (waitTimes[index].get() / (double) count) / 1000000d;
+    }
+
+    /**
+     * Return the number of started tasks for the specified priority
+     */
+    public long getStartedTaskCount(TaskPriority priority)
+    {
+        return startedCounts[priority.ordinal()].get();
+    }
+
+    /**
+     * Reset latency statistics
+     */
+    public void resetMetrics()
+    {
+        for (int i = 0; i < waitTimes.length; i++)
+        {
+            waitTimes[i].set(0);
+            startedCounts[i].set(0);
+        }
+    }
+}
@@ -5,11 +5,30 @@ package icy.type.collection.array;
 
 import icy.type.DataType;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * @author Stephane
  */
 public class ByteArrayConvert
 {
+    /**
+     * Return a {@link ByteBuffer} view on the specified byte array region with wanted byte order.<br>
+     * Typed views of the returned buffer allow bulk conversion of the whole region.
+     */
+    static ByteBuffer getByteBuffer(byte[] array, int offset, int length, boolean little)
+    {
+        final ByteBuffer result = ByteBuffer.wrap(array, offset, length);
+
+        if (little)
+            result.order(ByteOrder.LITTLE_ENDIAN);
+        else
+            result.order(ByteOrder.BIG_ENDIAN);
+
+        return result;
+    }
+
     /**
      * Get maximum length in bytes for a copy from in to out with specified offset and step.<br>
      * If specified length != -1 then the value is directly returned (assumed to be in bytes).
@@ -200,6 +219,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, adjInStep, out, outOffset, outStep, byteLength) / 2;
         final short[] result = Array1DUtil.allocIfNull(out, outOffset + (len * outStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(in, inOffset, len * 2, little).asShortBuffer().get(result, outOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -302,6 +328,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, adjInStep, out, outOffset, outStep, byteLength) / 4;
         final int[] result = Array1DUtil.allocIfNull(out, outOffset + (len * outStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(in, inOffset, len * 4, little).asIntBuffer().get(result, outOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -406,6 +439,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, adjInStep, out, outOffset, outStep, byteLength) / 8;
         final long[] result = Array1DUtil.allocIfNull(out, outOffset + (len * outStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(in, inOffset, len * 8, little).asLongBuffer().get(result, outOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -532,6 +572,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, adjInStep, out, outOffset, outStep, byteLength) / 4;
         final float[] result = Array1DUtil.allocIfNull(out, outOffset + (len * outStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(in, inOffset, len * 4, little).asFloatBuffer().get(result, outOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -638,6 +685,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, adjInStep, out, outOffset, outStep, byteLength) / 8;
         final double[] result = Array1DUtil.allocIfNull(out, outOffset + (len * outStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(in, inOffset, len * 8, little).asDoubleBuffer().get(result, outOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -766,6 +820,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, inStep, out, outOffset, adjOutStep, byteLength);
         final byte[] result = Array1DUtil.allocIfNull(out, outOffset + (len * adjOutStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(result, outOffset, len * 2, little).asShortBuffer().put(in, inOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -822,6 +883,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, inStep, out, outOffset, adjOutStep, byteLength);
         final byte[] result = Array1DUtil.allocIfNull(out, outOffset + (len * adjOutStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(result, outOffset, len * 4, little).asIntBuffer().put(in, inOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -882,6 +950,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, inStep, out, outOffset, adjOutStep, byteLength);
         final byte[] result = Array1DUtil.allocIfNull(out, outOffset + (len * adjOutStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(result, outOffset, len * 8, little).asLongBuffer().put(in, inOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -986,6 +1061,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, inStep, out, outOffset, adjOutStep, byteLength);
         final byte[] result = Array1DUtil.allocIfNull(out, outOffset + (len * adjOutStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(result, outOffset, len * 4, little).asFloatBuffer().put(in, inOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
@@ -1046,6 +1128,13 @@ public class ByteArrayConvert
         final int len = getCopyLengthInBytes(in, inOffset, inStep, out, outOffset, adjOutStep, byteLength);
         final byte[] result = Array1DUtil.allocIfNull(out, outOffset + (len * adjOutStep));
 
+        // bulk conversion
+        if ((inStep == 1) && (outStep == 1))
+        {
+            getByteBuffer(result, outOffset, len * 8, little).asDoubleBuffer().put(in, inOffset, len);
+            return result;
+        }
+
         int inOff = inOffset;
         int outOff = outOffset;
 
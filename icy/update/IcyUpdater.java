@@ -41,6 +41,7 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 import java.util.ArrayList;
 
 import javax.swing.Box;
@@ -404,13 +405,6 @@ public class IcyUpdater
     private static boolean downloadAndSaveForUpdate(String downloadPath, String savePath, ProgressFrame frame,
             boolean displayError)
     {
-        // get data
-        final byte[] data;
-
-        data = NetworkUtil.download(downloadPath, frame, displayError);
-        if (data == null)
-            return false;
-
         // build save filename
         String saveFilename = Updater.UPDATE_DIRECTORY + FileUtil.separator;
 
@@ -419,10 +413,9 @@ public class IcyUpdater
         else
             saveFilename += savePath;
 
-        if (!FileUtil.save(saveFilename, data, displayError))
-            return false;
-
-        return true;
+        // stream data to file (resume previous interrupted transfer if any)
+        return NetworkUtil.downloadToFile(downloadPath, new File(FileUtil.getGenericPath(saveFilename)), frame,
+                displayError);
     }
 
     /**
@@ -20,6 +20,7 @@ package icy.util;
 
 import icy.file.FileUtil;
 import icy.network.AuthenticationInfo;
+import icy.network.HttpCache;
 import icy.network.NetworkUtil;
 import icy.network.URLUtil;
 import icy.system.IcyExceptionHandler;
@@ -331,6 +332,47 @@ public class XMLUtil
         return null;
     }
 
+    /**
+     * Load XML Document from specified path with specified authentication.<br>
+     * Network documents are retrieved through the local {@link HttpCache} (conditional request).
+     * <br>
+     * Return null if no document can be loaded.
+     */
+    public static Document loadCachedDocument(String path, AuthenticationInfo auth, boolean showError)
+    {
+        final URL url = URLUtil.getURL(path);
+
+        if ((url != null) && URLUtil.isNetworkURL(url))
+            return loadCachedDocument(url, auth, showError);
+
+        return loadDocument(path, auth, showError);
+    }
+
+    /**
+     * Load XML Document from specified URL with specified authentication.<br>
+     * Network documents are retrieved through the local {@link HttpCache} (conditional request).
+     * <br>
+     * Return null if no document can be loaded.
+     */
+    public static Document loadCachedDocument(URL url, AuthenticationInfo auth, boolean showError)
+    {
+        if ((url == null) || !URLUtil.isNetworkURL(url))
+            return loadDocument(url, auth, showError);
+
+        final File file = HttpCache.getFile(url, auth, showError);
+
+        if (file == null)
+            return null;
+
+        final Document result = loadDocument(file, showError);
+
+        // invalid content --> don't keep it
+        if (result == null)
+            HttpCache.remove(url, auth);
+
+        return result;
+    }
+
     /**
      * Save the specified XML Document to specified filename.<br>
      * Return false if an error occurred.
@@ -753,7 +753,9 @@ public class Workspace implements XMLPersistent, Comparable<Workspace>
     {
         this();
 
-        load(url);
+        // online workspace --> use local HTTP cache
+        XMLPersistentHelper.loadFromXML(this,
+                XMLUtil.loadCachedDocument(url, (repos != null) ? repos.getAuthenticationInfo() : null, false));
         repository = repos;
     }
 
@@ -147,7 +147,8 @@ public class WorkspaceRepositoryLoader
     public static ArrayList<String> getWorkspaceFiles(RepositoryInfo repos)
     {
         final ArrayList<String> result = new ArrayList<String>();
-        final Document document = XMLUtil.loadDocument(repos.getLocation(), repos.getAuthenticationInfo(), true);
+        final Document document = XMLUtil.loadCachedDocument(repos.getLocation(), repos.getAuthenticationInfo(),
+                true);
 
         if (document != null)
         {
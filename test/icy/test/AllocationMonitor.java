@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Allocation and GC counters used by the benchmark harnesses.
+ */
+class AllocationMonitor
+{
+    private final long startGcCount;
+    private final long startGcTime;
+    private final long startAllocated;
+
+    AllocationMonitor()
+    {
+        super();
+
+        startGcCount = getGcCount();
+        startGcTime = getGcTime();
+        startAllocated = getAllocatedBytes();
+    }
+
+    /**
+     * Return the number of GC since creation
+     */
+    long getGcCountDelta()
+    {
+        return getGcCount() - startGcCount;
+    }
+
+    /**
+     * Return the time (ms) spent in GC since creation
+     */
+    long getGcTimeDelta()
+    {
+        return getGcTime() - startGcTime;
+    }
+
+    /**
+     * Return the number of bytes allocated by the current thread since creation (-1 if not
+     * supported by the JVM)
+     */
+    long getAllocatedDelta()
+    {
+        if (startAllocated == -1)
+            return -1;
+
+        return getAllocatedBytes() - startAllocated;
+    }
+
+    static long getGcCount()
+    {
+        long result = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            result += Math.max(0, gc.getCollectionCount());
+
+        return result;
+    }
+
+    static long getGcTime()
+    {
+        long result = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            result += Math.max(0, gc.getCollectionTime());
+
+        return result;
+    }
+
+    /**
+     * Return the number of bytes allocated by the current thread (-1 if not supported)
+     */
+    static long getAllocatedBytes()
+    {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+}
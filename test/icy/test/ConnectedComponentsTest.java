@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.test;
+
+import icy.image.cursor.PixelCursor;
+import icy.roi.ConnectedComponent;
+import icy.roi.ConnectedComponents;
+import icy.type.DataType;
+
+import java.util.List;
+
+/**
+ * Regression checks for {@link ConnectedComponents} 3D labeling.<br>
+ * Run with <code>java icy.test.ConnectedComponentsTest</code> (exit code 1 on failure).
+ */
+public class ConnectedComponentsTest
+{
+    private static final int SIZE_X = 8;
+    private static final int SIZE_Y = 8;
+    private static final int SIZE_Z = 3;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        lastRowAndFirstRowStayDistinct();
+        diagonalVoxelsAreMerged();
+
+        if (failures > 0)
+        {
+            System.err.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+
+        System.out.println("ConnectedComponentsTest : all checks passed");
+    }
+
+    /**
+     * A voxel on the last row of a slice must not be connected to voxels on row 0 (of the same
+     * or the next slice) with 26 connectivity.
+     */
+    static void lastRowAndFirstRowStayDistinct() throws Exception
+    {
+        final byte[][] data = new byte[SIZE_Z][SIZE_X * SIZE_Y];
+
+        // last row of slice 1
+        set(data, 3, SIZE_Y - 1, 1);
+        // row 0 of the same slice
+        set(data, 3, 0, 1);
+        // last row of slice 1 and row 0 of the next slice
+        set(data, 6, SIZE_Y - 1, 1);
+        set(data, 6, 0, 2);
+
+        final List<ConnectedComponent> components = label(data, true);
+
+        check(components.size() == 4, "last row / first row voxels : expected 4 components, got "
+                + components.size());
+        for (ConnectedComponent component : components)
+            check(component.getArea() == 1, "last row / first row voxels : component of size " + component.getArea());
+    }
+
+    /**
+     * Voxels touching by a corner in adjacent slices are connected with 26 connectivity only.
+     */
+    static void diagonalVoxelsAreMerged() throws Exception
+    {
+        final byte[][] data = new byte[SIZE_Z][SIZE_X * SIZE_Y];
+
+        set(data, 1, 3, 0);
+        set(data, 2, 4, 1);
+
+        int num = label(data, true).size();
+        check(num == 1, "diagonal voxels (26 connectivity) : expected 1 component, got " + num);
+        num = label(data, false).size();
+        check(num == 2, "diagonal voxels (6 connectivity) : expected 2 components, got " + num);
+    }
+
+    private static List<ConnectedComponent> label(byte[][] data, boolean fullConnectivity) throws Exception
+    {
+        return ConnectedComponents.label(PixelCursor.create(data, DataType.UBYTE, SIZE_X, SIZE_Y), 1d,
+                fullConnectivity);
+    }
+
+    private static void set(byte[][] data, int x, int y, int z)
+    {
+        data[z][(y * SIZE_X) + x] = 1;
+    }
+
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            System.err.println("FAILED : " + message);
+            failures++;
+        }
+    }
+}
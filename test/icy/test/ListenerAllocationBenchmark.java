@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.test;
+
+import icy.common.listener.ListenerList;
+import icy.image.IcyBufferedImage;
+import icy.image.IcyBufferedImageEvent;
+import icy.image.IcyBufferedImageEvent.IcyBufferedImageEventType;
+import icy.image.IcyBufferedImageListener;
+import icy.type.DataType;
+
+import javax.swing.event.EventListenerList;
+
+/**
+ * Allocation measurement of listener dispatch.<br>
+ * The same events are dispatched to the same listeners through {@link EventListenerList} (before)
+ * and {@link ListenerList} (after), allocated bytes per event (calling thread) and GC counters
+ * are reported. {@link ListenerList} dispatch must not allocate.<br>
+ * Run with <code>java icy.test.ListenerAllocationBenchmark [numEvent]</code> (exit code 1 on
+ * failure).
+ */
+public class ListenerAllocationBenchmark
+{
+    private static final int NUM_LISTENER = 8;
+
+    static long received = 0;
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        final int numEvent = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        final IcyBufferedImage image = new IcyBufferedImage(16, 16, 1, DataType.UBYTE);
+        final IcyBufferedImageEvent event = new IcyBufferedImageEvent(image, IcyBufferedImageEventType.DATA_CHANGED);
+        final EventListenerList before = new EventListenerList();
+        final ListenerList<IcyBufferedImageListener> after = new ListenerList<IcyBufferedImageListener>(
+                IcyBufferedImageListener.class);
+
+        for (int i = 0; i < NUM_LISTENER; i++)
+        {
+            final IcyBufferedImageListener listener = new IcyBufferedImageListener()
+            {
+                @Override
+                public void imageChanged(IcyBufferedImageEvent e)
+                {
+                    received++;
+                }
+            };
+
+            before.add(IcyBufferedImageListener.class, listener);
+            after.add(listener);
+        }
+
+        // warm up (JIT)
+        fireBefore(before, event, numEvent / 10);
+        fireAfter(after, event, numEvent / 10);
+
+        final long bytesBefore = measure(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                fireBefore(before, event, numEvent);
+            }
+        }, "EventListenerList", numEvent);
+        final long bytesAfter = measure(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                fireAfter(after, event, numEvent);
+            }
+        }, "ListenerList", numEvent);
+
+        check(after.getListeners() == after.getListeners(), "ListenerList snapshot array is not reused");
+        // allow a few bytes for the measurement itself
+        if (bytesAfter != -1)
+            check(bytesAfter < 1024, "ListenerList dispatch allocated " + bytesAfter + " bytes");
+        if ((bytesBefore != -1) && (bytesAfter != -1))
+            System.out.println("allocation reduction : " + (bytesBefore - bytesAfter) + " bytes for " + numEvent
+                    + " events");
+
+        if (failures > 0)
+        {
+            System.err.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+
+        System.out.println("ListenerAllocationBenchmark : all checks passed (" + received + " events received)");
+    }
+
+    /**
+     * Run the specified dispatch loop and report allocation, return allocated bytes (-1 if not
+     * supported)
+     */
+    private static long measure(Runnable loop, String name, int numEvent)
+    {
+        final AllocationMonitor monitor = new AllocationMonitor();
+        final long start = System.nanoTime();
+
+        loop.run();
+
+        final double ms = (System.nanoTime() - start) / 1000000d;
+        final long allocated = monitor.getAllocatedDelta();
+
+        System.out.print(name + " : " + numEvent + " events in " + ms + " ms");
+        if (allocated != -1)
+            System.out.print(", " + ((double) allocated / numEvent) + " bytes/event");
+        System.out.println(", GC : " + monitor.getGcCountDelta() + " collection(s), " + monitor.getGcTimeDelta()
+                + " ms");
+
+        return allocated;
+    }
+
+    static void fireBefore(EventListenerList listeners, IcyBufferedImageEvent event, int numEvent)
+    {
+        for (int i = 0; i < numEvent; i++)
+            for (IcyBufferedImageListener listener : listeners.getListeners(IcyBufferedImageListener.class))
+                listener.imageChanged(event);
+    }
+
+    static void fireAfter(ListenerList<IcyBufferedImageListener> listeners, IcyBufferedImageEvent event,
+            int numEvent)
+    {
+        for (int i = 0; i < numEvent; i++)
+            for (IcyBufferedImageListener listener : listeners.getListeners())
+                listener.imageChanged(event);
+    }
+
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            System.err.println("FAILED : " + message);
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.test;
+
+import icy.image.ARGBRenderContext;
+import icy.image.IcyBufferedImage;
+import icy.image.lut.LUT;
+import icy.type.DataType;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Allocation check for ARGB rendering through {@link ARGBRenderContext}.<br>
+ * N frames are rendered the way the canvas does it (acquire a target, give back the previously
+ * displayed one, then paint): once the loop is warmed up the number of render targets allocated by
+ * the context must stay flat and the bytes allocated by the rendering thread must stay under
+ * {@link #FRAME_BYTES_BUDGET} per frame (only the block tasks sent to the scheduler remain, a
+ * render target or plane allocation is far over it). GC counters are reported.<br>
+ * Run with <code>java icy.test.RenderAllocationBenchmark [numFrame]</code> (exit code 1 on
+ * failure).
+ */
+public class RenderAllocationBenchmark
+{
+    private static final int SIZE_X = 512;
+    private static final int SIZE_Y = 512;
+    private static final int WARMUP_FRAMES = 20;
+    /**
+     * steady state allocation budget (bytes per frame), a 512x512 render target is 1 MB
+     */
+    private static final long FRAME_BYTES_BUDGET = 16 * 1024;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        final int numFrame = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        final IcyBufferedImage image = new IcyBufferedImage(SIZE_X, SIZE_Y, 3, DataType.UBYTE);
+        final LUT lut = image.createCompatibleLUT();
+        final ARGBRenderContext context = new ARGBRenderContext();
+
+        // warm up (pool filling and JIT)
+        BufferedImage displayed = render(image, lut, context, null, WARMUP_FRAMES);
+
+        final long targetsBefore = context.getAllocationCount();
+        final AllocationMonitor monitor = new AllocationMonitor();
+        final long start = System.nanoTime();
+
+        displayed = render(image, lut, context, displayed, numFrame);
+
+        final double ms = (System.nanoTime() - start) / 1000000d;
+        final long newTargets = context.getAllocationCount() - targetsBefore;
+        final long allocated = monitor.getAllocatedDelta();
+
+        System.out.println(numFrame + " frames (" + SIZE_X + "x" + SIZE_Y + ") in " + ms + " ms");
+        System.out.println("render targets allocated : " + newTargets);
+        if (allocated != -1)
+            System.out.println("allocated by rendering thread : " + (allocated / numFrame) + " bytes/frame");
+        System.out.println("GC : " + monitor.getGcCountDelta() + " collection(s), " + monitor.getGcTimeDelta()
+                + " ms");
+
+        check(newTargets == 0, "steady state rendering allocated " + newTargets + " render target(s)");
+        if (allocated != -1)
+            check((allocated / numFrame) <= FRAME_BYTES_BUDGET, "steady state rendering allocated "
+                    + (allocated / numFrame) + " bytes/frame (budget is " + FRAME_BYTES_BUDGET + ")");
+        else
+            System.out.println("allocated bytes not supported by this JVM, budget not checked");
+
+        // a size change allocates new targets once then stays flat again
+        final IcyBufferedImage other = new IcyBufferedImage(SIZE_X / 2, SIZE_Y / 2, 3, DataType.UBYTE);
+
+        context.release(displayed);
+        displayed = render(other, lut, context, null, WARMUP_FRAMES);
+
+        final long resizedTargets = context.getAllocationCount();
+
+        render(other, lut, context, displayed, numFrame);
+        check(context.getAllocationCount() == resizedTargets, "rendering after resize allocated "
+                + (context.getAllocationCount() - resizedTargets) + " render target(s)");
+
+        if (failures > 0)
+        {
+            System.err.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+
+        System.out.println("RenderAllocationBenchmark : all checks passed");
+    }
+
+    /**
+     * Render the specified number of frames, return the last displayed image
+     */
+    private static BufferedImage render(IcyBufferedImage image, LUT lut, ARGBRenderContext context,
+            BufferedImage displayed, int numFrame)
+    {
+        BufferedImage current = displayed;
+
+        for (int i = 0; i < numFrame; i++)
+        {
+            final BufferedImage rendered = image.renderARGBImage(lut, context, null);
+
+            // previous frame is not displayed anymore
+            if (current != null)
+                context.release(current);
+            current = rendered;
+            // new frame painted
+            context.painted();
+        }
+
+        return current;
+    }
+
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            System.err.println("FAILED : " + message);
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010, 2011 Institut Pasteur.
+ *
+ * This file is part of ICY.
+ *
+ * ICY is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ICY is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ICY. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.test;
+
+import icy.image.IcyBufferedImage;
+import icy.sequence.Sequence;
+import icy.type.DataType;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contention benchmark for {@link Sequence} plane lookups.<br>
+ * 16 reader threads randomly access planes (<code>getImage(t, z)</code>, <code>getSizeZ()</code>)
+ * while a writer thread keeps replacing planes, then whole sequence clear time is measured.<br>
+ * Run with <code>java icy.test.SequenceAccessBenchmark [durationMs]</code> (exit code 1 on
+ * failure).
+ */
+public class SequenceAccessBenchmark
+{
+    private static final int NUM_READER = 16;
+    private static final int SIZE_T = 20;
+    private static final int SIZE_Z = 50;
+    private static final int SIZE_XY = 16;
+
+    public static void main(String[] args) throws Exception
+    {
+        final long duration = (args.length > 0) ? Long.parseLong(args[0]) : 5000L;
+        final Sequence sequence = createSequence(SIZE_T, SIZE_Z);
+        final AtomicLong reads = new AtomicLong(0);
+        final AtomicLong writes = new AtomicLong(0);
+        final AtomicLong errors = new AtomicLong(0);
+        final CountDownLatch start = new CountDownLatch(1);
+        final long end = System.currentTimeMillis() + duration;
+        final Thread[] readers = new Thread[NUM_READER];
+
+        for (int i = 0; i < NUM_READER; i++)
+        {
+            final int seed = i;
+
+            readers[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    final Random random = new Random(seed);
+                    long count = 0;
+
+                    await(start);
+
+                    while (System.currentTimeMillis() < end)
+                    {
+                        for (int n = 0; n < 1000; n++)
+                        {
+                            final int t = random.nextInt(SIZE_T);
+                            final int z = random.nextInt(SIZE_Z);
+
+                            if ((sequence.getImage(t, z) == null) || (sequence.getSizeZ(t) != SIZE_Z))
+                                errors.incrementAndGet();
+                        }
+
+                        count += 1000;
+                    }
+
+                    reads.addAndGet(count);
+                }
+            }, "Reader #" + i);
+            readers[i].start();
+        }
+
+        final Thread writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final Random random = new Random();
+
+                await(start);
+
+                while (System.currentTimeMillis() < end)
+                {
+                    sequence.setImage(random.nextInt(SIZE_T), random.nextInt(SIZE_Z), createImage());
+                    writes.incrementAndGet();
+                }
+            }
+        }, "Writer");
+        writer.start();
+
+        final long startTime = System.nanoTime();
+
+        start.countDown();
+        for (Thread reader : readers)
+            reader.join();
+        writer.join();
+
+        final double seconds = (System.nanoTime() - startTime) / 1000000000d;
+
+        System.out.println(NUM_READER + " readers : " + (long) (reads.get() / seconds) + " lookups/s, "
+                + (long) (writes.get() / seconds) + " plane writes/s");
+
+        // clear cost should grow linearly with the number of planes
+        final double smallClear = measureClear(SIZE_T, SIZE_Z);
+        final double largeClear = measureClear(SIZE_T * 8, SIZE_Z);
+
+        System.out.println("clear() : " + SIZE_T * SIZE_Z + " planes in " + smallClear + " ms, " + SIZE_T * SIZE_Z
+                * 8 + " planes in " + largeClear + " ms");
+
+        if (errors.get() > 0)
+        {
+            System.err.println("FAILED : " + errors.get() + " lookups returned an inconsistent result");
+            System.exit(1);
+        }
+    }
+
+    private static double measureClear(int sizeT, int sizeZ)
+    {
+        final Sequence sequence = createSequence(sizeT, sizeZ);
+        final long startTime = System.nanoTime();
+
+        sequence.removeAllImage();
+
+        return (System.nanoTime() - startTime) / 1000000d;
+    }
+
+    private static Sequence createSequence(int sizeT, int sizeZ)
+    {
+        final Sequence result = new Sequence();
+
+        result.beginUpdate();
+        try
+        {
+            for (int t = 0; t < sizeT; t++)
+                for (int z = 0; z < sizeZ; z++)
+                    result.setImage(t, z, createImage());
+        }
+        finally
+        {
+            result.endUpdate();
+        }
+
+        return result;
+    }
+
+    static IcyBufferedImage createImage()
+    {
+        return new IcyBufferedImage(SIZE_XY, SIZE_XY, 1, DataType.UBYTE);
+    }
+
+    static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            // ignore
+        }
+    }
+}